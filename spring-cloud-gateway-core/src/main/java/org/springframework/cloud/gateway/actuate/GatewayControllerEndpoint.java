@@ -17,45 +17,80 @@
 package org.springframework.cloud.gateway.actuate;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
 
 import org.springframework.boot.actuate.endpoint.web.annotation.RestControllerEndpoint;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.loadbalancer.InstanceStats;
+import org.springframework.cloud.gateway.filter.loadbalancer.LoadBalancerStats;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.AndAsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.DefaultAsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.NegateAsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.OrAsyncPredicate;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
 import org.springframework.cloud.gateway.route.RouteDefinitionWriter;
 import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.NameUtils;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.ApplicationListener;
 import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  * @author Spencer Gibb
  */
 @RestControllerEndpoint(id = "gateway")
-public class GatewayControllerEndpoint implements ApplicationEventPublisherAware {
+public class GatewayControllerEndpoint implements ApplicationEventPublisherAware,
+		ApplicationListener<RefreshRoutesResultEvent> {
 
 	private static final Log log = LogFactory.getLog(GatewayControllerEndpoint.class);
 
+	/**
+	 * How long a refresh request waits for the new routes to be in use.
+	 */
+	private static final Duration REFRESH_TIMEOUT = Duration.ofSeconds(30);
+
 	private RouteDefinitionLocator routeDefinitionLocator;
 
 	private List<GlobalFilter> globalFilters;
@@ -66,8 +101,23 @@ public class GatewayControllerEndpoint implements ApplicationEventPublisherAware
 
 	private RouteLocator routeLocator;
 
+	/**
+	 * Names of the known predicates, null if unknown.
+	 */
+	private Set<String> predicateNames;
+
 	private ApplicationEventPublisher publisher;
 
+	private LoadBalancerStats loadBalancerStats;
+
+	/**
+	 * Converts saved routes to check that they are valid, null if unknown.
+	 */
+	private RouteDefinitionRouteLocator routeDefinitionRouteLocator;
+
+	private final Map<RefreshRoutesEvent, MonoProcessor<Void>> pendingRefreshes =
+			new ConcurrentHashMap<>();
+
 	public GatewayControllerEndpoint(RouteDefinitionLocator routeDefinitionLocator,
 			List<GlobalFilter> globalFilters, List<GatewayFilterFactory> GatewayFilters,
 			RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator) {
@@ -78,17 +128,62 @@ public class GatewayControllerEndpoint implements ApplicationEventPublisherAware
 		this.routeLocator = routeLocator;
 	}
 
+	public GatewayControllerEndpoint(RouteDefinitionLocator routeDefinitionLocator,
+			List<GlobalFilter> globalFilters, List<GatewayFilterFactory> GatewayFilters,
+			List<RoutePredicateFactory> routePredicates,
+			RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator) {
+		this(routeDefinitionLocator, globalFilters, GatewayFilters,
+				routeDefinitionWriter, routeLocator);
+		this.predicateNames = routePredicates.stream().map(RoutePredicateFactory::name)
+				.collect(Collectors.toSet());
+	}
+
 	@Override
 	public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
 		this.publisher = publisher;
 	}
 
+	public void setLoadBalancerStats(LoadBalancerStats loadBalancerStats) {
+		this.loadBalancerStats = loadBalancerStats;
+	}
+
+	public void setRouteDefinitionRouteLocator(
+			RouteDefinitionRouteLocator routeDefinitionRouteLocator) {
+		this.routeDefinitionRouteLocator = routeDefinitionRouteLocator;
+	}
+
+	@Override
+	public void onApplicationEvent(RefreshRoutesResultEvent event) {
+		MonoProcessor<Void> pending = event.getRefreshEvent() != null
+				? this.pendingRefreshes.remove(event.getRefreshEvent()) : null;
+		if (pending != null) {
+			pending.onComplete();
+		}
+	}
+
+	/**
+	 * Publishes a {@link RefreshRoutesEvent}. Routes are compiled asynchronously, so
+	 * when they are served by a {@link CachingRouteLocator} the returned mono completes
+	 * once the refreshed routes are in use, or after a timeout.
+	 */
+	private Mono<Void> refreshRoutes() {
+		RefreshRoutesEvent event = new RefreshRoutesEvent(this);
+		if (!(this.routeLocator instanceof CachingRouteLocator)) {
+			this.publisher.publishEvent(event);
+			return Mono.empty();
+		}
+		MonoProcessor<Void> result = MonoProcessor.create();
+		this.pendingRefreshes.put(event, result);
+		this.publisher.publishEvent(event);
+		return result.timeout(REFRESH_TIMEOUT, Mono.empty())
+				.doFinally(signal -> this.pendingRefreshes.remove(event));
+	}
+
 	// TODO: Add uncommited or new but not active routes endpoint
 
 	@PostMapping("/refresh")
 	public Mono<Void> refresh() {
-		this.publisher.publishEvent(new RefreshRoutesEvent(this));
-		return Mono.empty();
+		return Mono.defer(this::refreshRoutes);
 	}
 
 	@GetMapping("/globalfilters")
@@ -101,6 +196,37 @@ public class GatewayControllerEndpoint implements ApplicationEventPublisherAware
 		return getNamesToOrders(this.GatewayFilters);
 	}
 
+	/**
+	 * Returns the state of the instances the reactive load balancer sent requests to,
+	 * by service id and instance address, including whether they are ejected.
+	 * @return the instance statistics, empty without the reactive load balancer
+	 */
+	@GetMapping("/loadbalancer")
+	public Mono<Map<String, Map<String, Map<String, Object>>>> loadbalancer() {
+		Map<String, Map<String, Map<String, Object>>> services = new TreeMap<>();
+		if (this.loadBalancerStats != null) {
+			this.loadBalancerStats.getStats().forEach((serviceId, instances) -> {
+				Map<String, Map<String, Object>> entries = new TreeMap<>();
+				instances.forEach(
+						(address, stats) -> entries.put(address, toMap(stats)));
+				services.put(serviceId, entries);
+			});
+		}
+		return Mono.just(services);
+	}
+
+	private static Map<String, Object> toMap(InstanceStats stats) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("outstanding", stats.getOutstanding());
+		map.put("latency_ms", stats.getLatency() / 1_000_000);
+		map.put("consecutive_failures", stats.getConsecutiveFailures());
+		map.put("ejected", stats.isEjected());
+		map.put("ejections", stats.getEjections());
+		map.put("ejection_remaining_ms", stats.getEjectionRemaining().toMillis());
+		map.put("healthy", stats.isHealthy());
+		return map;
+	}
+
 	private <T> Mono<HashMap<String, Object>> getNamesToOrders(List<T> list) {
 		return Flux.fromIterable(list).reduce(new HashMap<>(), this::putItem);
 	}
@@ -115,48 +241,137 @@ public class GatewayControllerEndpoint implements ApplicationEventPublisherAware
 		return map;
 	}
 
+	/**
+	 * Returns the routes, optionally filtered and paginated. The route definitions are
+	 * only looked up for the routes that pass the filters. With a {@code limit} and
+	 * without a {@code predicate} filter, only the definitions of the returned routes
+	 * are kept. Only with {@code Accept: application/stream+json} is every route written
+	 * as a separate JSON document as soon as it is created, otherwise the routes are
+	 * collected into a single array first.
+	 * @param idPrefix only include routes whose id starts with this prefix
+	 * @param predicate only include routes with a predicate of this name, e.g.
+	 * {@code Path}
+	 * @param offset the number of matching routes to skip
+	 * @param limit the maximum number of routes, negative for all routes
+	 * @return the routes
+	 */
 	// TODO: Flush out routes without a definition
 	@GetMapping("/routes")
-	public Mono<List<Map<String, Object>>> routes() {
-		Mono<Map<String, RouteDefinition>> routeDefs = this.routeDefinitionLocator
-				.getRouteDefinitions().collectMap(RouteDefinition::getId);
-		Mono<List<Route>> routes = this.routeLocator.getRoutes().collectList();
-		return Mono.zip(routeDefs, routes).map(tuple -> {
-			Map<String, RouteDefinition> defs = tuple.getT1();
-			List<Route> routeList = tuple.getT2();
-			List<Map<String, Object>> allRoutes = new ArrayList<>();
-
-			routeList.forEach(route -> {
-				HashMap<String, Object> r = new HashMap<>();
-				r.put("route_id", route.getId());
-				r.put("order", route.getOrder());
-
-				if (defs.containsKey(route.getId())) {
-					r.put("route_definition", defs.get(route.getId()));
-				}
-				else {
-					HashMap<String, Object> obj = new HashMap<>();
+	public Flux<Map<String, Object>> routes(
+			@RequestParam(name = "idPrefix", required = false) String idPrefix,
+			@RequestParam(name = "predicate", required = false) String predicate,
+			@RequestParam(name = "offset", defaultValue = "0") long offset,
+			@RequestParam(name = "limit", defaultValue = "-1") long limit) {
+		if (offset < 0) {
+			return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"offset must not be negative"));
+		}
+		Flux<Route> routes = this.routeLocator.getRoutes();
+		if (StringUtils.hasText(idPrefix)) {
+			routes = routes.filter(route -> route.getId().startsWith(idPrefix));
+		}
+		if (limit >= 0 && !StringUtils.hasText(predicate)) {
+			// a page is bounded, so only its definitions are looked up
+			return routes.skip(offset).take(limit).collectList()
+					.flatMapMany(page -> {
+						Set<String> ids = page.stream().map(Route::getId)
+								.collect(Collectors.toSet());
+						return routeDefinitions(ids::contains)
+								.flatMapIterable(defs -> page.stream()
+										.map(route -> toMap(route,
+												defs.get(route.getId())))
+										.collect(Collectors.toList()));
+					});
+		}
+		// built once the first route needs a definition
+		Mono<Map<String, RouteDefinition>> defs = routeDefinitions(
+				id -> !StringUtils.hasText(idPrefix) || id.startsWith(idPrefix))
+						.cache();
+		if (StringUtils.hasText(predicate)) {
+			routes = routes.concatMap(route -> defs
+					.filter(d -> hasPredicate(route, d.get(route.getId()), predicate))
+					.map(d -> route));
+		}
+		routes = routes.skip(offset);
+		if (limit >= 0) {
+			routes = routes.take(limit);
+		}
+		return routes.concatMap(
+				route -> defs.map(d -> toMap(route, d.get(route.getId()))));
+	}
 
-					obj.put("predicate", route.getPredicate().toString());
+	private Mono<Map<String, RouteDefinition>> routeDefinitions(Predicate<String> ids) {
+		return this.routeDefinitionLocator.getRouteDefinitions()
+				.filter(definition -> ids.test(definition.getId()))
+				.collectMap(RouteDefinition::getId);
+	}
 
-					if (!route.getFilters().isEmpty()) {
-						ArrayList<String> filters = new ArrayList<>();
-						for (GatewayFilter filter : route.getFilters()) {
-							filters.add(filter.toString());
-						}
+	private Map<String, Object> toMap(Route route, RouteDefinition definition) {
+		HashMap<String, Object> r = new HashMap<>();
+		r.put("route_id", route.getId());
+		r.put("order", route.getOrder());
 
-						obj.put("filters", filters);
-					}
+		if (definition != null) {
+			r.put("route_definition", definition);
+		}
+		else {
+			HashMap<String, Object> obj = new HashMap<>();
 
-					if (!obj.isEmpty()) {
-						r.put("route_object", obj);
-					}
+			obj.put("predicate", route.getPredicate().toString());
+
+			if (!route.getFilters().isEmpty()) {
+				ArrayList<String> filters = new ArrayList<>();
+				for (GatewayFilter filter : route.getFilters()) {
+					filters.add(filter.toString());
 				}
-				allRoutes.add(r);
-			});
 
-			return allRoutes;
-		});
+				obj.put("filters", filters);
+			}
+
+			if (!obj.isEmpty()) {
+				r.put("route_object", obj);
+			}
+		}
+		return r;
+	}
+
+	private static boolean hasPredicate(Route route, RouteDefinition definition,
+			String name) {
+		if (definition != null) {
+			return definition.getPredicates().stream()
+					.anyMatch(predicate -> name.equals(predicate.getName()));
+		}
+		return hasPredicate(route.getPredicate(), name);
+	}
+
+	/**
+	 * Looks for a predicate created by the factory of the given name, for routes
+	 * without a definition, e.g. from the Java DSL.
+	 */
+	private static boolean hasPredicate(AsyncPredicate<?> predicate, String name) {
+		if (predicate instanceof AndAsyncPredicate) {
+			AndAsyncPredicate<?> and = (AndAsyncPredicate<?>) predicate;
+			return hasPredicate(and.getLeft(), name)
+					|| hasPredicate(and.getRight(), name);
+		}
+		if (predicate instanceof OrAsyncPredicate) {
+			OrAsyncPredicate<?> or = (OrAsyncPredicate<?>) predicate;
+			return hasPredicate(or.getLeft(), name) || hasPredicate(or.getRight(), name);
+		}
+		if (predicate instanceof NegateAsyncPredicate) {
+			return hasPredicate(((NegateAsyncPredicate<?>) predicate).getPredicate(),
+					name);
+		}
+		if (predicate instanceof DefaultAsyncPredicate) {
+			Object config = ((DefaultAsyncPredicate<?>) predicate).getConfig();
+			Class<?> factory = config != null ? config.getClass().getEnclosingClass()
+					: null;
+			return factory != null
+					&& RoutePredicateFactory.class.isAssignableFrom(factory)
+					&& name.equals(NameUtils.normalizeRoutePredicateName(
+							factory.asSubclass(RoutePredicateFactory.class)));
+		}
+		return false;
 	}
 
 	/*
@@ -176,6 +391,125 @@ public class GatewayControllerEndpoint implements ApplicationEventPublisherAware
 				.just(ResponseEntity.created(URI.create("/routes/" + id)).build())));
 	}
 
+	/**
+	 * Saves and deletes route definitions as a single change and refreshes the routes
+	 * once. If any route definition is invalid, nothing is changed and the errors are
+	 * returned by route id. If any route definition to delete does not exist, nothing
+	 * is changed either, provided the {@link RouteDefinitionWriter} applies changes
+	 * atomically.
+	 * @param batch the route definitions to save and delete
+	 * @return the response
+	 */
+	@PostMapping("/routes")
+	public Mono<ResponseEntity<Object>> update(
+			@RequestBody Mono<RouteDefinitionBatch> batch) {
+		return batch.flatMap(b -> {
+			Map<String, RouteDefinition> save = b.getSave() != null ? b.getSave()
+					: Collections.emptyMap();
+			List<String> delete = b.getDelete() != null ? b.getDelete()
+					: Collections.emptyList();
+			save.forEach((id, route) -> {
+				if (route != null) {
+					route.setId(id);
+				}
+			});
+
+			Map<String, List<String>> errors = validate(save, delete);
+			if (!errors.isEmpty()) {
+				return Mono.just(ResponseEntity.badRequest().body((Object) errors));
+			}
+
+			List<RouteDefinition> routes = new ArrayList<>(save.values());
+			if (log.isDebugEnabled()) {
+				log.debug("Saving routes: " + save.keySet() + ", deleting routes: "
+						+ delete);
+			}
+			return this.routeDefinitionWriter.update(routes, delete)
+					.then(Mono.defer(this::refreshRoutes))
+					.then(Mono.fromCallable(() -> ResponseEntity.ok().build()));
+		}).onErrorResume(t -> t instanceof NotFoundException,
+				t -> Mono.just(ResponseEntity.notFound().build()));
+	}
+
+	private Map<String, List<String>> validate(Map<String, RouteDefinition> save,
+			List<String> delete) {
+		Map<String, List<String>> errors = new LinkedHashMap<>();
+		save.forEach((id, route) -> {
+			List<String> routeErrors = new ArrayList<>();
+			if (!StringUtils.hasText(id)) {
+				routeErrors.add("id must not be empty");
+			}
+			if (route == null) {
+				routeErrors.add("route definition must not be null");
+			}
+			else {
+				validate(route, routeErrors);
+			}
+			if (delete.contains(id)) {
+				routeErrors.add("route is both saved and deleted");
+			}
+			if (!routeErrors.isEmpty()) {
+				errors.put(id, routeErrors);
+			}
+		});
+		Set<String> deleted = new HashSet<>();
+		for (String id : delete) {
+			if (!StringUtils.hasText(id)) {
+				errors.computeIfAbsent(String.valueOf(id), key -> new ArrayList<>())
+						.add("id must not be empty");
+			}
+			else if (!deleted.add(id)) {
+				errors.computeIfAbsent(id, key -> new ArrayList<>())
+						.add("route is deleted more than once");
+			}
+		}
+		return errors;
+	}
+
+	private void validate(RouteDefinition route, List<String> errors) {
+		if (route.getUri() == null) {
+			errors.add("uri must not be null");
+		}
+		else if (!route.getUri().isAbsolute()) {
+			errors.add("uri must be absolute: " + route.getUri());
+		}
+		if (route.getPredicates() == null || route.getPredicates().isEmpty()) {
+			errors.add("predicates must not be empty");
+		}
+		else {
+			for (PredicateDefinition predicate : route.getPredicates()) {
+				if (predicate == null || !StringUtils.hasText(predicate.getName())) {
+					errors.add("predicate name must not be empty");
+				}
+				else if (this.predicateNames != null
+						&& !this.predicateNames.contains(predicate.getName())) {
+					errors.add("unknown predicate: " + predicate.getName());
+				}
+			}
+		}
+		if (route.getFilters() != null) {
+			for (FilterDefinition filter : route.getFilters()) {
+				if (filter == null || !StringUtils.hasText(filter.getName())) {
+					errors.add("filter name must not be empty");
+				}
+				else if (this.GatewayFilters.stream()
+						.noneMatch(factory -> factory.name().equals(filter.getName()))) {
+					errors.add("unknown filter: " + filter.getName());
+				}
+			}
+		}
+		if (errors.isEmpty() && this.routeDefinitionRouteLocator != null) {
+			// binds the configurations without applying them, which may have side
+			// effects, e.g. the Weight predicate defines its group
+			try {
+				this.routeDefinitionRouteLocator.validate(route);
+			}
+			catch (RuntimeException e) {
+				errors.add("invalid route: " + e.getMessage());
+			}
+		}
+	}
+
 	@DeleteMapping("/routes/{id}")
 	public Mono<ResponseEntity<Object>> delete(@PathVariable String id) {
 		return this.routeDefinitionWriter.delete(Mono.just(id))
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.actuate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Route definitions to save and delete with a single request, applied as a whole or not
+ * at all.
+ */
+public class RouteDefinitionBatch {
+
+	/**
+	 * Route definitions to save by route id.
+	 */
+	private Map<String, RouteDefinition> save = new LinkedHashMap<>();
+
+	/**
+	 * Ids of the route definitions to delete.
+	 */
+	private List<String> delete = new ArrayList<>();
+
+	public Map<String, RouteDefinition> getSave() {
+		return save;
+	}
+
+	public void setSave(Map<String, RouteDefinition> save) {
+		this.save = save;
+	}
+
+	public List<String> getDelete() {
+		return delete;
+	}
+
+	public void setDelete(List<String> delete) {
+		this.delete = delete;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("save", save).append("delete", delete)
+				.toString();
+	}
+
+}
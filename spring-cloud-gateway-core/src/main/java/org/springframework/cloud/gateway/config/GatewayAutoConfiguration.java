@@ -58,6 +58,7 @@ import org.springframework.cloud.gateway.filter.factory.AddRequestParameterGatew
 import org.springframework.cloud.gateway.filter.factory.AddResponseHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.FallbackHeadersGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.HealthCheckGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.HystrixGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PrefixPathGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PreserveHostHeaderGatewayFilterFactory;
@@ -84,10 +85,14 @@ import org.springframework.cloud.gateway.filter.headers.ForwardedHeadersFilter;
 import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
 import org.springframework.cloud.gateway.filter.headers.RemoveHopByHopHeadersFilter;
 import org.springframework.cloud.gateway.filter.headers.XForwardedHeadersFilter;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker;
+import org.springframework.cloud.gateway.filter.loadbalancer.LoadBalancerStats;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceCache;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.PrincipalNameKeyResolver;
 import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
 import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RouteMatchCache;
 import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
 import org.springframework.cloud.gateway.handler.predicate.AfterRoutePredicateFactory;
 import org.springframework.cloud.gateway.handler.predicate.BeforeRoutePredicateFactory;
@@ -198,10 +203,16 @@ public class GatewayAutoConfiguration {
 				new CompositeRouteLocator(Flux.fromIterable(routeLocators)));
 	}
 
+	@Bean
+	public RouteRefreshProperties routeRefreshProperties() {
+		return new RouteRefreshProperties();
+	}
+
 	@Bean
 	public RouteRefreshListener routeRefreshListener(
-			ApplicationEventPublisher publisher) {
-		return new RouteRefreshListener(publisher);
+			ApplicationEventPublisher publisher, RouteRefreshProperties properties) {
+		return new RouteRefreshListener(publisher, properties.getDebounce(),
+				properties.getMaxDelay());
 	}
 
 	@Bean
@@ -217,9 +228,23 @@ public class GatewayAutoConfiguration {
 	@Bean
 	public RoutePredicateHandlerMapping routePredicateHandlerMapping(
 			FilteringWebHandler webHandler, RouteLocator routeLocator,
-			GlobalCorsProperties globalCorsProperties, Environment environment) {
-		return new RoutePredicateHandlerMapping(webHandler, routeLocator,
-				globalCorsProperties, environment);
+			GlobalCorsProperties globalCorsProperties, Environment environment,
+			ObjectProvider<RouteMatchCache> routeMatchCache) {
+		RoutePredicateHandlerMapping mapping = new RoutePredicateHandlerMapping(
+				webHandler, routeLocator, globalCorsProperties, environment);
+		mapping.setRouteMatchCache(routeMatchCache.getIfAvailable());
+		return mapping;
+	}
+
+	@Bean
+	public RouteMatchCacheProperties routeMatchCacheProperties() {
+		return new RouteMatchCacheProperties();
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "spring.cloud.gateway.route-match-cache.enabled")
+	public RouteMatchCache routeMatchCache(RouteMatchCacheProperties properties) {
+		return new RouteMatchCache(properties.getMaxSize());
 	}
 
 	@Bean
@@ -609,6 +634,20 @@ public class GatewayAutoConfiguration {
 			return new ReactorNettyWebSocketClient(httpClient);
 		}
 
+		@Bean
+		public HealthChecker healthChecker(HttpClient httpClient,
+				ObjectProvider<ServiceInstanceCache> serviceInstanceCache,
+				ObjectProvider<LoadBalancerStats> loadBalancerStats) {
+			return new HealthChecker(httpClient, serviceInstanceCache.getIfAvailable(),
+					loadBalancerStats.getIfAvailable());
+		}
+
+		@Bean
+		public HealthCheckGatewayFilterFactory healthCheckGatewayFilterFactory(
+				HealthChecker healthChecker) {
+			return new HealthCheckGatewayFilterFactory(healthChecker);
+		}
+
 	}
 
 	@Configuration
@@ -638,9 +677,19 @@ public class GatewayAutoConfiguration {
 				RouteDefinitionLocator routeDefinitionLocator,
 				List<GlobalFilter> globalFilters,
 				List<GatewayFilterFactory> GatewayFilters,
-				RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator) {
-			return new GatewayControllerEndpoint(routeDefinitionLocator, globalFilters,
-					GatewayFilters, routeDefinitionWriter, routeLocator);
+				List<RoutePredicateFactory> routePredicates,
+				RouteDefinitionWriter routeDefinitionWriter, RouteLocator routeLocator,
+				List<RouteLocator> routeLocators,
+				ObjectProvider<LoadBalancerStats> loadBalancerStats) {
+			GatewayControllerEndpoint endpoint = new GatewayControllerEndpoint(
+					routeDefinitionLocator, globalFilters, GatewayFilters,
+					routePredicates, routeDefinitionWriter, routeLocator);
+			endpoint.setLoadBalancerStats(loadBalancerStats.getIfAvailable());
+			routeLocators.stream()
+					.filter(locator -> locator instanceof RouteDefinitionRouteLocator)
+					.map(locator -> (RouteDefinitionRouteLocator) locator).findFirst()
+					.ifPresent(endpoint::setRouteDefinitionRouteLocator);
+			return endpoint;
 		}
 
 	}
@@ -27,6 +27,12 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.reactive.HttpHandlerAutoConfiguration;
 import org.springframework.cloud.gateway.filter.GatewayMetricsFilter;
+import org.springframework.cloud.gateway.filter.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.filter.loadbalancer.OutlierDetectorMetrics;
+import org.springframework.cloud.gateway.handler.RouteMatchCache;
+import org.springframework.cloud.gateway.handler.RouteMatchCacheMetrics;
+import org.springframework.cloud.gateway.route.RouteRefreshListener;
+import org.springframework.cloud.gateway.route.RouteRefreshMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.DispatcherHandler;
@@ -47,4 +53,29 @@ public class GatewayMetricsAutoConfiguration {
 		return new GatewayMetricsFilter(meterRegistry);
 	}
 
+	@Bean
+	@ConditionalOnBean(MeterRegistry.class)
+	@ConditionalOnProperty(name = "spring.cloud.gateway.route-match-cache.enabled")
+	public RouteMatchCacheMetrics routeMatchCacheMetrics(
+			RouteMatchCache routeMatchCache) {
+		return new RouteMatchCacheMetrics(routeMatchCache);
+	}
+
+	@Bean
+	@ConditionalOnBean(MeterRegistry.class)
+	public RouteRefreshMetrics routeRefreshMetrics(
+			RouteRefreshListener routeRefreshListener) {
+		return new RouteRefreshMetrics(routeRefreshListener);
+	}
+
+	@Bean
+	@ConditionalOnBean(MeterRegistry.class)
+	@ConditionalOnProperty(name = {
+			"spring.cloud.gateway.loadbalancer.reactive.enabled",
+			"spring.cloud.gateway.loadbalancer.reactive.outlier-detection.enabled" })
+	public OutlierDetectorMetrics outlierDetectorMetrics(
+			OutlierDetector outlierDetector) {
+		return new OutlierDetectorMetrics(outlierDetector);
+	}
+
 }
@@ -28,6 +28,7 @@ import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
 import org.springframework.cloud.gateway.support.NotFoundException;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -49,7 +50,8 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.G
 public class GatewayNoLoadBalancerClientAutoConfiguration {
 
 	@Bean
-	@ConditionalOnMissingBean(LoadBalancerClientFilter.class)
+	@ConditionalOnMissingBean({ LoadBalancerClientFilter.class,
+			ReactiveLoadBalancerClientFilter.class })
 	public NoLoadBalancerClientFilter noLoadBalancerClientFilter(
 			LoadBalancerProperties properties) {
 		return new NoLoadBalancerClientFilter(properties.isUse404());
@@ -29,6 +29,7 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 
@@ -56,6 +57,18 @@ public class GatewayProperties {
 	private List<MediaType> streamingMediaTypes = Arrays
 			.asList(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_STREAM_JSON);
 
+	/**
+	 * Compiler mode of SpEL expressions in route definition arguments. Defaults to the
+	 * spring.expression.compiler.mode Spring property.
+	 */
+	private SpelCompilerMode expressionCompilerMode;
+
+	/**
+	 * Number of threads that convert many changed route definitions to routes in
+	 * parallel. Route definitions are converted one after the other if 1 or less.
+	 */
+	private int routeConversionConcurrency = 1;
+
 	public List<RouteDefinition> getRoutes() {
 		return routes;
 	}
@@ -83,10 +96,28 @@ public class GatewayProperties {
 		this.streamingMediaTypes = streamingMediaTypes;
 	}
 
+	public SpelCompilerMode getExpressionCompilerMode() {
+		return expressionCompilerMode;
+	}
+
+	public void setExpressionCompilerMode(SpelCompilerMode expressionCompilerMode) {
+		this.expressionCompilerMode = expressionCompilerMode;
+	}
+
+	public int getRouteConversionConcurrency() {
+		return routeConversionConcurrency;
+	}
+
+	public void setRouteConversionConcurrency(int routeConversionConcurrency) {
+		this.routeConversionConcurrency = routeConversionConcurrency;
+	}
+
 	@Override
 	public String toString() {
 		return "GatewayProperties{" + "routes=" + routes + ", defaultFilters="
-				+ defaultFilters + ", streamingMediaTypes=" + streamingMediaTypes + '}';
+				+ defaultFilters + ", streamingMediaTypes=" + streamingMediaTypes
+				+ ", expressionCompilerMode=" + expressionCompilerMode
+				+ ", routeConversionConcurrency=" + routeConversionConcurrency + '}';
 	}
 
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.composite.CompositeDiscoveryClientAutoConfiguration;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.factory.ConsistentHashGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.loadbalancer.ConsistentHashInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.InstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.LeastOutstandingInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.LoadBalancerStats;
+import org.springframework.cloud.gateway.filter.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.filter.loadbalancer.PeakEwmaInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.RequestHashKeyResolver;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.DispatcherHandler;
+
+/**
+ * Resolves {@code lb://} urls with a {@link ReactiveLoadBalancerClientFilter} instead of
+ * the filters of {@link GatewayLoadBalancerClientAutoConfiguration} and
+ * {@link GatewayNoLoadBalancerClientAutoConfiguration}.
+ */
+@Configuration
+@ConditionalOnProperty("spring.cloud.gateway.loadbalancer.reactive.enabled")
+@ConditionalOnClass({ DiscoveryClient.class, DispatcherHandler.class })
+@AutoConfigureAfter(CompositeDiscoveryClientAutoConfiguration.class)
+@AutoConfigureBefore({ GatewayLoadBalancerClientAutoConfiguration.class,
+		GatewayNoLoadBalancerClientAutoConfiguration.class })
+@EnableConfigurationProperties({ LoadBalancerProperties.class,
+		ReactiveLoadBalancerProperties.class })
+public class GatewayReactiveLoadBalancerClientAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public LoadBalancerStats loadBalancerStats(
+			ReactiveLoadBalancerProperties properties) {
+		return new LoadBalancerStats(properties.getLatencyDecay());
+	}
+
+	@Bean
+	@ConditionalOnBean(DiscoveryClient.class)
+	@ConditionalOnMissingBean
+	public ServiceInstanceCache serviceInstanceCache(DiscoveryClient discoveryClient,
+			ReactiveLoadBalancerProperties properties, LoadBalancerStats stats,
+			ObjectProvider<InstanceSelector> instanceSelector) {
+		ServiceInstanceCache cache = new ServiceInstanceCache(discoveryClient,
+				properties.getInstancesRefreshInterval(),
+				properties.getDiscoveryConcurrency());
+		cache.addListener(stats::retain);
+		InstanceSelector selector = instanceSelector.getIfAvailable();
+		if (selector instanceof ConsistentHashInstanceSelector) {
+			// builds the lookup tables on the cache threads
+			cache.addListener(((ConsistentHashInstanceSelector) selector)::update);
+		}
+		return cache;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public InstanceSelector instanceSelector(LoadBalancerStats stats,
+			ReactiveLoadBalancerProperties properties) {
+		switch (properties.getSelector()) {
+		case PEAK_EWMA:
+			return new PeakEwmaInstanceSelector(stats, properties.getDefaultLatency());
+		case CONSISTENT_HASH:
+			ReactiveLoadBalancerProperties.ConsistentHash hash = properties
+					.getConsistentHash();
+			RequestHashKeyResolver keyResolver = new RequestHashKeyResolver(
+					hash.getHeader(), hash.getCookie(),
+					hash.getPathSegment() != null ? hash.getPathSegment() : -1);
+			return new ConsistentHashInstanceSelector(keyResolver,
+					hash.getTableSize());
+		default:
+			return new LeastOutstandingInstanceSelector(stats);
+		}
+	}
+
+	@Bean
+	@ConditionalOnProperty("spring.cloud.gateway.loadbalancer.reactive.outlier-detection.enabled")
+	@ConditionalOnMissingBean
+	public OutlierDetector outlierDetector(LoadBalancerStats stats,
+			ReactiveLoadBalancerProperties properties) {
+		return new OutlierDetector(stats, properties.getOutlierDetection());
+	}
+
+	@Bean
+	@ConditionalOnBean(ServiceInstanceCache.class)
+	@ConditionalOnMissingBean
+	public ConsistentHashGatewayFilterFactory consistentHashGatewayFilterFactory(
+			ServiceInstanceCache serviceInstanceCache, InstanceSelector instanceSelector,
+			ReactiveLoadBalancerProperties properties) {
+		if (instanceSelector instanceof ConsistentHashInstanceSelector) {
+			// shares the lookup tables with the routes without the filter
+			return new ConsistentHashGatewayFilterFactory(
+					(ConsistentHashInstanceSelector) instanceSelector);
+		}
+		ConsistentHashGatewayFilterFactory factory;
+		factory = new ConsistentHashGatewayFilterFactory(
+				properties.getConsistentHash().getTableSize());
+		serviceInstanceCache.addListener(factory.getSelector()::update);
+		return factory;
+	}
+
+	// GlobalFilter beans
+
+	@Bean
+	@ConditionalOnBean(ServiceInstanceCache.class)
+	@ConditionalOnMissingBean
+	public ReactiveLoadBalancerClientFilter reactiveLoadBalancerClientFilter(
+			ServiceInstanceCache serviceInstanceCache, InstanceSelector instanceSelector,
+			LoadBalancerStats stats, LoadBalancerProperties properties,
+			ObjectProvider<OutlierDetector> outlierDetector) {
+		return new ReactiveLoadBalancerClientFilter(serviceInstanceCache,
+				instanceSelector, stats, properties, outlierDetector.getIfAvailable());
+	}
+
+}
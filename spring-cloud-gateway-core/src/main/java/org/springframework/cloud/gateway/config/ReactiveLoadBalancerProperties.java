@@ -0,0 +1,352 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.gateway.filter.loadbalancer.ConsistentHashInstanceSelector;
+
+/**
+ * Configuration of the reactive load balancer of {@code lb://} urls.
+ */
+@ConfigurationProperties("spring.cloud.gateway.loadbalancer.reactive")
+public class ReactiveLoadBalancerProperties {
+
+	/**
+	 * Whether {@code lb://} urls are resolved from the instances of the DiscoveryClient
+	 * without blocking, instead of with the LoadBalancerClient.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Age after which the cached instances of a service are fetched again in the
+	 * background.
+	 */
+	private Duration instancesRefreshInterval = Duration.ofSeconds(30);
+
+	/**
+	 * Maximum number of concurrent DiscoveryClient calls.
+	 */
+	private int discoveryConcurrency = 4;
+
+	/**
+	 * How an instance is chosen out of the instances of a service.
+	 */
+	private Selector selector = Selector.LEAST_OUTSTANDING;
+
+	/**
+	 * Decay time of the latency average of every instance, used by the peak-ewma
+	 * selector.
+	 */
+	private Duration latencyDecay = Duration.ofSeconds(10);
+
+	/**
+	 * Latency of instances without a latency sample, used by the peak-ewma selector.
+	 */
+	private Duration defaultLatency = Duration.ofMillis(100);
+
+	/**
+	 * Request key and lookup table of the consistent-hash selector.
+	 */
+	private ConsistentHash consistentHash = new ConsistentHash();
+
+	/**
+	 * Ejection of instances that keep failing.
+	 */
+	private OutlierDetection outlierDetection = new OutlierDetection();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Duration getInstancesRefreshInterval() {
+		return instancesRefreshInterval;
+	}
+
+	public void setInstancesRefreshInterval(Duration instancesRefreshInterval) {
+		this.instancesRefreshInterval = instancesRefreshInterval;
+	}
+
+	public int getDiscoveryConcurrency() {
+		return discoveryConcurrency;
+	}
+
+	public void setDiscoveryConcurrency(int discoveryConcurrency) {
+		this.discoveryConcurrency = discoveryConcurrency;
+	}
+
+	public Selector getSelector() {
+		return selector;
+	}
+
+	public void setSelector(Selector selector) {
+		this.selector = selector;
+	}
+
+	public Duration getLatencyDecay() {
+		return latencyDecay;
+	}
+
+	public void setLatencyDecay(Duration latencyDecay) {
+		this.latencyDecay = latencyDecay;
+	}
+
+	public Duration getDefaultLatency() {
+		return defaultLatency;
+	}
+
+	public void setDefaultLatency(Duration defaultLatency) {
+		this.defaultLatency = defaultLatency;
+	}
+
+	public ConsistentHash getConsistentHash() {
+		return consistentHash;
+	}
+
+	public void setConsistentHash(ConsistentHash consistentHash) {
+		this.consistentHash = consistentHash;
+	}
+
+	public OutlierDetection getOutlierDetection() {
+		return outlierDetection;
+	}
+
+	public void setOutlierDetection(OutlierDetection outlierDetection) {
+		this.outlierDetection = outlierDetection;
+	}
+
+	@Override
+	public String toString() {
+		return "ReactiveLoadBalancerProperties{" + "enabled=" + enabled
+				+ ", instancesRefreshInterval=" + instancesRefreshInterval
+				+ ", discoveryConcurrency=" + discoveryConcurrency + ", selector="
+				+ selector + ", latencyDecay=" + latencyDecay + ", defaultLatency="
+				+ defaultLatency + ", consistentHash=" + consistentHash
+				+ ", outlierDetection=" + outlierDetection + '}';
+	}
+
+	public enum Selector {
+
+		/**
+		 * The instance with fewer outstanding requests out of two random instances.
+		 */
+		LEAST_OUTSTANDING,
+
+		/**
+		 * The instance with the lower latency average times outstanding requests out
+		 * of two random instances.
+		 */
+		PEAK_EWMA,
+
+		/**
+		 * The instance the key of the request is hashed to.
+		 */
+		CONSISTENT_HASH
+
+	}
+
+	public static class ConsistentHash {
+
+		/**
+		 * Header whose value is the key of a request.
+		 */
+		private String header;
+
+		/**
+		 * Cookie whose value is the key of a request without the header.
+		 */
+		private String cookie;
+
+		/**
+		 * Index, starting at 0, of the path segment that is the key of a request
+		 * without the header and cookie.
+		 */
+		private Integer pathSegment;
+
+		/**
+		 * Number of entries of the lookup table of every service, a prime number.
+		 */
+		private int tableSize = ConsistentHashInstanceSelector.DEFAULT_TABLE_SIZE;
+
+		public String getHeader() {
+			return header;
+		}
+
+		public void setHeader(String header) {
+			this.header = header;
+		}
+
+		public String getCookie() {
+			return cookie;
+		}
+
+		public void setCookie(String cookie) {
+			this.cookie = cookie;
+		}
+
+		public Integer getPathSegment() {
+			return pathSegment;
+		}
+
+		public void setPathSegment(Integer pathSegment) {
+			this.pathSegment = pathSegment;
+		}
+
+		public int getTableSize() {
+			return tableSize;
+		}
+
+		public void setTableSize(int tableSize) {
+			this.tableSize = tableSize;
+		}
+
+		@Override
+		public String toString() {
+			return "ConsistentHash{" + "header='" + header + '\'' + ", cookie='"
+					+ cookie + '\'' + ", pathSegment=" + pathSegment + ", tableSize="
+					+ tableSize + '}';
+		}
+
+	}
+
+	public static class OutlierDetection {
+
+		/**
+		 * Whether instances that keep failing are ejected from load balancing.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Number of failed requests in a row after which an instance is ejected.
+		 */
+		private int consecutiveFailures = 5;
+
+		/**
+		 * Share of failed requests within an interval, between 0 and 1, at which an
+		 * instance is ejected.
+		 */
+		private double failureRateThreshold = 0.5;
+
+		/**
+		 * Minimum number of requests within an interval for the failure rate to count.
+		 */
+		private int minimumRequests = 10;
+
+		/**
+		 * Interval over which the failure rate is computed.
+		 */
+		private Duration interval = Duration.ofSeconds(10);
+
+		/**
+		 * Time of the first ejection of an instance, doubled for every following
+		 * ejection in a row.
+		 */
+		private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+		/**
+		 * Maximum time of an ejection.
+		 */
+		private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+		/**
+		 * Maximum percentage of the instances of a service that may be ejected at the
+		 * same time.
+		 */
+		private int maxEjectionPercent = 50;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getConsecutiveFailures() {
+			return consecutiveFailures;
+		}
+
+		public void setConsecutiveFailures(int consecutiveFailures) {
+			this.consecutiveFailures = consecutiveFailures;
+		}
+
+		public double getFailureRateThreshold() {
+			return failureRateThreshold;
+		}
+
+		public void setFailureRateThreshold(double failureRateThreshold) {
+			this.failureRateThreshold = failureRateThreshold;
+		}
+
+		public int getMinimumRequests() {
+			return minimumRequests;
+		}
+
+		public void setMinimumRequests(int minimumRequests) {
+			this.minimumRequests = minimumRequests;
+		}
+
+		public Duration getInterval() {
+			return interval;
+		}
+
+		public void setInterval(Duration interval) {
+			this.interval = interval;
+		}
+
+		public Duration getBaseEjectionTime() {
+			return baseEjectionTime;
+		}
+
+		public void setBaseEjectionTime(Duration baseEjectionTime) {
+			this.baseEjectionTime = baseEjectionTime;
+		}
+
+		public Duration getMaxEjectionTime() {
+			return maxEjectionTime;
+		}
+
+		public void setMaxEjectionTime(Duration maxEjectionTime) {
+			this.maxEjectionTime = maxEjectionTime;
+		}
+
+		public int getMaxEjectionPercent() {
+			return maxEjectionPercent;
+		}
+
+		public void setMaxEjectionPercent(int maxEjectionPercent) {
+			this.maxEjectionPercent = maxEjectionPercent;
+		}
+
+		@Override
+		public String toString() {
+			return "OutlierDetection{" + "enabled=" + enabled + ", consecutiveFailures="
+					+ consecutiveFailures + ", failureRateThreshold="
+					+ failureRateThreshold + ", minimumRequests=" + minimumRequests
+					+ ", interval=" + interval + ", baseEjectionTime=" + baseEjectionTime
+					+ ", maxEjectionTime=" + maxEjectionTime + ", maxEjectionPercent="
+					+ maxEjectionPercent + '}';
+		}
+
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the cache of route lookup results.
+ */
+@ConfigurationProperties("spring.cloud.gateway.route-match-cache")
+public class RouteMatchCacheProperties {
+
+	/**
+	 * Whether route lookup results are cached by request method, host and path.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Maximum number of cached lookup results.
+	 */
+	private int maxSize = 10000;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public String toString() {
+		return "RouteMatchCacheProperties{" + "enabled=" + enabled + ", maxSize="
+				+ maxSize + '}';
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the route refreshes triggered by discovery and refresh events.
+ */
+@ConfigurationProperties("spring.cloud.gateway.route-refresh")
+public class RouteRefreshProperties {
+
+	/**
+	 * Time without further triggering events after which routes are refreshed. Events
+	 * within this window are coalesced into a single refresh. Zero refreshes on every
+	 * event.
+	 */
+	private Duration debounce = Duration.ZERO;
+
+	/**
+	 * Maximum time a refresh is delayed by a continuous burst of events.
+	 */
+	private Duration maxDelay = Duration.ofSeconds(10);
+
+	public Duration getDebounce() {
+		return debounce;
+	}
+
+	public void setDebounce(Duration debounce) {
+		this.debounce = debounce;
+	}
+
+	public Duration getMaxDelay() {
+		return maxDelay;
+	}
+
+	public void setMaxDelay(Duration maxDelay) {
+		this.maxDelay = maxDelay;
+	}
+
+	@Override
+	public String toString() {
+		return "RouteRefreshProperties{" + "debounce=" + debounce + ", maxDelay="
+				+ maxDelay + '}';
+	}
+
+}
@@ -17,33 +17,58 @@
 package org.springframework.cloud.gateway.discovery;
 
 import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.support.CachingSpelExpressionParser;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ParseException;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.StringUtils;
 
 /**
+ * Creates a route definition for every service of a {@link DiscoveryClient}.
+ * <p>
+ * The services and their instances are fetched concurrently on a bounded pool of
+ * threads, as {@link DiscoveryClient} calls may block, and emitted in the order of the
+ * services without blocking the subscriber. Expressions are parsed once. The definition
+ * of a service is only created again if the instance it is created from or the
+ * properties changed, otherwise the previous definition is emitted again.
+ *
  * TODO: change to RouteLocator? use java dsl
  *
  * @author Spencer Gibb
  */
-public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLocator {
+public class DiscoveryClientRouteDefinitionLocator
+		implements RouteDefinitionLocator, DisposableBean {
 
 	private static final Log log = LogFactory
 			.getLog(DiscoveryClientRouteDefinitionLocator.class);
@@ -56,6 +81,17 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 
 	private final SimpleEvaluationContext evalCtxt;
 
+	private final SpelExpressionParser parser = new CachingSpelExpressionParser();
+
+	private final ThreadPoolExecutor executor;
+
+	private final Scheduler scheduler;
+
+	private final int concurrency;
+
+	private volatile Definitions definitions = new Definitions(null,
+			Collections.emptyMap());
+
 	public DiscoveryClientRouteDefinitionLocator(DiscoveryClient discoveryClient,
 			DiscoveryLocatorProperties properties) {
 		this.discoveryClient = discoveryClient;
@@ -68,12 +104,23 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 		}
 		evalCtxt = SimpleEvaluationContext.forReadOnlyDataBinding().withInstanceMethods()
 				.build();
+
+		this.concurrency = Math.max(1, properties.getConcurrency());
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+				"discovery-client-locator-");
+		threadFactory.setDaemon(true);
+		this.executor = new ThreadPoolExecutor(this.concurrency, this.concurrency, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+		this.executor.allowCoreThreadTimeOut(true);
+		this.scheduler = Schedulers.fromExecutorService(this.executor);
 	}
 
 	@Override
 	public Flux<RouteDefinition> getRouteDefinitions() {
+		return Flux.defer(this::createRouteDefinitions);
+	}
 
-		SpelExpressionParser parser = new SpelExpressionParser();
+	private Flux<RouteDefinition> createRouteDefinitions() {
 		Expression includeExpr = parser
 				.parseExpression(properties.getIncludeExpression());
 		Expression urlExpr = parser.parseExpression(properties.getUrlExpression());
@@ -93,47 +140,79 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 			};
 		}
 
-		return Flux.fromIterable(discoveryClient.getServices())
-				.map(discoveryClient::getInstances)
-				.filter(instances -> !instances.isEmpty())
-				.map(instances -> instances.get(0)).filter(includePredicate)
-				.map(instance -> {
-					String serviceId = instance.getServiceId();
-
-					RouteDefinition routeDefinition = new RouteDefinition();
-					routeDefinition.setId(this.routeIdPrefix + serviceId);
-					String uri = urlExpr.getValue(evalCtxt, instance, String.class);
-					routeDefinition.setUri(URI.create(uri));
-
-					final ServiceInstance instanceForEval = new DelegatingServiceInstance(
-							instance, properties);
-
-					for (PredicateDefinition original : this.properties.getPredicates()) {
-						PredicateDefinition predicate = new PredicateDefinition();
-						predicate.setName(original.getName());
-						for (Map.Entry<String, String> entry : original.getArgs()
-								.entrySet()) {
-							String value = getValueFromExpr(evalCtxt, parser,
-									instanceForEval, entry);
-							predicate.addArg(entry.getKey(), value);
-						}
-						routeDefinition.getPredicates().add(predicate);
+		PropertiesKey propertiesKey = new PropertiesKey(properties);
+		Definitions previous = this.definitions;
+		Map<String, Definition> reusable = propertiesKey.equals(previous.propertiesKey)
+				? previous.byServiceId : Collections.emptyMap();
+		Map<String, Definition> current = new ConcurrentHashMap<>();
+
+		return getInstances().filter(instances -> !instances.isEmpty())
+				.map(instances -> instances.get(0)).map(instance -> {
+					InstanceKey instanceKey = new InstanceKey(instance);
+					Definition definition = reusable.get(instance.getServiceId());
+					if (definition == null || !definition.instanceKey.equals(instanceKey)) {
+						RouteDefinition routeDefinition = includePredicate.test(instance)
+								? createRouteDefinition(instance, urlExpr) : null;
+						definition = new Definition(instanceKey, routeDefinition);
 					}
+					current.put(instance.getServiceId(), definition);
+					return definition;
+				}).filter(definition -> definition.routeDefinition != null)
+				.map(definition -> definition.routeDefinition)
+				.doOnComplete(() -> this.definitions = new Definitions(propertiesKey,
+						current));
+	}
 
-					for (FilterDefinition original : this.properties.getFilters()) {
-						FilterDefinition filter = new FilterDefinition();
-						filter.setName(original.getName());
-						for (Map.Entry<String, String> entry : original.getArgs()
-								.entrySet()) {
-							String value = getValueFromExpr(evalCtxt, parser,
-									instanceForEval, entry);
-							filter.addArg(entry.getKey(), value);
-						}
-						routeDefinition.getFilters().add(filter);
-					}
+	/**
+	 * Fetches the instances of all services concurrently.
+	 * @return the instances in the order of the services
+	 */
+	private Flux<List<ServiceInstance>> getInstances() {
+		return Mono.fromCallable(discoveryClient::getServices)
+				.subscribeOn(this.scheduler).flatMapIterable(services -> services)
+				.flatMapSequential(serviceId -> Mono
+						.fromCallable(() -> discoveryClient.getInstances(serviceId))
+						.subscribeOn(this.scheduler), this.concurrency);
+	}
+
+	private RouteDefinition createRouteDefinition(ServiceInstance instance,
+			Expression urlExpr) {
+		String serviceId = instance.getServiceId();
+
+		RouteDefinition routeDefinition = new RouteDefinition();
+		routeDefinition.setId(this.routeIdPrefix + serviceId);
+		String uri = urlExpr.getValue(evalCtxt, instance, String.class);
+		routeDefinition.setUri(URI.create(uri));
+
+		final ServiceInstance instanceForEval = new DelegatingServiceInstance(instance,
+				properties);
 
-					return routeDefinition;
-				});
+		for (PredicateDefinition original : this.properties.getPredicates()) {
+			PredicateDefinition predicate = new PredicateDefinition();
+			predicate.setName(original.getName());
+			for (Map.Entry<String, String> entry : original.getArgs().entrySet()) {
+				String value = getValueFromExpr(evalCtxt, parser, instanceForEval, entry);
+				predicate.addArg(entry.getKey(), value);
+			}
+			routeDefinition.getPredicates().add(predicate);
+		}
+
+		for (FilterDefinition original : this.properties.getFilters()) {
+			FilterDefinition filter = new FilterDefinition();
+			filter.setName(original.getName());
+			for (Map.Entry<String, String> entry : original.getArgs().entrySet()) {
+				String value = getValueFromExpr(evalCtxt, parser, instanceForEval, entry);
+				filter.addArg(entry.getKey(), value);
+			}
+			routeDefinition.getFilters().add(filter);
+		}
+
+		return routeDefinition;
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
 	}
 
 	String getValueFromExpr(SimpleEvaluationContext evalCtxt, SpelExpressionParser parser,
@@ -150,6 +229,151 @@ public class DiscoveryClientRouteDefinitionLocator implements RouteDefinitionLoc
 		}
 	}
 
+	/**
+	 * The definitions of the last completed lookup by service id, with the properties
+	 * they were created with.
+	 */
+	private static final class Definitions {
+
+		private final PropertiesKey propertiesKey;
+
+		private final Map<String, Definition> byServiceId;
+
+		Definitions(PropertiesKey propertiesKey, Map<String, Definition> byServiceId) {
+			this.propertiesKey = propertiesKey;
+			this.byServiceId = byServiceId;
+		}
+
+	}
+
+	private static final class Definition {
+
+		private final InstanceKey instanceKey;
+
+		/**
+		 * Null if the service is not included.
+		 */
+		private final RouteDefinition routeDefinition;
+
+		Definition(InstanceKey instanceKey, RouteDefinition routeDefinition) {
+			this.instanceKey = instanceKey;
+			this.routeDefinition = routeDefinition;
+		}
+
+	}
+
+	/**
+	 * Copy of the properties of the instance a definition is created from.
+	 */
+	private static final class InstanceKey {
+
+		private final String serviceId;
+
+		private final String host;
+
+		private final int port;
+
+		private final boolean secure;
+
+		private final URI uri;
+
+		private final String scheme;
+
+		private final Map<String, String> metadata;
+
+		InstanceKey(ServiceInstance instance) {
+			this.serviceId = instance.getServiceId();
+			this.host = instance.getHost();
+			this.port = instance.getPort();
+			this.secure = instance.isSecure();
+			this.uri = instance.getUri();
+			this.scheme = instance.getScheme();
+			this.metadata = instance.getMetadata() != null
+					? new HashMap<>(instance.getMetadata()) : null;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			InstanceKey that = (InstanceKey) o;
+			return this.port == that.port && this.secure == that.secure
+					&& Objects.equals(this.serviceId, that.serviceId)
+					&& Objects.equals(this.host, that.host)
+					&& Objects.equals(this.uri, that.uri)
+					&& Objects.equals(this.scheme, that.scheme)
+					&& Objects.equals(this.metadata, that.metadata);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.serviceId, this.host, this.port, this.secure,
+					this.uri, this.scheme, this.metadata);
+		}
+
+	}
+
+	/**
+	 * Copy of the (mutable) properties definitions are created from.
+	 */
+	private static final class PropertiesKey {
+
+		private final String includeExpression;
+
+		private final String urlExpression;
+
+		private final boolean lowerCaseServiceId;
+
+		private final List<PredicateDefinition> predicates;
+
+		private final List<FilterDefinition> filters;
+
+		PropertiesKey(DiscoveryLocatorProperties properties) {
+			this.includeExpression = properties.getIncludeExpression();
+			this.urlExpression = properties.getUrlExpression();
+			this.lowerCaseServiceId = properties.isLowerCaseServiceId();
+			this.predicates = properties.getPredicates().stream().map(original -> {
+				PredicateDefinition predicate = new PredicateDefinition();
+				predicate.setName(original.getName());
+				predicate.setArgs(new LinkedHashMap<>(original.getArgs()));
+				return predicate;
+			}).collect(Collectors.toList());
+			this.filters = properties.getFilters().stream().map(original -> {
+				FilterDefinition filter = new FilterDefinition();
+				filter.setName(original.getName());
+				filter.setArgs(new LinkedHashMap<>(original.getArgs()));
+				return filter;
+			}).collect(Collectors.toList());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			PropertiesKey that = (PropertiesKey) o;
+			return this.lowerCaseServiceId == that.lowerCaseServiceId
+					&& Objects.equals(this.includeExpression, that.includeExpression)
+					&& Objects.equals(this.urlExpression, that.urlExpression)
+					&& Objects.equals(this.predicates, that.predicates)
+					&& Objects.equals(this.filters, that.filters);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.includeExpression, this.urlExpression,
+					this.lowerCaseServiceId, this.predicates, this.filters);
+		}
+
+	}
+
 	private static class DelegatingServiceInstance implements ServiceInstance {
 
 		final ServiceInstance delegate;
@@ -58,6 +58,12 @@ public class DiscoveryLocatorProperties {
 
 	private List<FilterDefinition> filters = new ArrayList<>();
 
+	/**
+	 * Maximum number of services whose instances are fetched from the DiscoveryClient
+	 * concurrently, defaults to 8.
+	 */
+	private int concurrency = 8;
+
 	public boolean isEnabled() {
 		return enabled;
 	}
@@ -114,6 +120,14 @@ public class DiscoveryLocatorProperties {
 		this.filters = filters;
 	}
 
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringCreator(this).append("enabled", enabled)
@@ -121,7 +135,8 @@ public class DiscoveryLocatorProperties {
 				.append("includeExpression", includeExpression)
 				.append("urlExpression", urlExpression)
 				.append("lowerCaseServiceId", lowerCaseServiceId)
-				.append("predicates", predicates).append("filters", filters).toString();
+				.append("predicates", predicates).append("filters", filters)
+				.append("concurrency", concurrency).toString();
 	}
 
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published once the routes requested by a {@link RefreshRoutesEvent} are in use, or
+ * refreshing them failed.
+ */
+public class RefreshRoutesResultEvent extends ApplicationEvent {
+
+	private final RefreshRoutesEvent refreshEvent;
+
+	private final Throwable throwable;
+
+	/**
+	 * Create a new ApplicationEvent for a failed refresh.
+	 * @param source the object on which the event initially occurred (never {@code null})
+	 * @param throwable the error that occurred
+	 */
+	public RefreshRoutesResultEvent(Object source, Throwable throwable) {
+		this(source, null, throwable);
+	}
+
+	/**
+	 * Create a new ApplicationEvent for a refresh.
+	 * @param source the object on which the event initially occurred (never {@code null})
+	 * @param refreshEvent the event that requested the refresh, if any
+	 * @param throwable the error that occurred or {@code null} if the refresh succeeded
+	 */
+	public RefreshRoutesResultEvent(Object source, RefreshRoutesEvent refreshEvent,
+			Throwable throwable) {
+		super(source);
+		this.refreshEvent = refreshEvent;
+		this.throwable = throwable;
+	}
+
+	/**
+	 * Create a new ApplicationEvent for a successful refresh.
+	 * @param source the object on which the event initially occurred (never {@code null})
+	 */
+	public RefreshRoutesResultEvent(Object source) {
+		this(source, null);
+	}
+
+	/**
+	 * @return the event that requested the refresh or {@code null}
+	 */
+	public RefreshRoutesEvent getRefreshEvent() {
+		return refreshEvent;
+	}
+
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	public boolean isSuccess() {
+		return throwable == null;
+	}
+
+}
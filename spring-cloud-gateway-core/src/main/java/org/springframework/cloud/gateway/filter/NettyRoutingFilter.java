@@ -18,6 +18,7 @@ package org.springframework.cloud.gateway.filter;
 
 import java.net.URI;
 import java.util.List;
+import java.util.function.Consumer;
 
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
@@ -47,6 +48,7 @@ import static org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_LISTENER_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.PRESERVE_HOST_HEADER_ATTRIBUTE;
@@ -131,6 +133,12 @@ public class NettyRoutingFilter implements GlobalFilter, Ordered {
 									.map(dataBuffer -> ((NettyDataBuffer) dataBuffer)
 											.getNativeBuffer()));
 				}).responseConnection((res, connection) -> {
+					Consumer<HttpClientResponse> listener = exchange
+							.getAttribute(CLIENT_RESPONSE_LISTENER_ATTR);
+					if (listener != null) {
+						listener.accept(res);
+					}
+
 					ServerHttpResponse response = exchange.getResponse();
 					// put headers and status so filters can modify the response
 					HttpHeaders headers = new HttpHeaders();
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.client.HttpClientResponse;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker;
+import org.springframework.cloud.gateway.filter.loadbalancer.InstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.InstanceStats;
+import org.springframework.cloud.gateway.filter.loadbalancer.LoadBalancerStats;
+import org.springframework.cloud.gateway.filter.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceCache;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import static org.springframework.cloud.gateway.filter.LoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_LISTENER_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_SCHEME_PREFIX_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_SELECTOR_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.containsEncodedParts;
+
+/**
+ * Resolves {@code lb://} urls like {@link LoadBalancerClientFilter}, without blocking
+ * calls. The instances of a service come from a {@link ServiceInstanceCache} and the
+ * instance is chosen by an {@link InstanceSelector}, the one of the
+ * {@link ServerWebExchangeUtils#LOAD_BALANCER_SELECTOR_ATTR} attribute if a route
+ * filter put one there, otherwise the one of this filter. The requests in flight to every
+ * instance are counted in the {@link LoadBalancerStats} until the rest of the chain
+ * completes, and the time until the {@link NettyRoutingFilter} receives the response
+ * headers is recorded as the latency of the instance. Without a response, the time until
+ * the chain completes is recorded instead, at least {@link InstanceStats#FAILURE_LATENCY}
+ * if it failed. With an {@link OutlierDetector}, the outcome of every request is
+ * recorded as well and ejected instances are not chosen. Instances found unhealthy by
+ * a {@link HealthChecker} are never chosen.
+ */
+public class ReactiveLoadBalancerClientFilter implements GlobalFilter, Ordered {
+
+	private static final Log log = LogFactory
+			.getLog(ReactiveLoadBalancerClientFilter.class);
+
+	private final ServiceInstanceCache instances;
+
+	private final InstanceSelector selector;
+
+	private final LoadBalancerStats stats;
+
+	private final LoadBalancerProperties properties;
+
+	private final OutlierDetector outlierDetector;
+
+	public ReactiveLoadBalancerClientFilter(ServiceInstanceCache instances,
+			InstanceSelector selector, LoadBalancerStats stats,
+			LoadBalancerProperties properties) {
+		this(instances, selector, stats, properties, null);
+	}
+
+	public ReactiveLoadBalancerClientFilter(ServiceInstanceCache instances,
+			InstanceSelector selector, LoadBalancerStats stats,
+			LoadBalancerProperties properties, OutlierDetector outlierDetector) {
+		this.instances = instances;
+		this.selector = selector;
+		this.stats = stats;
+		this.properties = properties;
+		this.outlierDetector = outlierDetector;
+	}
+
+	@Override
+	public int getOrder() {
+		return LOAD_BALANCER_CLIENT_FILTER_ORDER;
+	}
+
+	@Override
+	@SuppressWarnings("Duplicates")
+	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+		String schemePrefix = exchange.getAttribute(GATEWAY_SCHEME_PREFIX_ATTR);
+		if (url == null
+				|| (!"lb".equals(url.getScheme()) && !"lb".equals(schemePrefix))) {
+			return chain.filter(exchange);
+		}
+		// preserve the original url
+		addOriginalRequestUrl(exchange, url);
+
+		if (log.isTraceEnabled()) {
+			log.trace("ReactiveLoadBalancerClientFilter url before: " + url);
+		}
+
+		String serviceId = url.getHost();
+		return this.instances.getInstances(serviceId)
+				.flatMap(instances -> choose(serviceId, instances, exchange)
+						.switchIfEmpty(Mono.defer(() -> Mono.error(NotFoundException
+								.create(this.properties.isUse404(),
+										"Unable to find instance for " + serviceId))))
+						.flatMap(instance -> route(exchange, chain, url, schemePrefix,
+								serviceId, instance, instances)));
+	}
+
+	private Mono<ServiceInstance> choose(String serviceId,
+			List<ServiceInstance> instances, ServerWebExchange exchange) {
+		if (instances.isEmpty()) {
+			return Mono.empty();
+		}
+		List<ServiceInstance> candidates = this.stats.healthy(serviceId, instances);
+		if (candidates.isEmpty()) {
+			return Mono.empty();
+		}
+		if (this.outlierDetector != null) {
+			candidates = this.outlierDetector.available(serviceId, candidates);
+		}
+		InstanceSelector selector = exchange
+				.getAttributeOrDefault(LOAD_BALANCER_SELECTOR_ATTR, this.selector);
+		return selector.choose(serviceId, candidates, exchange);
+	}
+
+	private Mono<Void> route(ServerWebExchange exchange, GatewayFilterChain chain,
+			URI url, String schemePrefix, String serviceId, ServiceInstance instance,
+			List<ServiceInstance> instances) {
+		// if the `lb:<scheme>` mechanism was used, use `<scheme>` as the default,
+		// if the instance doesn't provide one.
+		String overrideScheme = instance.isSecure() ? "https" : "http";
+		if (schemePrefix != null) {
+			overrideScheme = url.getScheme();
+		}
+		URI requestUrl = reconstructURI(instance, overrideScheme,
+				exchange.getRequest().getURI());
+
+		if (log.isTraceEnabled()) {
+			log.trace("ReactiveLoadBalancerClientFilter url chosen: " + requestUrl);
+		}
+		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
+
+		InstanceStats instanceStats = this.stats.get(serviceId, instance);
+		instanceStats.requestStarted();
+		long start = System.nanoTime();
+		AtomicBoolean responded = new AtomicBoolean();
+		Consumer<HttpClientResponse> listener = response -> {
+			responded.set(true);
+			instanceStats.recordLatency(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			if (this.outlierDetector != null) {
+				this.outlierDetector.record(serviceId, instance, instances,
+						response.status().code() >= 500);
+			}
+		};
+		exchange.getAttributes().put(CLIENT_RESPONSE_LISTENER_ATTR, listener);
+		Mono<Void> result = chain.filter(exchange);
+		if (this.outlierDetector != null) {
+			result = result.doOnError(OutlierDetector::isFailure,
+					error -> this.outlierDetector.record(serviceId, instance, instances,
+							true));
+		}
+		return result.doFinally(signal -> {
+			// without a response, e.g. with a refused connection or another routing
+			// filter, the listener recorded no latency
+			if (!responded.get()) {
+				long latency = System.nanoTime() - start;
+				if (signal == SignalType.ON_ERROR) {
+					instanceStats.recordFailedLatency(latency, TimeUnit.NANOSECONDS);
+				}
+				else {
+					instanceStats.recordLatency(latency, TimeUnit.NANOSECONDS);
+				}
+			}
+			instanceStats.requestFinished();
+		});
+	}
+
+	private static URI reconstructURI(ServiceInstance instance, String overrideScheme,
+			URI original) {
+		String scheme = instance.getScheme() != null ? instance.getScheme()
+				: overrideScheme;
+		return UriComponentsBuilder.fromUri(original).scheme(scheme)
+				.host(instance.getHost()).port(instance.getPort())
+				.build(containsEncodedParts(original)).toUri();
+	}
+
+}
@@ -16,13 +16,19 @@
 
 package org.springframework.cloud.gateway.filter;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -32,8 +38,10 @@ import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cloud.gateway.event.PredicateArgsEvent;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.cloud.gateway.event.WeightDefinedEvent;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.support.ConfigurationUtils;
+import org.springframework.cloud.gateway.support.HashUtils;
 import org.springframework.cloud.gateway.support.WeightConfig;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.event.SmartApplicationListener;
@@ -63,11 +71,15 @@ public class WeightCalculatorWebFilter
 
 	private final ObjectProvider<RouteLocator> routeLocator;
 
-	private Random random = new Random();
+	private Random random;
 
 	private int order = WEIGHT_CALC_FILTER_ORDER;
 
-	private Map<String, GroupWeightConfig> groupWeights = new ConcurrentHashMap<>();
+	/**
+	 * Immutable, replaced as a whole when a weight is added.
+	 */
+	private volatile Map<String, GroupWeightConfig> groupWeights = Collections
+			.emptyMap();
 
 	/* for testing */ WeightCalculatorWebFilter() {
 		this(null, null);
@@ -86,13 +98,23 @@ public class WeightCalculatorWebFilter
 
 	/* for testing */
 	static Map<String, String> getWeights(ServerWebExchange exchange) {
-		Map<String, String> weights = exchange.getAttribute(WEIGHT_ATTR);
+		return exchange.getAttributeOrDefault(WEIGHT_ATTR, Collections.emptyMap());
+	}
 
-		if (weights == null) {
-			weights = new ConcurrentHashMap<>();
-			exchange.getAttributes().put(WEIGHT_ATTR, weights);
+	/**
+	 * Chooses the route of a weight group for an exchange. The key of a group with a
+	 * {@link KeyResolver} is only resolved here, when the group is first asked for. If
+	 * resolving the key fails or yields no key, the route is chosen at random.
+	 * @param exchange the current exchange
+	 * @param group the weight group
+	 * @return the chosen route id, empty if the group is unknown
+	 */
+	public static Mono<String> chooseRoute(ServerWebExchange exchange, String group) {
+		Map<String, String> weights = getWeights(exchange);
+		if (weights instanceof Weights) {
+			return ((Weights) weights).choose(group);
 		}
-		return weights;
+		return Mono.justOrEmpty(weights.get(group));
 	}
 
 	@Override
@@ -104,6 +126,10 @@ public class WeightCalculatorWebFilter
 		this.order = order;
 	}
 
+	/**
+	 * Sets the source of random numbers, {@link ThreadLocalRandom} by default.
+	 * @param random the random number generator
+	 */
 	public void setRandom(Random random) {
 		this.random = random;
 	}
@@ -156,15 +182,14 @@ public class WeightCalculatorWebFilter
 				.anyMatch(key -> key.startsWith(WeightConfig.CONFIG_PREFIX + "."));
 	}
 
-	/* for testing */ void addWeightConfig(WeightConfig weightConfig) {
+	/* for testing */ synchronized void addWeightConfig(WeightConfig weightConfig) {
 		String group = weightConfig.getGroup();
-		GroupWeightConfig c = groupWeights.get(group);
-		if (c == null) {
-			c = new GroupWeightConfig(group);
-			groupWeights.put(group, c);
-		}
-		GroupWeightConfig config = c;
+		GroupWeightConfig config = new GroupWeightConfig(group,
+				groupWeights.get(group));
 		config.weights.put(weightConfig.getRouteId(), weightConfig.getWeight());
+		if (weightConfig.getKeyResolver() != null) {
+			config.keyResolver = weightConfig.getKeyResolver();
+		}
 
 		// recalculate
 
@@ -172,17 +197,14 @@ public class WeightCalculatorWebFilter
 		int weightsSum = config.weights.values().stream().mapToInt(Integer::intValue)
 				.sum();
 
-		final AtomicInteger index = new AtomicInteger(0);
-		config.weights.forEach((routeId, weight) -> {
-			Double nomalizedWeight = weight / (double) weightsSum;
-			config.normalizedWeights.put(routeId, nomalizedWeight);
+		int index = 0;
+		for (Map.Entry<String, Integer> entry : config.weights.entrySet()) {
+			Double nomalizedWeight = entry.getValue() / (double) weightsSum;
+			config.normalizedWeights.put(entry.getKey(), nomalizedWeight);
 
 			// recalculate rangeIndexes
-			config.rangeIndexes.put(index.getAndIncrement(), routeId);
-		});
-
-		// TODO: calculate ranges
-		config.ranges.clear();
+			config.rangeIndexes.put(index++, entry.getKey());
+		}
 
 		config.ranges.add(0.0);
 
@@ -194,6 +216,12 @@ public class WeightCalculatorWebFilter
 			config.ranges.add(range);
 		}
 
+		config.compile();
+
+		Map<String, GroupWeightConfig> groupWeights = new HashMap<>(this.groupWeights);
+		groupWeights.put(group, config);
+		this.groupWeights = Collections.unmodifiableMap(groupWeights);
+
 		if (log.isTraceEnabled()) {
 			log.trace("Recalculated group weight config " + config);
 		}
@@ -205,41 +233,126 @@ public class WeightCalculatorWebFilter
 
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-		Map<String, String> weights = getWeights(exchange);
+		Map<String, GroupWeightConfig> groupWeights = this.groupWeights;
+		if (groupWeights.isEmpty()) {
+			return chain.filter(exchange);
+		}
+		// a route is only chosen once a weight predicate asks for its group
+		exchange.getAttributes().put(WEIGHT_ATTR,
+				new Weights(exchange, groupWeights, this.random));
+		return chain.filter(exchange);
+	}
+
+	/**
+	 * Chosen route ids by group. The route of a group is chosen when it is first
+	 * looked up, so groups that no predicate asks for cost nothing. Groups with a
+	 * {@link KeyResolver} choose by the key resolved by {@link #choose(Object)}, a
+	 * plain {@link #get(Object)} chooses at random unless the key was resolved before.
+	 * Exchanges are not accessed concurrently, so no synchronization is needed.
+	 */
+	private static final class Weights extends AbstractMap<String, String> {
+
+		private final ServerWebExchange exchange;
+
+		private final Map<String, GroupWeightConfig> groupWeights;
+
+		private final Random random;
 
-		for (String group : groupWeights.keySet()) {
-			GroupWeightConfig config = groupWeights.get(group);
+		private Map<String, String> chosen;
 
+		/**
+		 * Cached keys by resolver, so groups sharing a resolver resolve it once.
+		 */
+		private Map<KeyResolver, Mono<String>> keys;
+
+		Weights(ServerWebExchange exchange, Map<String, GroupWeightConfig> groupWeights,
+				Random random) {
+			this.exchange = exchange;
+			this.groupWeights = groupWeights;
+			this.random = random;
+		}
+
+		Mono<String> choose(Object group) {
+			String routeId = this.chosen != null ? this.chosen.get(group) : null;
+			if (routeId != null) {
+				return Mono.just(routeId);
+			}
+			GroupWeightConfig config = this.groupWeights.get(group);
 			if (config == null) {
-				if (log.isDebugEnabled()) {
-					log.debug("No GroupWeightConfig found for group: " + group);
-				}
-				continue; // nothing we can do, but this is odd
+				return Mono.empty();
+			}
+			if (config.keyResolver == null) {
+				return Mono.just(choose(config, null));
 			}
+			return key(config.keyResolver).map(key -> choose(config, key))
+					.switchIfEmpty(Mono.fromSupplier(() -> choose(config, null)));
+		}
 
-			double r = this.random.nextDouble();
+		private Mono<String> key(KeyResolver keyResolver) {
+			if (this.keys == null) {
+				this.keys = new IdentityHashMap<>(4);
+			}
+			return this.keys.computeIfAbsent(keyResolver, resolver -> Mono
+					.defer(() -> resolver.resolve(this.exchange)).onErrorResume(ex -> {
+						if (log.isDebugEnabled()) {
+							log.debug("Error resolving weight key, choosing at random",
+									ex);
+						}
+						return Mono.empty();
+					}).cache());
+		}
 
-			List<Double> ranges = config.ranges;
+		@Override
+		public boolean containsKey(Object group) {
+			return get(group) != null;
+		}
 
-			if (log.isTraceEnabled()) {
-				log.trace("Weight for group: " + group + ", ranges: " + ranges + ", r: "
-						+ r);
-			}
+		@Override
+		public String get(Object group) {
+			GroupWeightConfig config = this.groupWeights.get(group);
+			return config != null ? choose(config, null) : null;
+		}
 
-			for (int i = 0; i < ranges.size() - 1; i++) {
-				if (r >= ranges.get(i) && r < ranges.get(i + 1)) {
-					String routeId = config.rangeIndexes.get(i);
-					weights.put(group, routeId);
-					break;
+		/**
+		 * Chooses the route of a group by key, or at random if the key is null.
+		 */
+		private String choose(GroupWeightConfig config, String key) {
+			String routeId = this.chosen != null ? this.chosen.get(config.group) : null;
+			if (routeId != null) {
+				return routeId;
+			}
+			if (key != null) {
+				routeId = config.choose(key);
+				if (log.isTraceEnabled()) {
+					log.trace("Weight for group: " + config.group + ", weights: "
+							+ config.normalizedWeights + ", key: " + key
+							+ ", chosen route: " + routeId);
+				}
+			}
+			else {
+				double r = this.random != null ? this.random.nextDouble()
+						: ThreadLocalRandom.current().nextDouble();
+				routeId = config.choose(r);
+				if (log.isTraceEnabled()) {
+					log.trace("Weight for group: " + config.group + ", ranges: "
+							+ config.ranges + ", r: " + r + ", chosen route: "
+							+ routeId);
 				}
 			}
+			if (this.chosen == null) {
+				this.chosen = new HashMap<>(4);
+			}
+			this.chosen.put(config.group, routeId);
+			return routeId;
 		}
 
-		if (log.isTraceEnabled()) {
-			log.trace("Weights attr: " + weights);
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return this.groupWeights.keySet().stream()
+					.collect(Collectors.toMap(Function.identity(), this::get))
+					.entrySet();
 		}
 
-		return chain.filter(exchange);
 	}
 
 	/* for testing */ static class GroupWeightConfig {
@@ -254,8 +367,85 @@ public class WeightCalculatorWebFilter
 
 		List<Double> ranges = new ArrayList<>();
 
-		GroupWeightConfig(String group) {
+		/**
+		 * Upper bounds of the ranges of the routes in {@link #routeIds}.
+		 */
+		private double[] upperBounds;
+
+		private String[] routeIds;
+
+		private double[] normalized;
+
+		private long[] routeHashes;
+
+		KeyResolver keyResolver;
+
+		GroupWeightConfig(String group, GroupWeightConfig previous) {
 			this.group = group;
+			if (previous != null) {
+				this.weights.putAll(previous.weights);
+				this.keyResolver = previous.keyResolver;
+			}
+		}
+
+		void compile() {
+			int size = this.rangeIndexes.size();
+			this.upperBounds = new double[size];
+			this.routeIds = new String[size];
+			this.normalized = new double[size];
+			this.routeHashes = new long[size];
+			for (int i = 0; i < size; i++) {
+				this.upperBounds[i] = this.ranges.get(i + 1);
+				this.routeIds[i] = this.rangeIndexes.get(i);
+				this.normalized[i] = this.normalizedWeights.get(this.routeIds[i]);
+				this.routeHashes[i] = HashUtils.hash(this.routeIds[i]);
+			}
+		}
+
+		/**
+		 * Weighted rendezvous hashing: every route scores the key by its weight and a
+		 * hash of the key and the route id, the highest score wins. Routes are chosen
+		 * in proportion to their weights and changing the weight of one route only
+		 * moves keys from or to that route.
+		 * @param key the resolved key
+		 * @return the route id with the highest score
+		 */
+		String choose(String key) {
+			long keyHash = HashUtils.hash(key);
+			int best = 0;
+			double bestScore = -1;
+			for (int i = 0; i < this.routeIds.length; i++) {
+				long h = HashUtils.mix(keyHash ^ this.routeHashes[i]);
+				// uniform in (0, 1)
+				double u = ((h >>> 11) + 0.5) / (1L << 53);
+				double score = this.normalized[i] / -Math.log(u);
+				if (score > bestScore) {
+					best = i;
+					bestScore = score;
+				}
+			}
+			return this.routeIds[best];
+		}
+
+		/**
+		 * Binary search for the first range that ends after the given number.
+		 * @param r a number in {@code [0, 1)}
+		 * @return the route id of the range
+		 */
+		String choose(double r) {
+			int low = 0;
+			int high = this.upperBounds.length - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (this.upperBounds[mid] > r) {
+					high = mid;
+				}
+				else {
+					low = mid + 1;
+				}
+			}
+			// the last range also takes rounding errors of the sum of the weights
+			return this.routeIds[low];
 		}
 
 		@Override
@@ -263,7 +453,8 @@ public class WeightCalculatorWebFilter
 			return new ToStringCreator(this).append("group", group)
 					.append("weights", weights)
 					.append("normalizedWeights", normalizedWeights)
-					.append("rangeIndexes", rangeIndexes).toString();
+					.append("rangeIndexes", rangeIndexes)
+					.append("keyResolver", keyResolver).toString();
 		}
 
 	}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.loadbalancer.ConsistentHashInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.RequestHashKeyResolver;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_KEY_RESOLVER_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_SELECTOR_ATTR;
+
+/**
+ * Makes the reactive load balancer send the requests of a route with the same key to
+ * the same instance, whatever the selector of the other routes. The key is resolved by
+ * the configured {@link KeyResolver}, else from a header, a cookie or a path segment.
+ * The lookup tables of a service are shared by all routes.
+ */
+public class ConsistentHashGatewayFilterFactory extends
+		AbstractGatewayFilterFactory<ConsistentHashGatewayFilterFactory.Config>
+		implements DisposableBean {
+
+	/**
+	 * Header key.
+	 */
+	public static final String HEADER_KEY = "header";
+
+	private final ConsistentHashInstanceSelector selector;
+
+	private final boolean ownSelector;
+
+	/**
+	 * @param selector the selector to share, e.g. the one of all routes
+	 */
+	public ConsistentHashGatewayFilterFactory(ConsistentHashInstanceSelector selector) {
+		this(selector, false);
+	}
+
+	/**
+	 * Creates a selector of its own, which is disposed with this factory.
+	 * @param tableSize the size of the lookup tables, a prime number
+	 */
+	public ConsistentHashGatewayFilterFactory(int tableSize) {
+		this(new ConsistentHashInstanceSelector(tableSize), true);
+	}
+
+	private ConsistentHashGatewayFilterFactory(ConsistentHashInstanceSelector selector,
+			boolean ownSelector) {
+		super(Config.class);
+		this.selector = selector;
+		this.ownSelector = ownSelector;
+	}
+
+	public ConsistentHashInstanceSelector getSelector() {
+		return this.selector;
+	}
+
+	@Override
+	public List<String> shortcutFieldOrder() {
+		return Collections.singletonList(HEADER_KEY);
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		KeyResolver keyResolver = config.getKeyResolver();
+		if (keyResolver == null) {
+			keyResolver = new RequestHashKeyResolver(config.getHeader(),
+					config.getCookie(),
+					config.getPathSegment() != null ? config.getPathSegment() : -1);
+		}
+		KeyResolver resolver = keyResolver;
+		return (exchange, chain) -> {
+			exchange.getAttributes().put(LOAD_BALANCER_SELECTOR_ATTR, this.selector);
+			exchange.getAttributes().put(LOAD_BALANCER_KEY_RESOLVER_ATTR, resolver);
+			return chain.filter(exchange);
+		};
+	}
+
+	@Override
+	public void destroy() {
+		if (this.ownSelector) {
+			this.selector.destroy();
+		}
+	}
+
+	public static class Config {
+
+		private KeyResolver keyResolver;
+
+		private String header;
+
+		private String cookie;
+
+		private Integer pathSegment;
+
+		public KeyResolver getKeyResolver() {
+			return keyResolver;
+		}
+
+		public Config setKeyResolver(KeyResolver keyResolver) {
+			this.keyResolver = keyResolver;
+			return this;
+		}
+
+		public String getHeader() {
+			return header;
+		}
+
+		public Config setHeader(String header) {
+			this.header = header;
+			return this;
+		}
+
+		public String getCookie() {
+			return cookie;
+		}
+
+		public Config setCookie(String cookie) {
+			this.cookie = cookie;
+			return this;
+		}
+
+		public Integer getPathSegment() {
+			return pathSegment;
+		}
+
+		public Config setPathSegment(Integer pathSegment) {
+			this.pathSegment = pathSegment;
+			return this;
+		}
+
+	}
+
+}
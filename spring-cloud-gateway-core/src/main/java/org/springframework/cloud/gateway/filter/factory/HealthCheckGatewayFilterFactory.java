@@ -0,0 +1,209 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker.Settings;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker.Target;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Actively checks the health of the upstream of a route with a {@link HealthChecker},
+ * starting with the first request of the route. Requests to an unhealthy {@code http}
+ * or {@code https} route URI fail with {@code 503} right away. For {@code lb://} route
+ * URIs every instance of the service is checked and unhealthy instances are not chosen
+ * by the reactive load balancer.
+ */
+public class HealthCheckGatewayFilterFactory
+		extends AbstractGatewayFilterFactory<HealthCheckGatewayFilterFactory.Config> {
+
+	/**
+	 * Path key.
+	 */
+	public static final String PATH_KEY = "path";
+
+	/**
+	 * Interval key.
+	 */
+	public static final String INTERVAL_KEY = "interval";
+
+	private static final Log log = LogFactory
+			.getLog(HealthCheckGatewayFilterFactory.class);
+
+	private final HealthChecker healthChecker;
+
+	public HealthCheckGatewayFilterFactory(HealthChecker healthChecker) {
+		super(Config.class);
+		this.healthChecker = healthChecker;
+	}
+
+	@Override
+	public List<String> shortcutFieldOrder() {
+		return Arrays.asList(PATH_KEY, INTERVAL_KEY);
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		Settings settings = new Settings(config.getPath(), config.getInterval(),
+				config.getTimeout(), config.getHealthyThreshold(),
+				config.getUnhealthyThreshold());
+		return new HealthCheckGatewayFilter(settings);
+	}
+
+	private class HealthCheckGatewayFilter implements GatewayFilter {
+
+		private final Settings settings;
+
+		private volatile Target target;
+
+		private volatile boolean unsupported;
+
+		HealthCheckGatewayFilter(Settings settings) {
+			this.settings = settings;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+			if (route == null || this.unsupported) {
+				return chain.filter(exchange);
+			}
+			Target target = this.target;
+			if (target == null || target.isStopped()) {
+				target = watch(route.getUri());
+				if (target == null) {
+					return chain.filter(exchange);
+				}
+				this.target = target;
+			}
+			else {
+				target.touch();
+			}
+			if (!target.isHealthy() && isStatic(route.getUri())) {
+				return Mono.error(new ResponseStatusException(
+						HttpStatus.SERVICE_UNAVAILABLE,
+						"Upstream of route " + route.getId() + " is unhealthy"));
+			}
+			return chain.filter(exchange);
+		}
+
+		private Target watch(URI uri) {
+			if (isStatic(uri)) {
+				return healthChecker.watch(uri, this.settings);
+			}
+			if ("lb".equals(uri.getScheme())) {
+				if (healthChecker.isServiceCheckingAvailable()) {
+					return healthChecker.watchService(uri.getHost(), this.settings);
+				}
+				log.warn("Health checks of " + uri
+						+ " require the reactive load balancer, see "
+						+ "spring.cloud.gateway.loadbalancer.reactive.enabled");
+			}
+			else {
+				log.warn("Health checks are not supported for " + uri);
+			}
+			this.unsupported = true;
+			return null;
+		}
+
+		private boolean isStatic(URI uri) {
+			return "http".equals(uri.getScheme()) || "https".equals(uri.getScheme());
+		}
+
+		@Override
+		public String toString() {
+			return "[HealthCheck " + this.settings + "]";
+		}
+
+	}
+
+	public static class Config {
+
+		private String path = "/actuator/health";
+
+		private Duration interval = Duration.ofSeconds(10);
+
+		private Duration timeout = Duration.ofSeconds(2);
+
+		private int healthyThreshold = 2;
+
+		private int unhealthyThreshold = 3;
+
+		public String getPath() {
+			return path;
+		}
+
+		public Config setPath(String path) {
+			this.path = path;
+			return this;
+		}
+
+		public Duration getInterval() {
+			return interval;
+		}
+
+		public Config setInterval(Duration interval) {
+			this.interval = interval;
+			return this;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public Config setTimeout(Duration timeout) {
+			this.timeout = timeout;
+			return this;
+		}
+
+		public int getHealthyThreshold() {
+			return healthyThreshold;
+		}
+
+		public Config setHealthyThreshold(int healthyThreshold) {
+			this.healthyThreshold = healthyThreshold;
+			return this;
+		}
+
+		public int getUnhealthyThreshold() {
+			return unhealthyThreshold;
+		}
+
+		public Config setUnhealthyThreshold(int unhealthyThreshold) {
+			this.unhealthyThreshold = unhealthyThreshold;
+			return this;
+		}
+
+	}
+
+}
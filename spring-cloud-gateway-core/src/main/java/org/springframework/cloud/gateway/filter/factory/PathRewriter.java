@@ -0,0 +1,294 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled equivalent of {@code path.replaceAll(regexp, replacement)}. The pattern
+ * and the replacement are parsed once.
+ * <p>
+ * The common form of a literal prefix followed by a group capturing the rest of the
+ * path, e.g. {@code /foo/(?<segment>.*)} with {@code /${segment}}, is rewritten by
+ * plain string operations without a regular expression.
+ */
+abstract class PathRewriter {
+
+	private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+	private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
+
+	/**
+	 * Compiles a rewriter.
+	 * @param regexp the regular expression, as for {@link String#replaceAll}
+	 * @param replacement the replacement, as for {@link String#replaceAll}
+	 * @return the rewriter
+	 * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+	 * @throws IllegalArgumentException if the replacement is invalid
+	 */
+	static PathRewriter compile(String regexp, String replacement) {
+		Pattern pattern = Pattern.compile(regexp);
+		int groupCount = pattern.matcher("").groupCount();
+		List<Object> parts = parseReplacement(replacement, groupCount);
+
+		PatternRewriter rewriter = new PatternRewriter(pattern, parts);
+		PathRewriter prefix = PrefixRewriter.of(regexp, parts, rewriter);
+		return prefix != null ? prefix : rewriter;
+	}
+
+	/**
+	 * Rewrites the given path.
+	 * @param path the path
+	 * @return the rewritten path
+	 */
+	abstract String rewrite(String path);
+
+	/**
+	 * Parses the replacement into literal {@link String}s, group numbers
+	 * ({@link Integer}) and group names ({@link GroupName}), following the rules of
+	 * {@link Matcher#appendReplacement}.
+	 */
+	private static List<Object> parseReplacement(String replacement, int groupCount) {
+		List<Object> parts = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < replacement.length()) {
+			char c = replacement.charAt(i);
+			if (c == '\\') {
+				i++;
+				if (i == replacement.length()) {
+					throw new IllegalArgumentException(
+							"character to be escaped is missing");
+				}
+				literal.append(replacement.charAt(i++));
+			}
+			else if (c == '$') {
+				i++;
+				if (i == replacement.length()) {
+					throw new IllegalArgumentException(
+							"Illegal group reference: group index is missing");
+				}
+				if (literal.length() > 0) {
+					parts.add(literal.toString());
+					literal.setLength(0);
+				}
+				if (replacement.charAt(i) == '{') {
+					int end = replacement.indexOf('}', i);
+					if (end == -1 || end == i + 1) {
+						throw new IllegalArgumentException(
+								"named capturing group is missing trailing '}'");
+					}
+					parts.add(new GroupName(replacement.substring(i + 1, end)));
+					i = end + 1;
+				}
+				else {
+					int group = replacement.charAt(i++) - '0';
+					if (group < 0 || group > 9) {
+						throw new IllegalArgumentException("Illegal group reference");
+					}
+					// like Matcher, take further digits while the group exists
+					while (i < replacement.length()) {
+						int digit = replacement.charAt(i) - '0';
+						if (digit < 0 || digit > 9
+								|| group * 10 + digit > groupCount) {
+							break;
+						}
+						group = group * 10 + digit;
+						i++;
+					}
+					parts.add(group);
+				}
+			}
+			else {
+				literal.append(c);
+				i++;
+			}
+		}
+		if (literal.length() > 0) {
+			parts.add(literal.toString());
+		}
+		return parts;
+	}
+
+	private static boolean isLiteral(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (META_CHARS.indexOf(value.charAt(i)) != -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class GroupName {
+
+		private final String name;
+
+		GroupName(String name) {
+			this.name = name;
+		}
+
+	}
+
+	/**
+	 * Rewrites with a compiled {@link Pattern} and the parsed replacement.
+	 */
+	private static final class PatternRewriter extends PathRewriter {
+
+		private final Pattern pattern;
+
+		private final Object[] parts;
+
+		PatternRewriter(Pattern pattern, List<Object> parts) {
+			this.pattern = pattern;
+			this.parts = parts.toArray();
+		}
+
+		@Override
+		String rewrite(String path) {
+			Matcher matcher = this.pattern.matcher(path);
+			if (!matcher.find()) {
+				return path;
+			}
+			StringBuilder result = new StringBuilder(path.length() + 16);
+			int last = 0;
+			do {
+				result.append(path, last, matcher.start());
+				for (Object part : this.parts) {
+					String value;
+					if (part instanceof Integer) {
+						value = matcher.group((Integer) part);
+					}
+					else if (part instanceof GroupName) {
+						value = matcher.group(((GroupName) part).name);
+					}
+					else {
+						value = (String) part;
+					}
+					if (value != null) {
+						result.append(value);
+					}
+				}
+				last = matcher.end();
+			}
+			while (matcher.find());
+			result.append(path, last, path.length());
+			return result.toString();
+		}
+
+	}
+
+	/**
+	 * Rewrites {@code [^]literal(.*)} or {@code [^]literal(?<name>.*)} with a
+	 * replacement that only refers to that group. The first occurrence of the literal
+	 * is replaced together with the rest of the path, which is what the regular
+	 * expression does as long as the rest of the path contains no line terminators.
+	 */
+	private static final class PrefixRewriter extends PathRewriter {
+
+		private static final String ANY_GROUP = "(.*)";
+
+		private final boolean anchored;
+
+		private final String literal;
+
+		private final String before;
+
+		private final String after;
+
+		private final PathRewriter fallback;
+
+		private PrefixRewriter(boolean anchored, String literal, String before,
+				String after, PathRewriter fallback) {
+			this.anchored = anchored;
+			this.literal = literal;
+			this.before = before;
+			this.after = after;
+			this.fallback = fallback;
+		}
+
+		static PrefixRewriter of(String regexp, List<Object> parts,
+				PathRewriter fallback) {
+			boolean anchored = regexp.startsWith("^");
+			String expression = anchored ? regexp.substring(1) : regexp;
+
+			int groupStart = expression.lastIndexOf('(');
+			if (groupStart <= 0) {
+				return null;
+			}
+			String literal = expression.substring(0, groupStart);
+			String group = expression.substring(groupStart);
+			String groupName = null;
+			if (group.startsWith("(?<") && group.endsWith(">.*)")) {
+				groupName = group.substring(3, group.length() - 4);
+			}
+			else if (!group.equals(ANY_GROUP)) {
+				return null;
+			}
+			if (!isLiteral(literal) || (groupName != null && !isLiteral(groupName))) {
+				return null;
+			}
+
+			// replacement: [literal] reference-to-the-group [literal]
+			StringBuilder before = new StringBuilder();
+			StringBuilder after = new StringBuilder();
+			boolean referenced = false;
+			for (Object part : parts) {
+				if (part instanceof String) {
+					(referenced ? after : before).append((String) part);
+				}
+				else if (!referenced && (part.equals(1) || (groupName != null
+						&& part instanceof GroupName
+						&& ((GroupName) part).name.equals(groupName)))) {
+					referenced = true;
+				}
+				else {
+					return null;
+				}
+			}
+			if (!referenced) {
+				return null;
+			}
+			return new PrefixRewriter(anchored, literal, before.toString(),
+					after.toString(), fallback);
+		}
+
+		@Override
+		String rewrite(String path) {
+			int index = this.anchored ? (path.startsWith(this.literal) ? 0 : -1)
+					: path.indexOf(this.literal);
+			if (index == -1) {
+				return path;
+			}
+			int rest = index + this.literal.length();
+			for (int i = rest; i < path.length(); i++) {
+				if (LINE_TERMINATORS.indexOf(path.charAt(i)) != -1) {
+					// '.' does not match line terminators
+					return this.fallback.rewrite(path);
+				}
+			}
+			StringBuilder result = new StringBuilder(index + this.before.length()
+					+ (path.length() - rest) + this.after.length());
+			return result.append(path, 0, index).append(this.before)
+					.append(path, rest, path.length()).append(this.after).toString();
+		}
+
+	}
+
+}
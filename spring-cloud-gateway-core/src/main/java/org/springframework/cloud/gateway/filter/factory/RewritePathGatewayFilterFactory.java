@@ -53,11 +53,12 @@ public class RewritePathGatewayFilterFactory
 	@Override
 	public GatewayFilter apply(Config config) {
 		String replacement = config.replacement.replace("$\\", "$");
+		PathRewriter rewriter = PathRewriter.compile(config.regexp, replacement);
 		return (exchange, chain) -> {
 			ServerHttpRequest req = exchange.getRequest();
 			addOriginalRequestUrl(exchange, req.getURI());
 			String path = req.getURI().getRawPath();
-			String newPath = path.replaceAll(config.regexp, replacement);
+			String newPath = rewriter.rewrite(path);
 
 			ServerHttpRequest request = req.mutate().path(newPath).build();
 
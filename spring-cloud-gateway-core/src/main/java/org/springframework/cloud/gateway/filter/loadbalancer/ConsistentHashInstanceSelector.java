@@ -0,0 +1,376 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.support.HashUtils;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_KEY_RESOLVER_ATTR;
+
+/**
+ * Sends requests with the same key, as resolved by a {@link KeyResolver}, to the same
+ * instance, e.g. for sharded caches. Requests without a key go to a random instance.
+ * The key resolver of the {@link ServerWebExchangeUtils#LOAD_BALANCER_KEY_RESOLVER_ATTR}
+ * attribute takes precedence over the one of this selector, so that routes can hash
+ * their requests by different keys, e.g. with the {@code ConsistentHash} filter.
+ * <p>
+ * The key is hashed onto a Maglev lookup table built from the instance addresses,
+ * which spreads the keys evenly over the instances. When instances are added or
+ * removed, mostly only the keys of the removed instances and the keys taken over by
+ * the added ones move. The order in which the instances are listed does not matter.
+ * <p>
+ * The table of a service is built by {@link #update(String, List)}, which is meant to
+ * be a listener of the {@link ServiceInstanceCache}, so that requests only look it up.
+ * When a request gets some of the instances only, e.g. without ejected ones, the table
+ * of those is built in the background. Until then, the keys of the missing instances
+ * go to the instance of the next table entries that is present. Without updates, the
+ * table is built on the first request that sees different instance addresses.
+ */
+public class ConsistentHashInstanceSelector implements InstanceSelector, DisposableBean {
+
+	/**
+	 * Default size of the lookup table, should be a prime well above 100 times the
+	 * number of instances for the keys to be spread evenly.
+	 */
+	public static final int DEFAULT_TABLE_SIZE = 65537;
+
+	private static final int MAX_PARTIAL_TABLES = 16;
+
+	private static final long OFFSET_SEED = 0x9e3779b97f4a7c15L;
+
+	private static final long SKIP_SEED = 0xc2b2ae3d27d4eb4fL;
+
+	private static final Comparator<ServiceInstance> BY_ADDRESS = Comparator
+			.comparing(ConsistentHashInstanceSelector::address);
+
+	private final KeyResolver keyResolver;
+
+	private final int tableSize;
+
+	private final Map<String, Tables> tables = new ConcurrentHashMap<>();
+
+	private final ThreadPoolExecutor executor;
+
+	public ConsistentHashInstanceSelector(KeyResolver keyResolver) {
+		this(keyResolver, DEFAULT_TABLE_SIZE);
+	}
+
+	/**
+	 * Creates a selector that only hashes requests with the key resolver of the
+	 * {@link ServerWebExchangeUtils#LOAD_BALANCER_KEY_RESOLVER_ATTR} attribute.
+	 * @param tableSize the size of the lookup tables, a prime number
+	 */
+	public ConsistentHashInstanceSelector(int tableSize) {
+		this(exchange -> Mono.empty(), tableSize);
+	}
+
+	public ConsistentHashInstanceSelector(KeyResolver keyResolver, int tableSize) {
+		Assert.notNull(keyResolver, "keyResolver must not be null");
+		Assert.isTrue(isPrime(tableSize), "tableSize must be a prime number");
+		this.keyResolver = keyResolver;
+		this.tableSize = tableSize;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+				"consistent-hash-");
+		threadFactory.setDaemon(true);
+		this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), threadFactory);
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Builds the lookup table of the instances of a service, unless their addresses did
+	 * not change.
+	 * @param serviceId the service id
+	 * @param instances the current instances of the service
+	 */
+	public void update(String serviceId, List<ServiceInstance> instances) {
+		this.tables.put(serviceId,
+				tables(instances, this.tables.get(serviceId), true));
+	}
+
+	@Override
+	public Mono<ServiceInstance> choose(String serviceId,
+			List<ServiceInstance> instances, ServerWebExchange exchange) {
+		KeyResolver keyResolver = exchange
+				.getAttributeOrDefault(LOAD_BALANCER_KEY_RESOLVER_ATTR, this.keyResolver);
+		return keyResolver.resolve(exchange)
+				.map(key -> selectForKey(serviceId, instances, key))
+				.switchIfEmpty(Mono.fromSupplier(
+						() -> select(serviceId, instances, exchange)));
+	}
+
+	/**
+	 * Chooses a random instance, for requests without a key.
+	 */
+	@Override
+	public ServiceInstance select(String serviceId, List<ServiceInstance> instances,
+			ServerWebExchange exchange) {
+		return instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+	}
+
+	/**
+	 * Chooses the instance a key is mapped to.
+	 * @param serviceId the service id
+	 * @param instances the instances of the service, not empty
+	 * @param key the key of the request
+	 * @return the chosen instance
+	 */
+	public ServiceInstance selectForKey(String serviceId,
+			List<ServiceInstance> instances, String key) {
+		int index = (int) Long.remainderUnsigned(HashUtils.hash(key), this.tableSize);
+		Tables current = this.tables.get(serviceId);
+		if (current != null && current.source == instances) {
+			return current.all.instance(index);
+		}
+		BitSet members = current != null ? current.members(instances) : null;
+		if (members == null) {
+			// not built for these instances
+			current = tables(instances, current, false);
+			// concurrent rebuilds produce the same tables, the last one wins
+			this.tables.put(serviceId, current);
+			return current.all.instance(index);
+		}
+		if (members.cardinality() == current.all.instances.length) {
+			return current.all.instance(index);
+		}
+		Table partial = current.partial.get(members);
+		if (partial != null) {
+			return partial.instance(index);
+		}
+		buildPartial(current, members);
+		Table all = current.all;
+		while (!members.get(all.lookup[index])) {
+			index = index + 1 < this.tableSize ? index + 1 : 0;
+		}
+		return all.instance(index);
+	}
+
+	private Tables tables(List<ServiceInstance> source, Tables previous,
+			boolean updated) {
+		ServiceInstance[] instances = source.toArray(new ServiceInstance[0]);
+		Arrays.sort(instances, BY_ADDRESS);
+		String[] addresses = new String[instances.length];
+		for (int i = 0; i < instances.length; i++) {
+			addresses[i] = address(instances[i]);
+		}
+		if (previous != null && Arrays.equals(previous.all.addresses, addresses)) {
+			// same members, e.g. the instances were fetched again
+			return new Tables(source,
+					new Table(addresses, instances, previous.all.lookup),
+					previous.partial, updated || previous.updated);
+		}
+		return new Tables(source,
+				new Table(addresses, instances, populate(addresses)),
+				new ConcurrentHashMap<>(), updated);
+	}
+
+	private void buildPartial(Tables tables, BitSet members) {
+		if (!tables.building.add(members)) {
+			return;
+		}
+		try {
+			this.executor.execute(() -> {
+				try {
+					int count = members.cardinality();
+					String[] addresses = new String[count];
+					ServiceInstance[] instances = new ServiceInstance[count];
+					for (int i = members.nextSetBit(0), j = 0; i >= 0; i = members
+							.nextSetBit(i + 1), j++) {
+						addresses[j] = tables.all.addresses[i];
+						instances[j] = tables.all.instances[i];
+					}
+					if (tables.partial.size() >= MAX_PARTIAL_TABLES) {
+						tables.partial.clear();
+					}
+					tables.partial.put(members,
+							new Table(addresses, instances, populate(addresses)));
+				}
+				finally {
+					tables.building.remove(members);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// shut down, keep looking up the table of all instances
+			tables.building.remove(members);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Fills the lookup table by letting every instance in turn take the next free
+	 * entry of its own permutation of the entries, see "Maglev: A Fast and Reliable
+	 * Software Network Load Balancer".
+	 */
+	private int[] populate(String[] addresses) {
+		int size = this.tableSize;
+		int count = addresses.length;
+		long[] offset = new long[count];
+		long[] skip = new long[count];
+		long[] next = new long[count];
+		for (int i = 0; i < count; i++) {
+			offset[i] = Long.remainderUnsigned(HashUtils.hash(addresses[i], OFFSET_SEED),
+					size);
+			skip[i] = Long.remainderUnsigned(HashUtils.hash(addresses[i], SKIP_SEED),
+					size - 1) + 1;
+		}
+		int[] lookup = new int[size];
+		Arrays.fill(lookup, -1);
+		int filled = 0;
+		while (true) {
+			for (int i = 0; i < count; i++) {
+				int entry = (int) ((offset[i] + next[i] * skip[i]) % size);
+				while (lookup[entry] >= 0) {
+					next[i]++;
+					entry = (int) ((offset[i] + next[i] * skip[i]) % size);
+				}
+				lookup[entry] = i;
+				next[i]++;
+				if (++filled == size) {
+					return lookup;
+				}
+			}
+		}
+	}
+
+	private static String address(ServiceInstance instance) {
+		return instance.getHost() + ':' + instance.getPort();
+	}
+
+	private static boolean isPrime(int value) {
+		if (value < 2) {
+			return false;
+		}
+		for (int divisor = 2; (long) divisor * divisor <= value; divisor++) {
+			if (value % divisor == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Lookup table of the instances of a service, ordered by address.
+	 */
+	private static final class Table {
+
+		private final String[] addresses;
+
+		private final ServiceInstance[] instances;
+
+		private final int[] lookup;
+
+		Table(String[] addresses, ServiceInstance[] instances, int[] lookup) {
+			this.addresses = addresses;
+			this.instances = instances;
+			this.lookup = lookup;
+		}
+
+		ServiceInstance instance(int index) {
+			return this.instances[this.lookup[index]];
+		}
+
+	}
+
+	/**
+	 * Tables of the listed instances of a service and of subsets of them, which are
+	 * keyed by the positions of their instances in the table of all instances.
+	 */
+	private static final class Tables {
+
+		private final List<ServiceInstance> source;
+
+		private final Table all;
+
+		private final Map<BitSet, Table> partial;
+
+		private final Set<BitSet> building = ConcurrentHashMap.newKeySet();
+
+		// whether the tables were built by an update rather than by a request
+		private final boolean updated;
+
+		private final Map<ServiceInstance, Integer> byIdentity = new IdentityHashMap<>();
+
+		private final Map<String, Integer> byAddress = new HashMap<>();
+
+		Tables(List<ServiceInstance> source, Table all, Map<BitSet, Table> partial,
+				boolean updated) {
+			this.source = source;
+			this.all = all;
+			this.partial = partial;
+			this.updated = updated;
+			for (int i = 0; i < all.instances.length; i++) {
+				this.byIdentity.put(all.instances[i], i);
+				this.byAddress.put(all.addresses[i], i);
+			}
+		}
+
+		/**
+		 * Unknown instances are left out if the tables were built by an update, which
+		 * lists added instances before requests do, so they were removed since.
+		 * @return the positions of the given instances, null if the tables do not
+		 * cover them
+		 */
+		BitSet members(List<ServiceInstance> instances) {
+			BitSet members = new BitSet(this.all.instances.length);
+			for (int i = 0; i < instances.size(); i++) {
+				ServiceInstance instance = instances.get(i);
+				Integer position = this.byIdentity.get(instance);
+				if (position == null) {
+					// e.g. the same instance fetched again
+					position = this.byAddress.get(address(instance));
+				}
+				if (position != null) {
+					members.set(position);
+				}
+				else if (!this.updated) {
+					return null;
+				}
+			}
+			return members.isEmpty() ? null : members;
+		}
+
+	}
+
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.util.Assert;
+
+/**
+ * Actively checks the health of upstream targets by sending a {@code GET} request to a
+ * health path of every target at a fixed interval. A target is a static base URI or
+ * all instances of a service listed by a {@link ServiceInstanceCache}.
+ * <p>
+ * A healthy target becomes unhealthy after the configured number of failed probes in
+ * a row and becomes healthy again after the configured number of successful probes in
+ * a row. Probes fail unless they get a 2xx response within the timeout. The health of
+ * service instances is kept in their {@link InstanceStats}, so that unhealthy instances
+ * are not chosen for load balancing.
+ * <p>
+ * Probes are scheduled on a single dedicated thread and sent with the shared
+ * {@link HttpClient}. A target is no longer checked once it was not used for
+ * {@value #IDLE_INTERVALS} intervals.
+ */
+public class HealthChecker implements DisposableBean {
+
+	/**
+	 * Number of intervals without requests after which a target is no longer checked.
+	 */
+	public static final int IDLE_INTERVALS = 10;
+
+	private static final Log log = LogFactory.getLog(HealthChecker.class);
+
+	private final HttpClient httpClient;
+
+	private final ServiceInstanceCache instances;
+
+	private final LoadBalancerStats stats;
+
+	private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+	private volatile Scheduler scheduler;
+
+	private volatile boolean destroyed;
+
+	public HealthChecker(HttpClient httpClient) {
+		this(httpClient, null, null);
+	}
+
+	/**
+	 * @param httpClient the client to send probes with
+	 * @param instances the instances of services, null if services cannot be checked
+	 * @param stats the statistics to keep the health of service instances in, null if
+	 * services cannot be checked
+	 */
+	public HealthChecker(HttpClient httpClient, ServiceInstanceCache instances,
+			LoadBalancerStats stats) {
+		Assert.notNull(httpClient, "httpClient must not be null");
+		this.httpClient = httpClient;
+		this.instances = instances;
+		this.stats = stats;
+	}
+
+	/**
+	 * @return whether the instances of services can be checked, see
+	 * {@link #watchService(String, Settings)}
+	 */
+	public boolean isServiceCheckingAvailable() {
+		return this.instances != null && this.stats != null;
+	}
+
+	/**
+	 * Starts checking the scheme, host and port of the given URI, unless it is already
+	 * checked. The settings of the first caller apply.
+	 * @param uri an http or https URI
+	 * @param settings the health check settings
+	 * @return the checked target
+	 */
+	public Target watch(URI uri, Settings settings) {
+		String baseUri = uri.getScheme() + "://" + uri.getRawAuthority();
+		return watch(baseUri, () -> new UriTarget(baseUri, settings));
+	}
+
+	/**
+	 * Starts checking the instances of the given service, unless they are already
+	 * checked. The settings of the first caller apply.
+	 * @param serviceId the service id
+	 * @param settings the health check settings
+	 * @return the checked target
+	 * @throws IllegalStateException if services cannot be checked
+	 */
+	public Target watchService(String serviceId, Settings settings) {
+		if (!isServiceCheckingAvailable()) {
+			throw new IllegalStateException(
+					"Checking services requires the reactive load balancer");
+		}
+		return watch("lb://" + serviceId,
+				() -> new ServiceTarget(serviceId, settings));
+	}
+
+	private Target watch(String key, Supplier<Target> factory) {
+		Assert.state(!this.destroyed, "HealthChecker has been destroyed");
+		for (;;) {
+			Target target = this.targets.get(key);
+			if (target == null) {
+				target = this.targets.computeIfAbsent(key, k -> {
+					Target created = factory.get();
+					created.start(k);
+					return created;
+				});
+			}
+			target.touch();
+			if (!target.isStopped()) {
+				return target;
+			}
+			// stopped while idle but not yet removed
+			this.targets.remove(key, target);
+		}
+	}
+
+	/**
+	 * @return the number of targets being checked
+	 */
+	public int getTargetCount() {
+		return this.targets.size();
+	}
+
+	private Scheduler scheduler() {
+		Scheduler scheduler = this.scheduler;
+		if (scheduler == null) {
+			synchronized (this) {
+				scheduler = this.scheduler;
+				if (scheduler == null) {
+					scheduler = Schedulers.newSingle("health-check", true);
+					this.scheduler = scheduler;
+				}
+			}
+		}
+		return scheduler;
+	}
+
+	Mono<Boolean> probe(String uri, Settings settings) {
+		return this.httpClient.get().uri(uri)
+				.responseSingle((response, body) -> body.asByteArray()
+						.then(Mono.fromSupplier(() -> response.status().code())))
+				.map(status -> status >= 200 && status < 300)
+				.timeout(settings.getTimeout(), scheduler())
+				.doOnError(error -> {
+					if (log.isDebugEnabled()) {
+						log.debug("Health check of " + uri + " failed", error);
+					}
+				}).onErrorReturn(false);
+	}
+
+	@Override
+	public void destroy() {
+		this.destroyed = true;
+		for (Target target : new ArrayList<>(this.targets.values())) {
+			target.stop();
+		}
+		Scheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			scheduler.dispose();
+		}
+	}
+
+	/**
+	 * Settings of the health checks of a target.
+	 */
+	public static class Settings {
+
+		private final String path;
+
+		private final Duration interval;
+
+		private final Duration timeout;
+
+		private final int healthyThreshold;
+
+		private final int unhealthyThreshold;
+
+		public Settings(String path, Duration interval, Duration timeout,
+				int healthyThreshold, int unhealthyThreshold) {
+			Assert.hasText(path, "path must not be empty");
+			Assert.isTrue(interval != null && !interval.isNegative()
+					&& !interval.isZero(), "interval must be positive");
+			Assert.isTrue(timeout != null && !timeout.isNegative()
+					&& !timeout.isZero(), "timeout must be positive");
+			Assert.isTrue(healthyThreshold > 0,
+					"healthyThreshold must be greater than 0");
+			Assert.isTrue(unhealthyThreshold > 0,
+					"unhealthyThreshold must be greater than 0");
+			this.path = path.startsWith("/") ? path : "/" + path;
+			this.interval = interval;
+			this.timeout = timeout;
+			this.healthyThreshold = healthyThreshold;
+			this.unhealthyThreshold = unhealthyThreshold;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public Duration getInterval() {
+			return interval;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public int getHealthyThreshold() {
+			return healthyThreshold;
+		}
+
+		public int getUnhealthyThreshold() {
+			return unhealthyThreshold;
+		}
+
+		@Override
+		public String toString() {
+			return "Settings{" + "path='" + path + '\'' + ", interval=" + interval
+					+ ", timeout=" + timeout + ", healthyThreshold=" + healthyThreshold
+					+ ", unhealthyThreshold=" + unhealthyThreshold + '}';
+		}
+
+	}
+
+	/**
+	 * A checked target, checked until it is idle for {@value #IDLE_INTERVALS}
+	 * intervals.
+	 */
+	public abstract class Target {
+
+		final Settings settings;
+
+		private final long idleNanos;
+
+		private volatile long lastUsed = System.nanoTime();
+
+		private volatile boolean stopped;
+
+		private String key;
+
+		private Disposable probes;
+
+		Target(Settings settings) {
+			Assert.notNull(settings, "settings must not be null");
+			this.settings = settings;
+			this.idleNanos = settings.getInterval().toNanos() * IDLE_INTERVALS;
+		}
+
+		/**
+		 * @return false if the target was found to be unhealthy
+		 */
+		public abstract boolean isHealthy();
+
+		/**
+		 * Marks the target as used, so that it keeps being checked.
+		 */
+		public void touch() {
+			this.lastUsed = System.nanoTime();
+		}
+
+		/**
+		 * @return whether the target is no longer checked, see
+		 * {@link HealthChecker#IDLE_INTERVALS}
+		 */
+		public boolean isStopped() {
+			return this.stopped;
+		}
+
+		public Settings getSettings() {
+			return this.settings;
+		}
+
+		abstract Mono<Void> check();
+
+		void stopped() {
+		}
+
+		synchronized void start(String key) {
+			this.key = key;
+			Scheduler scheduler = scheduler();
+			this.probes = Flux
+					.interval(Duration.ZERO, this.settings.getInterval(), scheduler)
+					.onBackpressureDrop().concatMap(tick -> {
+						if (System.nanoTime() - this.lastUsed > this.idleNanos) {
+							stop();
+							return Mono.empty();
+						}
+						return check();
+					}, 1).subscribe(null, error -> log
+							.warn("Health checks of " + this.key + " failed", error));
+			if (log.isDebugEnabled()) {
+				log.debug("Started health checks of " + key + " with " + this.settings);
+			}
+		}
+
+		synchronized void stop() {
+			if (this.stopped) {
+				return;
+			}
+			this.stopped = true;
+			HealthChecker.this.targets.remove(this.key, this);
+			if (this.probes != null) {
+				this.probes.dispose();
+			}
+			stopped();
+			if (log.isDebugEnabled()) {
+				log.debug("Stopped health checks of " + this.key);
+			}
+		}
+
+	}
+
+	private final class UriTarget extends Target {
+
+		private final String healthUri;
+
+		private final HealthState state;
+
+		UriTarget(String baseUri, Settings settings) {
+			super(settings);
+			this.healthUri = baseUri + settings.getPath();
+			this.state = new HealthState(settings);
+		}
+
+		@Override
+		public boolean isHealthy() {
+			return this.state.isHealthy();
+		}
+
+		@Override
+		Mono<Void> check() {
+			return probe(this.healthUri, this.settings).doOnNext(healthy -> {
+				if (this.state.record(healthy)) {
+					log.warn(this.healthUri + " is now "
+							+ (healthy ? "healthy" : "unhealthy"));
+				}
+			}).then();
+		}
+
+	}
+
+	private final class ServiceTarget extends Target {
+
+		private final String serviceId;
+
+		private final Map<String, HealthState> states = new ConcurrentHashMap<>();
+
+		private volatile List<ServiceInstance> checked = Collections.emptyList();
+
+		ServiceTarget(String serviceId, Settings settings) {
+			super(settings);
+			this.serviceId = serviceId;
+		}
+
+		/**
+		 * @return whether any instance of the service is healthy
+		 */
+		@Override
+		public boolean isHealthy() {
+			List<ServiceInstance> checked = this.checked;
+			return checked.isEmpty() || !HealthChecker.this.stats
+					.healthy(this.serviceId, checked).isEmpty();
+		}
+
+		@Override
+		Mono<Void> check() {
+			return HealthChecker.this.instances.getInstances(this.serviceId)
+					.flatMap(instances -> {
+						this.checked = instances;
+						Set<String> addresses = new HashSet<>();
+						for (ServiceInstance instance : instances) {
+							addresses.add(address(instance));
+						}
+						this.states.keySet().retainAll(addresses);
+						return Flux.fromIterable(instances).flatMap(this::check)
+								.then();
+					});
+		}
+
+		private Mono<Void> check(ServiceInstance instance) {
+			String address = address(instance);
+			HealthState state = this.states.computeIfAbsent(address,
+					k -> new HealthState(this.settings));
+			String uri = instance.getUri().toString() + this.settings.getPath();
+			return probe(uri, this.settings).doOnNext(healthy -> {
+				if (state.record(healthy)) {
+					log.warn("Instance " + address + " of " + this.serviceId
+							+ " is now " + (healthy ? "healthy" : "unhealthy"));
+				}
+				HealthChecker.this.stats.get(this.serviceId, instance)
+						.setHealthy(state.isHealthy());
+			}).then();
+		}
+
+		@Override
+		void stopped() {
+			// without checks the health of the instances would never change
+			for (ServiceInstance instance : this.checked) {
+				HealthChecker.this.stats.get(this.serviceId, instance)
+						.setHealthy(true);
+			}
+		}
+
+		private String address(ServiceInstance instance) {
+			return instance.getHost() + ':' + instance.getPort();
+		}
+
+	}
+
+	/**
+	 * Consecutive probe results of a target.
+	 */
+	static final class HealthState {
+
+		private final int healthyThreshold;
+
+		private final int unhealthyThreshold;
+
+		private int successes;
+
+		private int failures;
+
+		private volatile boolean healthy = true;
+
+		HealthState(Settings settings) {
+			this.healthyThreshold = settings.getHealthyThreshold();
+			this.unhealthyThreshold = settings.getUnhealthyThreshold();
+		}
+
+		boolean isHealthy() {
+			return this.healthy;
+		}
+
+		/**
+		 * @param success whether the probe succeeded
+		 * @return whether the health changed
+		 */
+		synchronized boolean record(boolean success) {
+			if (success) {
+				this.failures = 0;
+				if (!this.healthy && ++this.successes >= this.healthyThreshold) {
+					this.healthy = true;
+					return true;
+				}
+			}
+			else {
+				this.successes = 0;
+				if (this.healthy && ++this.failures >= this.unhealthyThreshold) {
+					this.healthy = false;
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.List;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Chooses the instance of a service a request is sent to.
+ */
+@FunctionalInterface
+public interface InstanceSelector {
+
+	/**
+	 * Chooses an instance.
+	 * @param serviceId the service id
+	 * @param instances the instances of the service, not empty
+	 * @param exchange the current exchange
+	 * @return the chosen instance or null if none of them may be used
+	 */
+	ServiceInstance select(String serviceId, List<ServiceInstance> instances,
+			ServerWebExchange exchange);
+
+	/**
+	 * Chooses an instance, for selectors that depend on asynchronously resolved
+	 * information. Defaults to {@link #select(String, List, ServerWebExchange)}.
+	 * @param serviceId the service id
+	 * @param instances the instances of the service, not empty
+	 * @param exchange the current exchange
+	 * @return the chosen instance or empty if none of them may be used
+	 */
+	default Mono<ServiceInstance> choose(String serviceId,
+			List<ServiceInstance> instances, ServerWebExchange exchange) {
+		return Mono.justOrEmpty(select(serviceId, instances, exchange));
+	}
+
+}
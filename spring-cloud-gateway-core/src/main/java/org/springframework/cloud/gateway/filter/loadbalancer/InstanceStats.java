@@ -0,0 +1,271 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.Assert;
+
+/**
+ * Statistics of the requests the gateway sent to a service instance.
+ * <p>
+ * The latency is a peak exponentially weighted moving average: a sample above the
+ * current average replaces it at once, lower samples and the passing of time decay it
+ * with the given decay time. Without further samples the latency of an instance thus
+ * tends to zero, so that instances that were slow are tried again eventually.
+ * <p>
+ * The outcomes of requests and ejections of the instance are maintained by an
+ * {@link OutlierDetector}, the health of the instance by a {@link HealthChecker}.
+ */
+public class InstanceStats {
+
+	/**
+	 * Default decay time of the latency average.
+	 */
+	public static final Duration DEFAULT_LATENCY_DECAY = Duration.ofSeconds(10);
+
+	/**
+	 * Least latency recorded for a request that failed without a response, so that an
+	 * instance refusing connections right away does not look fast.
+	 */
+	public static final Duration FAILURE_LATENCY = Duration.ofSeconds(1);
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	private final double decayNanos;
+
+	// guarded by this
+	private double latencyNanos;
+
+	// guarded by this, System.nanoTime() of the last sample
+	private long latencyTimestamp;
+
+	// guarded by this
+	private boolean latencyRecorded;
+
+	// guarded by this
+	private int consecutiveFailures;
+
+	// guarded by this, outcomes since intervalStart
+	private int intervalRequests;
+
+	// guarded by this
+	private int intervalFailures;
+
+	// guarded by this
+	private long intervalStart;
+
+	// guarded by this
+	private int ejections;
+
+	// written under this, System.nanoTime() at the end of the last ejection
+	private volatile long ejectedUntil;
+
+	private volatile boolean ejected;
+
+	private volatile boolean healthy = true;
+
+	public InstanceStats() {
+		this(DEFAULT_LATENCY_DECAY);
+	}
+
+	public InstanceStats(Duration latencyDecay) {
+		Assert.isTrue(!latencyDecay.isNegative() && !latencyDecay.isZero(),
+				"latencyDecay must be positive");
+		this.decayNanos = latencyDecay.toNanos();
+	}
+
+	/**
+	 * @return the number of requests sent to the instance that did not complete yet
+	 */
+	public int getOutstanding() {
+		return this.outstanding.get();
+	}
+
+	/**
+	 * Records that a request is sent to the instance.
+	 */
+	public void requestStarted() {
+		this.outstanding.incrementAndGet();
+	}
+
+	/**
+	 * Records that a request sent to the instance completed, failed or was cancelled.
+	 */
+	public void requestFinished() {
+		this.outstanding.decrementAndGet();
+	}
+
+	/**
+	 * Records the latency of a request sent to the instance.
+	 * @param latency the time until the response headers were received
+	 * @param unit the unit of the latency
+	 */
+	public void recordLatency(long latency, TimeUnit unit) {
+		recordLatency(unit.toNanos(latency), System.nanoTime());
+	}
+
+	/**
+	 * Records the latency of a request sent to the instance that failed without a
+	 * response, at least {@link #FAILURE_LATENCY}.
+	 * @param latency the time until the request failed
+	 * @param unit the unit of the latency
+	 */
+	public void recordFailedLatency(long latency, TimeUnit unit) {
+		recordLatency(Math.max(unit.toNanos(latency), FAILURE_LATENCY.toNanos()),
+				System.nanoTime());
+	}
+
+	/**
+	 * @return the decayed latency average in nanoseconds, 0 if no latency was recorded
+	 */
+	public double getLatency() {
+		return getLatency(System.nanoTime());
+	}
+
+	/**
+	 * @return whether a latency was recorded, as opposed to one that decayed to 0
+	 */
+	public synchronized boolean hasLatency() {
+		return this.latencyRecorded;
+	}
+
+	synchronized void recordLatency(long latencyNanos, long now) {
+		if (latencyNanos > this.latencyNanos) {
+			this.latencyNanos = latencyNanos;
+		}
+		else {
+			double weight = weight(now);
+			this.latencyNanos = this.latencyNanos * weight
+					+ latencyNanos * (1 - weight);
+		}
+		this.latencyTimestamp = now;
+		this.latencyRecorded = true;
+	}
+
+	synchronized double getLatency(long now) {
+		// the same as recording a latency of 0, without updating the average
+		return this.latencyNanos * weight(now);
+	}
+
+	private double weight(long now) {
+		long elapsed = Math.max(now - this.latencyTimestamp, 0);
+		return Math.exp(-elapsed / this.decayNanos);
+	}
+
+	/**
+	 * @return the number of failed requests since the last successful one
+	 */
+	public synchronized int getConsecutiveFailures() {
+		return this.consecutiveFailures;
+	}
+
+	/**
+	 * @return the number of times the instance was ejected in a row
+	 */
+	public synchronized int getEjections() {
+		return this.ejections;
+	}
+
+	/**
+	 * @return whether the instance is currently ejected from load balancing
+	 */
+	public boolean isEjected() {
+		return isEjected(System.nanoTime());
+	}
+
+	/**
+	 * @return the remaining time of the current ejection, zero if not ejected
+	 */
+	public Duration getEjectionRemaining() {
+		long now = System.nanoTime();
+		return isEjected(now) ? Duration.ofNanos(this.ejectedUntil - now)
+				: Duration.ZERO;
+	}
+
+	/**
+	 * @return false if active health checks found the instance to be unhealthy
+	 */
+	public boolean isHealthy() {
+		return this.healthy;
+	}
+
+	public void setHealthy(boolean healthy) {
+		this.healthy = healthy;
+	}
+
+	boolean isEjected(long now) {
+		return this.ejected && this.ejectedUntil - now > 0;
+	}
+
+	synchronized void recordOutcome(boolean failure, long now, long intervalNanos) {
+		if (now - this.intervalStart >= intervalNanos) {
+			this.intervalStart = now;
+			this.intervalRequests = 0;
+			this.intervalFailures = 0;
+		}
+		this.intervalRequests++;
+		if (failure) {
+			this.intervalFailures++;
+			this.consecutiveFailures++;
+		}
+		else {
+			this.consecutiveFailures = 0;
+		}
+	}
+
+	synchronized int getIntervalRequests() {
+		return this.intervalRequests;
+	}
+
+	synchronized int getIntervalFailures() {
+		return this.intervalFailures;
+	}
+
+	/**
+	 * Ejects the instance for the base time, doubled for every previous ejection in a
+	 * row and capped at the maximum time. An ejection no longer counts once the
+	 * instance was back for the maximum time.
+	 */
+	synchronized long eject(long now, long baseNanos, long maxNanos) {
+		if (this.ejections > 0 && now - this.ejectedUntil > maxNanos) {
+			this.ejections = 0;
+		}
+		long duration = maxNanos;
+		if (this.ejections < 62 && baseNanos <= maxNanos >> this.ejections) {
+			duration = baseNanos << this.ejections;
+		}
+		this.ejections++;
+		this.ejectedUntil = now + duration;
+		this.ejected = true;
+		this.consecutiveFailures = 0;
+		this.intervalStart = now;
+		this.intervalRequests = 0;
+		this.intervalFailures = 0;
+		return duration;
+	}
+
+	@Override
+	public String toString() {
+		return "InstanceStats{" + "outstanding=" + outstanding + ", latency="
+				+ getLatency() + ", ejected=" + isEjected() + ", healthy=" + healthy
+				+ '}';
+	}
+
+}
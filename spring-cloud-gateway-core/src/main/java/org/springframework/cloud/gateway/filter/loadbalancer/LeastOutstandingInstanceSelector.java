@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+/**
+ * Chooses the instance with fewer outstanding requests out of two random instances
+ * ("power of two choices"). Unlike always choosing the least loaded instance, this does
+ * not send every new request to the same instance until its count catches up, while
+ * it still steers requests away from slow instances, whose requests pile up.
+ */
+public class LeastOutstandingInstanceSelector extends PowerOfTwoChoicesInstanceSelector {
+
+	public LeastOutstandingInstanceSelector(LoadBalancerStats stats) {
+		super(stats, InstanceStats::getOutstanding);
+	}
+
+}
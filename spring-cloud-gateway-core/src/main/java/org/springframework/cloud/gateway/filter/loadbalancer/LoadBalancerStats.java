@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * The {@link InstanceStats} of all instances, by service id and instance address. The
+ * service id is the one the instances were requested for, i.e. the host of an
+ * {@code lb://} URI, which may differ from {@link ServiceInstance#getServiceId()}. The
+ * statistics of instances that are no longer listed are dropped by
+ * {@link #retain(String, List)}.
+ */
+public class LoadBalancerStats {
+
+	private final Map<String, Map<String, InstanceStats>> services = new ConcurrentHashMap<>();
+
+	private final Duration latencyDecay;
+
+	public LoadBalancerStats() {
+		this(InstanceStats.DEFAULT_LATENCY_DECAY);
+	}
+
+	/**
+	 * @param latencyDecay the decay time of the latency average of every instance
+	 */
+	public LoadBalancerStats(Duration latencyDecay) {
+		this.latencyDecay = latencyDecay;
+	}
+
+	/**
+	 * @param serviceId the service id the instance was requested for
+	 * @param instance a service instance
+	 * @return the statistics of the instance
+	 */
+	public InstanceStats get(String serviceId, ServiceInstance instance) {
+		Map<String, InstanceStats> instances = this.services.get(serviceId);
+		if (instances == null) {
+			instances = this.services.computeIfAbsent(serviceId,
+					id -> new ConcurrentHashMap<>());
+		}
+		String key = key(instance);
+		// plain get first, computeIfAbsent locks on java 8 even if the entry exists
+		InstanceStats stats = instances.get(key);
+		if (stats == null) {
+			stats = instances.computeIfAbsent(key,
+					k -> new InstanceStats(this.latencyDecay));
+		}
+		return stats;
+	}
+
+	/**
+	 * @return the statistics of all instances by service id and instance address
+	 */
+	public Map<String, Map<String, InstanceStats>> getStats() {
+		return Collections.unmodifiableMap(this.services);
+	}
+
+	/**
+	 * Returns the instances that are not marked unhealthy, see
+	 * {@link InstanceStats#isHealthy()}.
+	 * @param serviceId the service id the instances were requested for
+	 * @param instances the instances of the service
+	 * @return the healthy instances, possibly none
+	 */
+	public List<ServiceInstance> healthy(String serviceId,
+			List<ServiceInstance> instances) {
+		return filter(serviceId, instances, InstanceStats::isHealthy);
+	}
+
+	/**
+	 * Returns the instances whose statistics match, the given list itself if all of
+	 * them do, so that the common case does not copy.
+	 * @param serviceId the service id the instances were requested for
+	 * @param instances the instances of the service
+	 * @param predicate the condition on the statistics of an instance
+	 * @return the matching instances, possibly none
+	 */
+	List<ServiceInstance> filter(String serviceId, List<ServiceInstance> instances,
+			Predicate<InstanceStats> predicate) {
+		List<ServiceInstance> matching = null;
+		for (int i = 0; i < instances.size(); i++) {
+			ServiceInstance instance = instances.get(i);
+			if (!predicate.test(get(serviceId, instance))) {
+				if (matching == null) {
+					// only copy if an instance does not match
+					matching = new ArrayList<>(instances.subList(0, i));
+				}
+			}
+			else if (matching != null) {
+				matching.add(instance);
+			}
+		}
+		return matching != null ? matching : instances;
+	}
+
+	/**
+	 * Drops the statistics of the instances of a service that are not listed.
+	 * @param serviceId the service id the instances were requested for
+	 * @param instances the current instances of the service
+	 */
+	public void retain(String serviceId, List<ServiceInstance> instances) {
+		Map<String, InstanceStats> stats = this.services.get(serviceId);
+		if (stats == null) {
+			return;
+		}
+		Set<String> keys = new HashSet<>();
+		for (ServiceInstance instance : instances) {
+			keys.add(key(instance));
+		}
+		stats.keySet().retainAll(keys);
+	}
+
+	private static String key(ServiceInstance instance) {
+		return instance.getHost() + ':' + instance.getPort();
+	}
+
+}
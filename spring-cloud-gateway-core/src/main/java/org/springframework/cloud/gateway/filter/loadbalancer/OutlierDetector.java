@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.config.ReactiveLoadBalancerProperties.OutlierDetection;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Ejects instances from load balancing after a number of failed requests in a row or
+ * once the share of failed requests within an interval reaches a threshold. Failures
+ * are 5xx responses, timeouts and connection errors, see {@link #isFailure(Throwable)}.
+ * <p>
+ * The first ejection of an instance lasts the base ejection time, every following one
+ * twice as long as the previous one, up to the maximum ejection time. No more instances
+ * of a service are ejected once the maximum percentage of them is ejected, which is
+ * checked and acted upon under a lock of the service. The state is kept in the
+ * {@link InstanceStats} of every instance.
+ */
+public class OutlierDetector {
+
+	private static final Log log = LogFactory.getLog(OutlierDetector.class);
+
+	private final LoadBalancerStats stats;
+
+	private final int consecutiveFailures;
+
+	private final double failureRateThreshold;
+
+	private final int minimumRequests;
+
+	private final long intervalNanos;
+
+	private final long baseEjectionNanos;
+
+	private final long maxEjectionNanos;
+
+	private final int maxEjectionPercent;
+
+	private final LongAdder ejectionCount = new LongAdder();
+
+	private final Map<String, Object> serviceLocks = new ConcurrentHashMap<>();
+
+	public OutlierDetector(LoadBalancerStats stats, OutlierDetection properties) {
+		Assert.isTrue(properties.getConsecutiveFailures() > 0,
+				"consecutiveFailures must be greater than 0");
+		Assert.isTrue(properties.getMaxEjectionPercent() >= 0
+				&& properties.getMaxEjectionPercent() <= 100,
+				"maxEjectionPercent must be between 0 and 100");
+		this.stats = stats;
+		this.consecutiveFailures = properties.getConsecutiveFailures();
+		this.failureRateThreshold = properties.getFailureRateThreshold();
+		this.minimumRequests = properties.getMinimumRequests();
+		this.intervalNanos = properties.getInterval().toNanos();
+		this.baseEjectionNanos = properties.getBaseEjectionTime().toNanos();
+		this.maxEjectionNanos = properties.getMaxEjectionTime().toNanos();
+		this.maxEjectionPercent = properties.getMaxEjectionPercent();
+	}
+
+	/**
+	 * Returns whether an error of the rest of the filter chain is a failure of the
+	 * instance: a timeout or a connection error.
+	 * @param error the error
+	 * @return whether the error counts as a failure
+	 */
+	public static boolean isFailure(Throwable error) {
+		for (Throwable ex = error; ex != null; ex = ex.getCause()) {
+			if (ex instanceof ConnectException || ex instanceof NoRouteToHostException
+					|| ex instanceof TimeoutException) {
+				return true;
+			}
+			if (ex instanceof ResponseStatusException && ((ResponseStatusException) ex)
+					.getStatus() == HttpStatus.GATEWAY_TIMEOUT) {
+				// the NettyRoutingFilter response timeout
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the instances that are not ejected. If all of them are ejected, e.g.
+	 * because the maximum ejection percentage was lowered, all of them are returned.
+	 * @param serviceId the service id the instances were requested for
+	 * @param instances the instances of the service
+	 * @return the instances to choose from
+	 */
+	public List<ServiceInstance> available(String serviceId,
+			List<ServiceInstance> instances) {
+		return available(serviceId, instances, System.nanoTime());
+	}
+
+	/**
+	 * Records the outcome of a request.
+	 * @param serviceId the service id the instances were requested for
+	 * @param instance the instance the request was sent to
+	 * @param instances the instances of the service
+	 * @param failure whether the request failed
+	 */
+	public void record(String serviceId, ServiceInstance instance,
+			List<ServiceInstance> instances, boolean failure) {
+		record(serviceId, instance, instances, failure, System.nanoTime());
+	}
+
+	/**
+	 * @return the number of ejections since startup
+	 */
+	public long getEjectionCount() {
+		return this.ejectionCount.sum();
+	}
+
+	/**
+	 * @return the number of currently ejected instances of all services
+	 */
+	public int getEjectedCount() {
+		int ejected = 0;
+		for (Map<String, InstanceStats> service : this.stats.getStats().values()) {
+			for (InstanceStats instance : service.values()) {
+				if (instance.isEjected()) {
+					ejected++;
+				}
+			}
+		}
+		return ejected;
+	}
+
+	List<ServiceInstance> available(String serviceId, List<ServiceInstance> instances,
+			long now) {
+		List<ServiceInstance> available = this.stats.filter(serviceId, instances,
+				instanceStats -> !instanceStats.isEjected(now));
+		return available.isEmpty() ? instances : available;
+	}
+
+	void record(String serviceId, ServiceInstance instance,
+			List<ServiceInstance> instances, boolean failure, long now) {
+		InstanceStats instanceStats = this.stats.get(serviceId, instance);
+		if (instanceStats.isEjected(now)) {
+			// a request that was sent before the ejection
+			return;
+		}
+		synchronized (instanceStats) {
+			instanceStats.recordOutcome(failure, now, this.intervalNanos);
+			if (!failure || !isOutlier(instanceStats)) {
+				return;
+			}
+			long duration;
+			// counting and ejecting under the lock of the service keeps concurrent
+			// ejections of its instances within the maximum percentage
+			synchronized (serviceLock(serviceId)) {
+				if (!mayEject(serviceId, instances, now)) {
+					return;
+				}
+				duration = instanceStats.eject(now, this.baseEjectionNanos,
+						this.maxEjectionNanos);
+			}
+			this.ejectionCount.increment();
+			if (log.isWarnEnabled()) {
+				log.warn("Ejecting " + serviceId + " instance "
+						+ instance.getHost() + ":" + instance.getPort() + " for "
+						+ Duration.ofNanos(duration));
+			}
+		}
+	}
+
+	private Object serviceLock(String serviceId) {
+		Object lock = this.serviceLocks.get(serviceId);
+		if (lock == null) {
+			lock = this.serviceLocks.computeIfAbsent(serviceId, id -> new Object());
+		}
+		return lock;
+	}
+
+	private boolean isOutlier(InstanceStats instanceStats) {
+		if (instanceStats.getConsecutiveFailures() >= this.consecutiveFailures) {
+			return true;
+		}
+		int requests = instanceStats.getIntervalRequests();
+		return requests >= Math.max(this.minimumRequests, 1)
+				&& instanceStats.getIntervalFailures() >= this.failureRateThreshold
+						* requests;
+	}
+
+	private boolean mayEject(String serviceId, List<ServiceInstance> instances,
+			long now) {
+		int ejected = 0;
+		for (ServiceInstance other : instances) {
+			if (this.stats.get(serviceId, other).isEjected(now)) {
+				ejected++;
+			}
+		}
+		return (ejected + 1) * 100 <= instances.size() * this.maxEjectionPercent;
+	}
+
+}
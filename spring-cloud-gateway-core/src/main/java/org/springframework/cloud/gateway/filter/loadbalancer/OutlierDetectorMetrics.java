@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the number of ejections and of currently ejected instances of an
+ * {@link OutlierDetector}.
+ */
+public class OutlierDetectorMetrics implements MeterBinder {
+
+	private final OutlierDetector outlierDetector;
+
+	public OutlierDetectorMetrics(OutlierDetector outlierDetector) {
+		this.outlierDetector = outlierDetector;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter
+				.builder("gateway.loadbalancer.ejections", this.outlierDetector,
+						OutlierDetector::getEjectionCount)
+				.description("Ejections of failing instances").register(registry);
+		Gauge.builder("gateway.loadbalancer.ejected", this.outlierDetector,
+				OutlierDetector::getEjectedCount)
+				.description("Currently ejected instances").register(registry);
+	}
+
+}
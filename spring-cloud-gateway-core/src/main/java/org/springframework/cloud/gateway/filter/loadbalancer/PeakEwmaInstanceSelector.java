@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.time.Duration;
+
+/**
+ * Chooses the cheaper out of two random instances, where the cost of an instance is its
+ * latency average times its outstanding requests plus one, see {@link InstanceStats}.
+ * Faster instances thus take more requests, until their outstanding requests make up
+ * for it.
+ * <p>
+ * An instance without a latency sample costs the default latency instead, so that a new
+ * or never answering instance is neither free nor shut out.
+ */
+public class PeakEwmaInstanceSelector extends PowerOfTwoChoicesInstanceSelector {
+
+	/**
+	 * Default latency of instances without a latency sample.
+	 */
+	public static final Duration DEFAULT_LATENCY = Duration.ofMillis(100);
+
+	public PeakEwmaInstanceSelector(LoadBalancerStats stats) {
+		this(stats, DEFAULT_LATENCY);
+	}
+
+	public PeakEwmaInstanceSelector(LoadBalancerStats stats, Duration defaultLatency) {
+		super(stats, instanceStats -> cost(instanceStats, defaultLatency.toNanos()));
+	}
+
+	private static double cost(InstanceStats stats, long defaultLatencyNanos) {
+		double latency = stats.hasLatency() ? stats.getLatency() : defaultLatencyNanos;
+		return latency * (stats.getOutstanding() + 1);
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Chooses the cheaper out of two random instances ("power of two choices"), by a cost
+ * computed from the {@link InstanceStats} of each instance. Unlike always choosing the
+ * cheapest instance, this does not send every new request to the same instance until
+ * its cost catches up.
+ */
+public class PowerOfTwoChoicesInstanceSelector implements InstanceSelector {
+
+	private final LoadBalancerStats stats;
+
+	private final ToDoubleFunction<InstanceStats> cost;
+
+	public PowerOfTwoChoicesInstanceSelector(LoadBalancerStats stats,
+			ToDoubleFunction<InstanceStats> cost) {
+		this.stats = stats;
+		this.cost = cost;
+	}
+
+	@Override
+	public ServiceInstance select(String serviceId, List<ServiceInstance> instances,
+			ServerWebExchange exchange) {
+		int size = instances.size();
+		if (size == 1) {
+			return instances.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(size);
+		// a second index distinct from the first
+		int second = random.nextInt(size - 1);
+		if (second >= first) {
+			second++;
+		}
+		ServiceInstance a = instances.get(first);
+		ServiceInstance b = instances.get(second);
+		double costA = this.cost.applyAsDouble(this.stats.get(serviceId, a));
+		double costB = this.cost.applyAsDouble(this.stats.get(serviceId, b));
+		return costB < costA ? b : a;
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Resolves the hash key of a request for a {@link ConsistentHashInstanceSelector}: the
+ * value of a header, else the value of a cookie, else a segment of the request path,
+ * whichever of them is configured and present first.
+ */
+public class RequestHashKeyResolver implements KeyResolver {
+
+	private final String header;
+
+	private final String cookie;
+
+	private final int pathSegment;
+
+	/**
+	 * @param header the header name or null
+	 * @param cookie the cookie name or null
+	 * @param pathSegment the index of the path segment, starting at 0, or -1
+	 */
+	public RequestHashKeyResolver(String header, String cookie, int pathSegment) {
+		Assert.isTrue(header != null || cookie != null || pathSegment >= 0,
+				"One of header, cookie or pathSegment must be set");
+		this.header = header;
+		this.cookie = cookie;
+		this.pathSegment = pathSegment;
+	}
+
+	@Override
+	public Mono<String> resolve(ServerWebExchange exchange) {
+		ServerHttpRequest request = exchange.getRequest();
+		if (this.header != null) {
+			String value = request.getHeaders().getFirst(this.header);
+			if (value != null) {
+				return Mono.just(value);
+			}
+		}
+		if (this.cookie != null) {
+			HttpCookie value = request.getCookies().getFirst(this.cookie);
+			if (value != null) {
+				return Mono.just(value.getValue());
+			}
+		}
+		if (this.pathSegment >= 0) {
+			int index = 0;
+			for (PathContainer.Element element : request.getPath()
+					.pathWithinApplication().elements()) {
+				if (element instanceof PathContainer.PathSegment
+						&& index++ == this.pathSegment) {
+					return Mono.just(element.value());
+				}
+			}
+		}
+		return Mono.empty();
+	}
+
+}
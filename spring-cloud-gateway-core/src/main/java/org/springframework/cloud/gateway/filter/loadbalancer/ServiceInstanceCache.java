@@ -0,0 +1,193 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Cached view of the instances a {@link DiscoveryClient} lists for each service.
+ * <p>
+ * {@link DiscoveryClient} calls may block, so they are made on a bounded pool of
+ * threads and never on the thread asking for the instances. The first request for a
+ * service waits for its instances and continues on the parallel scheduler, so that the
+ * rest of the request does not run on, and hold up, the pool. Once the instances are
+ * older than the refresh interval, the next request triggers a refresh in the
+ * background and is still served the cached instances. If a refresh fails, the cached
+ * instances are kept.
+ */
+public class ServiceInstanceCache implements DisposableBean {
+
+	private static final Log log = LogFactory.getLog(ServiceInstanceCache.class);
+
+	private final DiscoveryClient discoveryClient;
+
+	private final long refreshIntervalNanos;
+
+	private final ThreadPoolExecutor executor;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final List<BiConsumer<String, List<ServiceInstance>>> listeners = new CopyOnWriteArrayList<>();
+
+	public ServiceInstanceCache(DiscoveryClient discoveryClient, Duration refreshInterval,
+			int concurrency) {
+		Assert.notNull(discoveryClient, "discoveryClient must not be null");
+		Assert.notNull(refreshInterval, "refreshInterval must not be null");
+		Assert.isTrue(concurrency > 0, "concurrency must be greater than 0");
+		this.discoveryClient = discoveryClient;
+		this.refreshIntervalNanos = refreshInterval.toNanos();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+				"service-instance-cache-");
+		threadFactory.setDaemon(true);
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Adds a listener that is called with the service id and the instances whenever the
+	 * instances of a service were fetched.
+	 * @param listener the listener
+	 */
+	public void addListener(BiConsumer<String, List<ServiceInstance>> listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * @param serviceId the service id
+	 * @return the cached instances of the service, possibly empty
+	 */
+	public Mono<List<ServiceInstance>> getInstances(String serviceId) {
+		Entry entry = this.entries.get(serviceId);
+		if (entry == null) {
+			entry = this.entries.computeIfAbsent(serviceId, Entry::new);
+		}
+		return entry.get();
+	}
+
+	private List<ServiceInstance> fetch(String serviceId) {
+		List<ServiceInstance> instances = this.discoveryClient.getInstances(serviceId);
+		instances = instances != null
+				? Collections.unmodifiableList(new ArrayList<>(instances))
+				: Collections.emptyList();
+		for (BiConsumer<String, List<ServiceInstance>> listener : this.listeners) {
+			listener.accept(serviceId, instances);
+		}
+		return instances;
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+	}
+
+	private final class Entry {
+
+		private final String serviceId;
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private volatile CompletableFuture<List<ServiceInstance>> initial;
+
+		private volatile Mono<List<ServiceInstance>> instances;
+
+		private volatile long fetchedAt;
+
+		Entry(String serviceId) {
+			this.serviceId = serviceId;
+		}
+
+		Mono<List<ServiceInstance>> get() {
+			Mono<List<ServiceInstance>> cached = this.instances;
+			if (cached == null) {
+				return Mono.fromFuture(initial())
+						.onErrorMap(CompletionException.class, Throwable::getCause)
+						.publishOn(Schedulers.parallel());
+			}
+			if (System.nanoTime() - this.fetchedAt > refreshIntervalNanos
+					&& this.refreshing.compareAndSet(false, true)) {
+				refresh();
+			}
+			return cached;
+		}
+
+		private synchronized CompletableFuture<List<ServiceInstance>> initial() {
+			if (this.initial == null || this.initial.isCompletedExceptionally()) {
+				// a failed first fetch is retried by the next request
+				this.initial = CompletableFuture.supplyAsync(() -> {
+					List<ServiceInstance> fetched = fetch(this.serviceId);
+					update(fetched);
+					return fetched;
+				}, executor);
+			}
+			return this.initial;
+		}
+
+		private void refresh() {
+			try {
+				executor.execute(() -> {
+					try {
+						update(fetch(this.serviceId));
+					}
+					catch (RuntimeException e) {
+						log.warn("Unable to refresh the instances of " + this.serviceId
+								+ ", keeping the previous instances", e);
+					}
+					finally {
+						this.refreshing.set(false);
+					}
+				});
+			}
+			catch (RejectedExecutionException e) {
+				// shut down, keep serving the cached instances
+				this.refreshing.set(false);
+			}
+		}
+
+		private void update(List<ServiceInstance> fetched) {
+			this.fetchedAt = System.nanoTime();
+			this.instances = Mono.just(fetched);
+		}
+
+	}
+
+}
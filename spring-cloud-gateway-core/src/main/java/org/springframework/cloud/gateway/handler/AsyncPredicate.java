@@ -17,34 +17,286 @@
 package org.springframework.cloud.gateway.handler;
 
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.reactivestreams.Publisher;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.springframework.util.Assert;
 
 /**
+ * A predicate that is evaluated asynchronously.
+ * <p>
+ * Predicates backed by a synchronous {@link Predicate}, and combinations of only such
+ * predicates, report {@link #isSynchronous()} and can be evaluated with
+ * {@link #test(Object)} as a plain boolean expression, without creating a
+ * {@link Publisher}.
+ * <p>
+ * Composed predicates short-circuit: the second operand of {@link #and} and
+ * {@link #or} is only evaluated if the first one did not already decide the result, so
+ * cheap predicates should come first.
+ *
  * @author Ben Hale
  */
 public interface AsyncPredicate<T> extends Function<T, Publisher<Boolean>> {
 
 	default AsyncPredicate<T> and(AsyncPredicate<? super T> other) {
-		Assert.notNull(other, "other must not be null");
-
-		return t -> Flux.zip(apply(t), other.apply(t))
-				.map(tuple -> tuple.getT1() && tuple.getT2());
+		return new AndAsyncPredicate<>(this, other);
 	}
 
 	default AsyncPredicate<T> negate() {
-		return t -> Mono.from(apply(t)).map(b -> !b);
+		return new NegateAsyncPredicate<>(this);
 	}
 
 	default AsyncPredicate<T> or(AsyncPredicate<? super T> other) {
-		Assert.notNull(other, "other must not be null");
+		return new OrAsyncPredicate<>(this, other);
+	}
+
+	/**
+	 * @return whether this predicate can be evaluated with {@link #test(Object)}
+	 */
+	default boolean isSynchronous() {
+		return false;
+	}
+
+	/**
+	 * Evaluates a synchronous predicate without creating a {@link Publisher}.
+	 * @param t the input argument
+	 * @return whether the input matches the predicate
+	 * @throws UnsupportedOperationException if the predicate is not synchronous
+	 */
+	default boolean test(T t) {
+		throw new UnsupportedOperationException(
+				"test() is only supported by synchronous predicates");
+	}
+
+	/**
+	 * {@link AsyncPredicate} backed by a synchronous {@link Predicate}, optionally
+	 * remembering the configuration it was created from.
+	 *
+	 * @param <T> the type of the input to the predicate
+	 */
+	class DefaultAsyncPredicate<T> implements AsyncPredicate<T> {
+
+		private static final Mono<Boolean> TRUE = Mono.just(true);
+
+		private static final Mono<Boolean> FALSE = Mono.just(false);
+
+		private final Predicate<? super T> delegate;
+
+		private final Object config;
+
+		public DefaultAsyncPredicate(Predicate<? super T> delegate) {
+			this(delegate, null);
+		}
+
+		public DefaultAsyncPredicate(Predicate<? super T> delegate, Object config) {
+			Assert.notNull(delegate, "predicate must not be null");
+			this.delegate = delegate;
+			this.config = config;
+		}
+
+		/**
+		 * @param result a predicate result
+		 * @return a shared publisher emitting the given result
+		 */
+		static Mono<Boolean> just(boolean result) {
+			return result ? TRUE : FALSE;
+		}
+
+		@Override
+		public Publisher<Boolean> apply(T t) {
+			return just(test(t));
+		}
+
+		@Override
+		public boolean isSynchronous() {
+			return true;
+		}
+
+		@Override
+		public boolean test(T t) {
+			return this.delegate.test(t);
+		}
+
+		/**
+		 * @return the configuration the predicate was created from, may be null
+		 */
+		public Object getConfig() {
+			return config;
+		}
+
+		@Override
+		public String toString() {
+			return this.config != null ? this.config.toString()
+					: this.delegate.toString();
+		}
+
+	}
+
+	/**
+	 * {@link AsyncPredicate} that is the logical {@code and} of two other predicates.
+	 *
+	 * @param <T> the type of the input to the predicate
+	 */
+	class AndAsyncPredicate<T> implements AsyncPredicate<T> {
+
+		private final AsyncPredicate<? super T> left;
+
+		private final AsyncPredicate<? super T> right;
+
+		private final boolean synchronous;
+
+		public AndAsyncPredicate(AsyncPredicate<? super T> left,
+				AsyncPredicate<? super T> right) {
+			Assert.notNull(left, "left must not be null");
+			Assert.notNull(right, "other must not be null");
+			this.left = left;
+			this.right = right;
+			this.synchronous = left.isSynchronous() && right.isSynchronous();
+		}
+
+		@Override
+		public Publisher<Boolean> apply(T t) {
+			if (this.synchronous) {
+				return DefaultAsyncPredicate.just(test(t));
+			}
+			// only evaluate the right side if the left side did not decide the result
+			if (this.left.isSynchronous()) {
+				return this.left.test(t) ? this.right.apply(t)
+						: DefaultAsyncPredicate.just(false);
+			}
+			return Mono.from(this.left.apply(t)).flatMap(result -> result
+					? Mono.from(this.right.apply(t)) : DefaultAsyncPredicate.just(false));
+		}
+
+		@Override
+		public boolean isSynchronous() {
+			return this.synchronous;
+		}
+
+		@Override
+		public boolean test(T t) {
+			return this.left.test(t) && this.right.test(t);
+		}
+
+		public AsyncPredicate<? super T> getLeft() {
+			return left;
+		}
+
+		public AsyncPredicate<? super T> getRight() {
+			return right;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("(%s && %s)", this.left, this.right);
+		}
+
+	}
+
+	/**
+	 * {@link AsyncPredicate} that is the logical {@code or} of two other predicates.
+	 *
+	 * @param <T> the type of the input to the predicate
+	 */
+	class OrAsyncPredicate<T> implements AsyncPredicate<T> {
+
+		private final AsyncPredicate<? super T> left;
+
+		private final AsyncPredicate<? super T> right;
+
+		private final boolean synchronous;
+
+		public OrAsyncPredicate(AsyncPredicate<? super T> left,
+				AsyncPredicate<? super T> right) {
+			Assert.notNull(left, "left must not be null");
+			Assert.notNull(right, "other must not be null");
+			this.left = left;
+			this.right = right;
+			this.synchronous = left.isSynchronous() && right.isSynchronous();
+		}
+
+		@Override
+		public Publisher<Boolean> apply(T t) {
+			if (this.synchronous) {
+				return DefaultAsyncPredicate.just(test(t));
+			}
+			// only evaluate the right side if the left side did not decide the result
+			if (this.left.isSynchronous()) {
+				return this.left.test(t) ? DefaultAsyncPredicate.just(true)
+						: this.right.apply(t);
+			}
+			return Mono.from(this.left.apply(t)).flatMap(result -> result
+					? DefaultAsyncPredicate.just(true) : Mono.from(this.right.apply(t)));
+		}
+
+		@Override
+		public boolean isSynchronous() {
+			return this.synchronous;
+		}
+
+		@Override
+		public boolean test(T t) {
+			return this.left.test(t) || this.right.test(t);
+		}
+
+		public AsyncPredicate<? super T> getLeft() {
+			return left;
+		}
+
+		public AsyncPredicate<? super T> getRight() {
+			return right;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("(%s || %s)", this.left, this.right);
+		}
+
+	}
+
+	/**
+	 * {@link AsyncPredicate} that is the logical negation of another predicate.
+	 *
+	 * @param <T> the type of the input to the predicate
+	 */
+	class NegateAsyncPredicate<T> implements AsyncPredicate<T> {
+
+		private final AsyncPredicate<? super T> predicate;
+
+		public NegateAsyncPredicate(AsyncPredicate<? super T> predicate) {
+			Assert.notNull(predicate, "predicate must not be null");
+			this.predicate = predicate;
+		}
+
+		@Override
+		public Publisher<Boolean> apply(T t) {
+			if (isSynchronous()) {
+				return DefaultAsyncPredicate.just(test(t));
+			}
+			return Mono.from(predicate.apply(t)).map(b -> !b);
+		}
+
+		@Override
+		public boolean isSynchronous() {
+			return this.predicate.isSynchronous();
+		}
+
+		@Override
+		public boolean test(T t) {
+			return !this.predicate.test(t);
+		}
+
+		public AsyncPredicate<? super T> getPredicate() {
+			return predicate;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("!%s", this.predicate);
+		}
 
-		return t -> Flux.zip(apply(t), other.apply(t))
-				.map(tuple -> tuple.getT1() || tuple.getT2());
 	}
 
 }
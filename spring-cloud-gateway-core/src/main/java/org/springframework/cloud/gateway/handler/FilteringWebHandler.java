@@ -17,19 +17,29 @@
 package org.springframework.cloud.gateway.handler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import reactor.core.CoreSubscriber;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
 
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.ApplicationListener;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.web.server.ServerWebExchange;
@@ -45,14 +55,23 @@ import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.G
  * @author Spencer Gibb
  * @since 0.1
  */
-public class FilteringWebHandler implements WebHandler {
+public class FilteringWebHandler
+		implements WebHandler, ApplicationListener<RefreshRoutesResultEvent> {
 
 	protected static final Log logger = LogFactory.getLog(FilteringWebHandler.class);
 
 	private final List<GatewayFilter> globalFilters;
 
+	/**
+	 * Chains by route instance. Routes are compared by identity, as
+	 * {@link Route#hashCode()} hashes the whole route and unchanged routes are reused
+	 * across refreshes.
+	 */
+	private final Map<RouteKey, DefaultGatewayFilterChain> chainForRoute;
+
 	public FilteringWebHandler(List<GlobalFilter> globalFilters) {
 		this.globalFilters = loadFilters(globalFilters);
+		this.chainForRoute = new ConcurrentHashMap<>();
 	}
 
 	private static List<GatewayFilter> loadFilters(List<GlobalFilter> filters) {
@@ -66,42 +85,116 @@ public class FilteringWebHandler implements WebHandler {
 		}).collect(Collectors.toList());
 	}
 
-	/*
-	 * TODO: relocate @EventListener(RefreshRoutesEvent.class) void handleRefresh() {
-	 * this.combinedFiltersForRoute.clear();
+	/**
+	 * Drops the chains of routes that are no longer in use, once the routes requested
+	 * by a refresh are.
+	 * @param event the refresh result, whose source is the refreshed
+	 * {@link RouteLocator}
 	 */
+	@Override
+	public void onApplicationEvent(RefreshRoutesResultEvent event) {
+		if (!(event.getSource() instanceof RouteLocator)) {
+			return;
+		}
+		((RouteLocator) event.getSource()).getRoutes().collectList()
+				.subscribe(this::retain);
+	}
+
+	private void retain(List<Route> routes) {
+		Set<Route> current = Collections.newSetFromMap(new IdentityHashMap<>());
+		current.addAll(routes);
+		this.chainForRoute.keySet().removeIf(key -> !current.contains(key.route));
+	}
 
 	@Override
 	public Mono<Void> handle(ServerWebExchange exchange) {
 		Route route = exchange.getRequiredAttribute(GATEWAY_ROUTE_ATTR);
-		List<GatewayFilter> gatewayFilters = route.getFilters();
+		return getChain(route).filter(exchange);
+	}
+
+	/**
+	 * Returns the global filters and the filters of the given route, sorted. The
+	 * result is computed once per route and cached while the route is in use.
+	 * @param route the route
+	 * @return the combined filters
+	 */
+	protected List<GatewayFilter> getCombinedFilters(Route route) {
+		return getChain(route).getFilters();
+	}
 
+	private DefaultGatewayFilterChain getChain(Route route) {
+		RouteKey key = new RouteKey(route);
+		// plain get first, computeIfAbsent locks on java 8 even if the entry exists
+		DefaultGatewayFilterChain chain = this.chainForRoute.get(key);
+		if (chain == null) {
+			chain = this.chainForRoute.computeIfAbsent(key,
+					k -> new DefaultGatewayFilterChain(combineFilters(route)));
+		}
+		return chain;
+	}
+
+	private List<GatewayFilter> combineFilters(Route route) {
 		List<GatewayFilter> combined = new ArrayList<>(this.globalFilters);
-		combined.addAll(gatewayFilters);
-		// TODO: needed or cached?
+		combined.addAll(route.getFilters());
 		AnnotationAwareOrderComparator.sort(combined);
 
 		if (logger.isDebugEnabled()) {
 			logger.debug("Sorted gatewayFilterFactories: " + combined);
 		}
 
-		return new DefaultGatewayFilterChain(combined).filter(exchange);
+		return Collections.unmodifiableList(combined);
 	}
 
-	private static class DefaultGatewayFilterChain implements GatewayFilterChain {
+	/**
+	 * Compares routes by identity.
+	 */
+	private static final class RouteKey {
+
+		private final Route route;
+
+		RouteKey(Route route) {
+			this.route = route;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof RouteKey && ((RouteKey) o).route == this.route;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this.route);
+		}
 
-		private final int index;
+	}
+
+	/**
+	 * Chain of filters where every position is a preallocated node, so that no chain
+	 * objects are created per request. The nodes do not hold any per-request state and
+	 * are shared by all exchanges of a route.
+	 */
+	private static class DefaultGatewayFilterChain implements GatewayFilterChain {
 
 		private final List<GatewayFilter> filters;
 
+		private final GatewayFilter filter;
+
+		private final DefaultGatewayFilterChain next;
+
 		DefaultGatewayFilterChain(List<GatewayFilter> filters) {
-			this.filters = filters;
-			this.index = 0;
+			this(filters, 0);
 		}
 
-		private DefaultGatewayFilterChain(DefaultGatewayFilterChain parent, int index) {
-			this.filters = parent.getFilters();
-			this.index = index;
+		private DefaultGatewayFilterChain(List<GatewayFilter> filters, int index) {
+			this.filters = filters;
+			if (index < filters.size()) {
+				this.filter = filters.get(index);
+				this.next = new DefaultGatewayFilterChain(filters, index + 1);
+			}
+			else {
+				this.filter = null;
+				this.next = null;
+			}
 		}
 
 		public List<GatewayFilter> getFilters() {
@@ -110,17 +203,46 @@ public class FilteringWebHandler implements WebHandler {
 
 		@Override
 		public Mono<Void> filter(ServerWebExchange exchange) {
-			return Mono.defer(() -> {
-				if (this.index < filters.size()) {
-					GatewayFilter filter = filters.get(this.index);
-					DefaultGatewayFilterChain chain = new DefaultGatewayFilterChain(this,
-							this.index + 1);
-					return filter.filter(exchange, chain);
-				}
-				else {
-					return Mono.empty(); // complete
-				}
-			});
+			if (this.filter == null) {
+				return Mono.empty(); // complete
+			}
+			return new FilterMono(this.filter, exchange, this.next);
+		}
+
+	}
+
+	/**
+	 * Invokes a filter on every subscription, like {@link Mono#defer} does, so that
+	 * filters that resubscribe to the chain (e.g. retries) run the rest of it again.
+	 * Avoids the supplier that {@code Mono.defer} would capture per step.
+	 */
+	private static final class FilterMono extends Mono<Void> {
+
+		private final GatewayFilter filter;
+
+		private final ServerWebExchange exchange;
+
+		private final GatewayFilterChain next;
+
+		FilterMono(GatewayFilter filter, ServerWebExchange exchange,
+				GatewayFilterChain next) {
+			this.filter = filter;
+			this.exchange = exchange;
+			this.next = next;
+		}
+
+		@Override
+		public void subscribe(CoreSubscriber<? super Void> actual) {
+			Mono<Void> result;
+			try {
+				result = this.filter.filter(this.exchange, this.next);
+			}
+			catch (Throwable ex) {
+				Operators.error(actual,
+						Operators.onOperatorError(ex, actual.currentContext()));
+				return;
+			}
+			result.subscribe(actual);
 		}
 
 	}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.AndAsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.DefaultAsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.NegateAsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.OrAsyncPredicate;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Bounded LRU cache of route lookup results, keyed by request method, host and path.
+ * Both matched routes and the absence of a matching route are cached.
+ * <p>
+ * A result may only be cached if every route tested for it has a predicate that only
+ * depends on the method, host and path, see {@link #isCacheable(Route)}. The cache is
+ * cleared when a refresh is requested and again once the new routes are in use, as
+ * lookups in between may still see the previous routes.
+ */
+public class RouteMatchCache implements SmartApplicationListener {
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	public RouteMatchCache(int maxSize) {
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		// a power of two segments of at least one entry, the remainder spread over the
+		// first segments, so that they hold exactly maxSize entries together
+		int count = Integer.highestOneBit(Math.min(maxSize, SEGMENTS));
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			this.segments[i] = new Segment(
+					maxSize / count + (i < maxSize % count ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Returns whether the predicate of a route only depends on the method, host and
+	 * path of the request.
+	 * @param route the route
+	 * @return whether lookup results involving the route may be cached
+	 */
+	public static boolean isCacheable(Route route) {
+		return isCacheable(route.getPredicate());
+	}
+
+	private static boolean isCacheable(AsyncPredicate<?> predicate) {
+		if (predicate instanceof AndAsyncPredicate) {
+			AndAsyncPredicate<?> and = (AndAsyncPredicate<?>) predicate;
+			return isCacheable(and.getLeft()) && isCacheable(and.getRight());
+		}
+		if (predicate instanceof OrAsyncPredicate) {
+			OrAsyncPredicate<?> or = (OrAsyncPredicate<?>) predicate;
+			return isCacheable(or.getLeft()) && isCacheable(or.getRight());
+		}
+		if (predicate instanceof NegateAsyncPredicate) {
+			return isCacheable(((NegateAsyncPredicate<?>) predicate).getPredicate());
+		}
+		if (predicate instanceof DefaultAsyncPredicate) {
+			Object config = ((DefaultAsyncPredicate<?>) predicate).getConfig();
+			return config instanceof PathRoutePredicateFactory.Config
+					|| config instanceof HostRoutePredicateFactory.Config
+					|| config instanceof MethodRoutePredicateFactory.Config;
+		}
+		return false;
+	}
+
+	/**
+	 * @param exchange the current exchange
+	 * @return the key of the exchange
+	 */
+	public String key(ServerWebExchange exchange) {
+		ServerHttpRequest request = exchange.getRequest();
+		String host = request.getHeaders().getFirst(HttpHeaders.HOST);
+		return request.getMethodValue() + ' ' + (host != null ? host : "") + ' '
+				+ request.getURI().getPath();
+	}
+
+	/**
+	 * @return the current generation, to be passed to
+	 * {@link #put(String, Route, long)}
+	 */
+	public long generation() {
+		return this.generation.get();
+	}
+
+	/**
+	 * Looks up a cached result.
+	 * @param key the key of the exchange
+	 * @return null if there is no cached result, an empty optional if no route matched
+	 * or the matched route
+	 */
+	public Optional<Route> get(String key) {
+		Optional<Route> route = segment(key).get(key);
+		if (route == null) {
+			this.misses.increment();
+		}
+		else {
+			this.hits.increment();
+		}
+		return route;
+	}
+
+	/**
+	 * Caches a result, unless the cache was cleared since the given generation.
+	 * @param key the key of the exchange
+	 * @param route the matched route or null if no route matched
+	 * @param generation the generation at the time the lookup started
+	 */
+	public void put(String key, Route route, long generation) {
+		segment(key).put(key, Optional.ofNullable(route), generation);
+	}
+
+	public void clear() {
+		this.generation.incrementAndGet();
+		for (Segment segment : this.segments) {
+			segment.clear();
+		}
+	}
+
+	@Override
+	public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+		return RefreshRoutesEvent.class.isAssignableFrom(eventType)
+				|| RefreshRoutesResultEvent.class.isAssignableFrom(eventType);
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		clear();
+	}
+
+	public long size() {
+		long size = 0;
+		for (Segment segment : this.segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+
+	private Segment segment(String key) {
+		int hash = key.hashCode();
+		return this.segments[(hash ^ (hash >>> 16)) & (this.segments.length - 1)];
+	}
+
+	/**
+	 * Access ordered map, guarded by its own lock.
+	 */
+	private final class Segment {
+
+		private final Map<String, Optional<Route>> entries;
+
+		Segment(int maxSize) {
+			this.entries = new LinkedHashMap<String, Optional<Route>>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<String, Optional<Route>> eldest) {
+					if (size() > maxSize) {
+						RouteMatchCache.this.evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		synchronized Optional<Route> get(String key) {
+			return this.entries.get(key);
+		}
+
+		synchronized void put(String key, Optional<Route> route, long generation) {
+			// checked under the lock, clear() takes it after changing the generation
+			if (generation == RouteMatchCache.this.generation.get()) {
+				this.entries.put(key, route);
+			}
+		}
+
+		synchronized void clear() {
+			this.entries.clear();
+		}
+
+		synchronized int size() {
+			return this.entries.size();
+		}
+
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the hit, miss and eviction counts and the size of a {@link RouteMatchCache}.
+ */
+public class RouteMatchCacheMetrics implements MeterBinder {
+
+	private static final String PREFIX = "gateway.route.match.cache.";
+
+	private final RouteMatchCache cache;
+
+	public RouteMatchCacheMetrics(RouteMatchCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder(PREFIX + "gets", this.cache, RouteMatchCache::getHitCount)
+				.tag("result", "hit")
+				.description("Route lookups answered from the cache")
+				.register(registry);
+		FunctionCounter
+				.builder(PREFIX + "gets", this.cache, RouteMatchCache::getMissCount)
+				.tag("result", "miss")
+				.description("Route lookups not answered from the cache")
+				.register(registry);
+		FunctionCounter
+				.builder(PREFIX + "evictions", this.cache,
+						RouteMatchCache::getEvictionCount)
+				.description("Lookup results evicted because the cache was full")
+				.register(registry);
+		Gauge.builder(PREFIX + "size", this.cache, RouteMatchCache::size)
+				.description("Number of cached lookup results").register(registry);
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.gateway.handler;
 
+import java.util.Optional;
 import java.util.function.Function;
 
 import reactor.core.publisher.Mono;
@@ -48,6 +49,8 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 
 	private final ManagementPortType managementPortType;
 
+	private RouteMatchCache routeMatchCache;
+
 	public RoutePredicateHandlerMapping(FilteringWebHandler webHandler,
 			RouteLocator routeLocator, GlobalCorsProperties globalCorsProperties,
 			Environment environment) {
@@ -60,6 +63,14 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 		setCorsConfigurations(globalCorsProperties.getCorsConfigurations());
 	}
 
+	/**
+	 * Sets a cache for the results of {@link #lookupRoute(ServerWebExchange)}.
+	 * @param routeMatchCache the cache, or null to look up every request
+	 */
+	public void setRouteMatchCache(RouteMatchCache routeMatchCache) {
+		this.routeMatchCache = routeMatchCache;
+	}
+
 	private ManagementPortType getManagementPortType(Environment environment) {
 		Integer serverPort = getPortProperty(environment, "server.");
 		if (this.managementPort != null && this.managementPort < 0) {
@@ -125,32 +136,67 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 	}
 
 	protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
-		return this.routeLocator.getRoutes()
+		RouteMatchCache cache = this.routeMatchCache;
+		if (cache == null) {
+			return findRoute(exchange, null);
+		}
+		String key = cache.key(exchange);
+		Optional<Route> cached = cache.get(key);
+		if (cached == null) {
+			// taken before the routes are read, see RouteMatchCache.put()
+			long generation = cache.generation();
+			boolean[] cacheable = { true };
+			return findRoute(exchange, cacheable).doOnSuccess(route -> {
+				if (cacheable[0]) {
+					cache.put(key, route, generation);
+				}
+			});
+		}
+		if (!cached.isPresent()) {
+			return Mono.empty();
+		}
+		// test the route again, as its predicates add attributes to the exchange
+		return testRoute(cached.get(), exchange).map(route -> matched(route, exchange))
+				.switchIfEmpty(Mono.defer(() -> findRoute(exchange, null)));
+	}
+
+	/**
+	 * Tests the candidate routes in order.
+	 * @param cacheable if not null, its element is set to false if a route was tested
+	 * that is not {@link RouteMatchCache#isCacheable(Route) cacheable}
+	 */
+	private Mono<Route> findRoute(ServerWebExchange exchange, boolean[] cacheable) {
+		return this.routeLocator.getCandidateRoutes(exchange)
 				// individually filter routes so that filterWhen error delaying is not a
 				// problem
-				.concatMap(route -> Mono.just(route).filterWhen(r -> {
-					// add the current route we are testing
-					exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
-					return r.getPredicate().apply(exchange);
+				.concatMap(route -> {
+					if (cacheable != null && cacheable[0]
+							&& !RouteMatchCache.isCacheable(route)) {
+						cacheable[0] = false;
+					}
+					if (route.getPredicate().isSynchronous()) {
+						return testRoute(route, exchange);
+					}
+					return Mono.just(route).filterWhen(r -> {
+						// add the current route we are testing
+						exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR,
+								r.getId());
+						return r.getPredicate().apply(exchange);
+					})
+							// instead of immediately stopping main flux due to error, log
+							// and swallow it
+							.doOnError(e -> logger.error(
+									"Error applying predicate for route: "
+											+ route.getId(),
+									e))
+							.onErrorResume(e -> Mono.empty());
 				})
-						// instead of immediately stopping main flux due to error, log and
-						// swallow it
-						.doOnError(e -> logger.error(
-								"Error applying predicate for route: " + route.getId(),
-								e))
-						.onErrorResume(e -> Mono.empty()))
 				// .defaultIfEmpty() put a static Route not found
 				// or .switchIfEmpty()
 				// .switchIfEmpty(Mono.<Route>empty().log("noroute"))
 				.next()
 				// TODO: error handling
-				.map(route -> {
-					if (logger.isDebugEnabled()) {
-						logger.debug("Route matched: " + route.getId());
-					}
-					validateRoute(route, exchange);
-					return route;
-				});
+				.map(route -> matched(route, exchange));
 
 		/*
 		 * TODO: trace logging if (logger.isTraceEnabled()) {
@@ -158,6 +204,31 @@ public class RoutePredicateHandlerMapping extends AbstractHandlerMapping {
 		 */
 	}
 
+	private Route matched(Route route, ServerWebExchange exchange) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Route matched: " + route.getId());
+		}
+		validateRoute(route, exchange);
+		return route;
+	}
+
+	/**
+	 * Tests a route with a synchronous predicate without going through a
+	 * {@link org.reactivestreams.Publisher}.
+	 */
+	private Mono<Route> testRoute(Route route, ServerWebExchange exchange) {
+		// add the current route we are testing
+		exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, route.getId());
+		try {
+			return route.getPredicate().test(exchange) ? Mono.just(route) : Mono.empty();
+		}
+		catch (Exception e) {
+			// log and swallow the error, same as for asynchronous predicates
+			logger.error("Error applying predicate for route: " + route.getId(), e);
+			return Mono.empty();
+		}
+	}
+
 	/**
 	 * Validate the given handler against the current request.
 	 * <p>
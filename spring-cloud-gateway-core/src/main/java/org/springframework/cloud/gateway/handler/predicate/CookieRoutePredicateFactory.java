@@ -53,6 +53,8 @@ public class CookieRoutePredicateFactory
 
 	@Override
 	public Predicate<ServerWebExchange> apply(Config config) {
+		Predicate<String> regexp = RegexpMatchers.matches(config.regexp);
+
 		return exchange -> {
 			List<HttpCookie> cookies = exchange.getRequest().getCookies()
 					.get(config.name);
@@ -60,7 +62,7 @@ public class CookieRoutePredicateFactory
 				return false;
 			}
 			for (HttpCookie cookie : cookies) {
-				if (cookie.getValue().matches(config.regexp)) {
+				if (regexp.test(cookie.getValue())) {
 					return true;
 				}
 			}
@@ -55,6 +55,8 @@ public class HeaderRoutePredicateFactory
 	@Override
 	public Predicate<ServerWebExchange> apply(Config config) {
 		boolean hasRegex = !StringUtils.isEmpty(config.regexp);
+		Predicate<String> regexp = hasRegex ? RegexpMatchers.matches(config.regexp)
+				: null;
 
 		return exchange -> {
 			List<String> values = exchange.getRequest().getHeaders()
@@ -65,7 +67,12 @@ public class HeaderRoutePredicateFactory
 			// values is now guaranteed to not be empty
 			if (hasRegex) {
 				// check if a header value matches
-				return values.stream().anyMatch(value -> value.matches(config.regexp));
+				for (String value : values) {
+					if (regexp.test(value)) {
+						return true;
+					}
+				}
+				return false;
 			}
 
 			// there is a value and since regexp is empty, we only check existence.
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * Binary prefix trie of IPv4 and IPv6 subnets. Looking up an address takes at most one
+ * step per address bit, however many subnets were added.
+ * <p>
+ * Like {@link io.netty.handler.ipfilter.IpSubnetFilterRule}, IPv4 subnets only match
+ * IPv4 addresses and IPv6 subnets only match IPv6 addresses.
+ */
+final class IpSubnetTrie {
+
+	private static final int NONE = 0;
+
+	private final Nodes ipv4 = new Nodes();
+
+	private final Nodes ipv6 = new Nodes();
+
+	/**
+	 * Adds a subnet.
+	 * @param address an address of the subnet
+	 * @param cidrPrefix the number of leading bits of the network address
+	 * @throws IllegalArgumentException if the prefix is out of range for the address
+	 */
+	void add(InetAddress address, int cidrPrefix) {
+		byte[] bytes = address.getAddress();
+		if (cidrPrefix < 0 || cidrPrefix > bytes.length * 8) {
+			throw new IllegalArgumentException(String.format(
+					"IP%s subnet address cidrMask needs to be in range [0,%d]. Was: %d",
+					address instanceof Inet4Address ? "v4" : "v6", bytes.length * 8,
+					cidrPrefix));
+		}
+		nodes(address).add(bytes, cidrPrefix);
+	}
+
+	/**
+	 * @param address the address to look up
+	 * @return whether the address is in one of the subnets
+	 */
+	boolean matches(InetAddress address) {
+		return nodes(address).matches(address.getAddress());
+	}
+
+	private Nodes nodes(InetAddress address) {
+		return address instanceof Inet4Address ? this.ipv4 : this.ipv6;
+	}
+
+	/**
+	 * Nodes stored in parallel arrays, node 0 is the root. A child index of
+	 * {@link #NONE} means there is no child, as the root is never a child.
+	 */
+	private static final class Nodes {
+
+		private int[] zero = new int[1];
+
+		private int[] one = new int[1];
+
+		private boolean[] terminal = new boolean[1];
+
+		private int size = 1;
+
+		void add(byte[] address, int cidrPrefix) {
+			int node = 0;
+			for (int bit = 0; bit < cidrPrefix; bit++) {
+				if (this.terminal[node]) {
+					return; // a shorter prefix already covers the subnet
+				}
+				int[] children = isSet(address, bit) ? this.one : this.zero;
+				if (children[node] == NONE) {
+					int child = newNode();
+					// newNode() may have replaced the arrays
+					children = isSet(address, bit) ? this.one : this.zero;
+					children[node] = child;
+				}
+				node = children[node];
+			}
+			this.terminal[node] = true;
+		}
+
+		boolean matches(byte[] address) {
+			int node = 0;
+			int bits = address.length * 8;
+			for (int bit = 0; bit < bits; bit++) {
+				if (this.terminal[node]) {
+					return true;
+				}
+				node = isSet(address, bit) ? this.one[node] : this.zero[node];
+				if (node == NONE) {
+					return false;
+				}
+			}
+			return this.terminal[node];
+		}
+
+		private int newNode() {
+			if (this.size == this.terminal.length) {
+				int capacity = this.size * 2;
+				this.zero = Arrays.copyOf(this.zero, capacity);
+				this.one = Arrays.copyOf(this.one, capacity);
+				this.terminal = Arrays.copyOf(this.terminal, capacity);
+			}
+			return this.size++;
+		}
+
+		private static boolean isSet(byte[] address, int bit) {
+			return (address[bit >>> 3] & (0x80 >>> (bit & 7))) != 0;
+		}
+
+	}
+
+}
@@ -19,7 +19,6 @@ package org.springframework.cloud.gateway.handler.predicate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 import java.util.function.Predicate;
 
 import org.apache.commons.logging.Log;
@@ -34,8 +33,8 @@ import org.springframework.web.util.pattern.PathPattern;
 import org.springframework.web.util.pattern.PathPattern.PathMatchInfo;
 import org.springframework.web.util.pattern.PathPatternParser;
 
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.getPathContainer;
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.putUriTemplateVariables;
-import static org.springframework.http.server.PathContainer.parsePath;
 
 /**
  * @author Spencer Gibb
@@ -87,23 +86,32 @@ public class PathRoutePredicateFactory
 				pathPatterns.add(pathPattern);
 			});
 		}
+		// patterns without variables are only matched, there is nothing to extract
+		final boolean[] hasVariables = new boolean[pathPatterns.size()];
+		for (int i = 0; i < hasVariables.length; i++) {
+			hasVariables[i] = pathPatterns.get(i).getPatternString().indexOf('{') != -1;
+		}
 		return exchange -> {
-			PathContainer path = parsePath(exchange.getRequest().getURI().getPath());
-
-			Optional<PathPattern> optionalPathPattern = pathPatterns.stream()
-					.filter(pattern -> pattern.matches(path)).findFirst();
-
-			if (optionalPathPattern.isPresent()) {
-				PathPattern pathPattern = optionalPathPattern.get();
-				traceMatch("Pattern", pathPattern.getPatternString(), path, true);
-				PathMatchInfo pathMatchInfo = pathPattern.matchAndExtract(path);
-				putUriTemplateVariables(exchange, pathMatchInfo.getUriVariables());
-				return true;
-			}
-			else {
-				traceMatch("Pattern", config.getPatterns(), path, false);
-				return false;
+			PathContainer path = getPathContainer(exchange);
+
+			for (int i = 0; i < hasVariables.length; i++) {
+				PathPattern pathPattern = pathPatterns.get(i);
+				if (hasVariables[i]) {
+					PathMatchInfo pathMatchInfo = pathPattern.matchAndExtract(path);
+					if (pathMatchInfo != null) {
+						traceMatch("Pattern", pathPattern.getPatternString(), path, true);
+						putUriTemplateVariables(exchange,
+								pathMatchInfo.getUriVariables());
+						return true;
+					}
+				}
+				else if (pathPattern.matches(path)) {
+					traceMatch("Pattern", pathPattern.getPatternString(), path, true);
+					return true;
+				}
 			}
+			traceMatch("Pattern", config.getPatterns(), path, false);
+			return false;
 		};
 	}
 
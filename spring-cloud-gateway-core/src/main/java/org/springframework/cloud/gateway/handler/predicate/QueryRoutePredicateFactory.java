@@ -53,8 +53,12 @@ public class QueryRoutePredicateFactory
 
 	@Override
 	public Predicate<ServerWebExchange> apply(Config config) {
+		boolean hasRegex = StringUtils.hasText(config.regexp);
+		Predicate<String> regexp = hasRegex ? RegexpMatchers.matches(config.regexp)
+				: null;
+
 		return exchange -> {
-			if (!StringUtils.hasText(config.regexp)) {
+			if (!hasRegex) {
 				// check existence of header
 				return exchange.getRequest().getQueryParams().containsKey(config.param);
 			}
@@ -65,7 +69,7 @@ public class QueryRoutePredicateFactory
 				return false;
 			}
 			for (String value : values) {
-				if (value != null && value.matches(config.regexp)) {
+				if (value != null && regexp.test(value)) {
 					return true;
 				}
 			}
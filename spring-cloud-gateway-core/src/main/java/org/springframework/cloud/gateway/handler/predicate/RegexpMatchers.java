@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles regular expressions of predicate configurations once, so that matching a
+ * value does not compile a {@link Pattern} like {@link String#matches(String)} does.
+ * <p>
+ * Expressions that are a literal, optionally preceded and/or followed by {@code .*}, are
+ * matched with {@link String#equals}, {@link String#startsWith},
+ * {@link String#endsWith} or {@link String#contains} instead. Values containing line
+ * terminators, which {@code .} does not match, are still matched with the compiled
+ * pattern, so the result is always the same as with the regular expression.
+ */
+final class RegexpMatchers {
+
+	private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+	private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
+
+	private static final String ANY = ".*";
+
+	private RegexpMatchers() {
+		throw new AssertionError("Must not instantiate utility class.");
+	}
+
+	/**
+	 * Returns a predicate that tests whether a value matches the whole given regular
+	 * expression.
+	 * @param regexp the regular expression
+	 * @return the predicate
+	 * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+	 */
+	static Predicate<String> matches(String regexp) {
+		Pattern pattern = Pattern.compile(regexp);
+		Predicate<String> regexpMatch = value -> pattern.matcher(value).matches();
+
+		boolean anyPrefix = regexp.startsWith(ANY);
+		boolean anySuffix = regexp.endsWith(ANY)
+				&& regexp.length() >= (anyPrefix ? 2 * ANY.length() : ANY.length());
+		String literal = regexp.substring(anyPrefix ? ANY.length() : 0,
+				regexp.length() - (anySuffix ? ANY.length() : 0));
+		if (!isLiteral(literal)) {
+			return regexpMatch;
+		}
+		if (!anyPrefix && !anySuffix) {
+			return literal::equals;
+		}
+
+		Predicate<String> literalMatch;
+		if (anyPrefix && anySuffix) {
+			literalMatch = value -> value.contains(literal);
+		}
+		else if (anyPrefix) {
+			literalMatch = value -> value.endsWith(literal);
+		}
+		else {
+			literalMatch = value -> value.startsWith(literal);
+		}
+		return value -> containsLineTerminator(value) ? regexpMatch.test(value)
+				: literalMatch.test(value);
+	}
+
+	private static boolean isLiteral(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (META_CHARS.indexOf(c) != -1 || LINE_TERMINATORS.indexOf(c) != -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean containsLineTerminator(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (LINE_TERMINATORS.indexOf(value.charAt(i)) != -1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -16,7 +16,9 @@
 
 package org.springframework.cloud.gateway.handler.predicate;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -26,8 +28,6 @@ import java.util.function.Predicate;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
-import io.netty.handler.ipfilter.IpFilterRuleType;
-import io.netty.handler.ipfilter.IpSubnetFilterRule;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -61,8 +61,8 @@ public class RemoteAddrRoutePredicateFactory
 	}
 
 	@NotNull
-	private List<IpSubnetFilterRule> convert(List<String> values) {
-		List<IpSubnetFilterRule> sources = new ArrayList<>();
+	private IpSubnetTrie convert(List<String> values) {
+		IpSubnetTrie sources = new IpSubnetTrie();
 		for (String arg : values) {
 			addSource(sources, arg);
 		}
@@ -71,32 +71,29 @@ public class RemoteAddrRoutePredicateFactory
 
 	@Override
 	public Predicate<ServerWebExchange> apply(Config config) {
-		List<IpSubnetFilterRule> sources = convert(config.sources);
+		IpSubnetTrie sources = convert(config.sources);
 
 		return exchange -> {
 			InetSocketAddress remoteAddress = config.remoteAddressResolver
 					.resolve(exchange);
 			if (remoteAddress != null && remoteAddress.getAddress() != null) {
-				String hostAddress = remoteAddress.getAddress().getHostAddress();
-				String host = exchange.getRequest().getURI().getHost();
-
-				if (log.isDebugEnabled() && !hostAddress.equals(host)) {
-					log.debug("Remote addresses didn't match " + hostAddress + " != "
-							+ host);
-				}
-
-				for (IpSubnetFilterRule source : sources) {
-					if (source.matches(remoteAddress)) {
-						return true;
+				if (log.isDebugEnabled()) {
+					String hostAddress = remoteAddress.getAddress().getHostAddress();
+					String host = exchange.getRequest().getURI().getHost();
+					if (!hostAddress.equals(host)) {
+						log.debug("Remote addresses didn't match " + hostAddress
+								+ " != " + host);
 					}
 				}
+
+				return sources.matches(remoteAddress.getAddress());
 			}
 
 			return false;
 		};
 	}
 
-	private void addSource(List<IpSubnetFilterRule> sources, String source) {
+	private void addSource(IpSubnetTrie sources, String source) {
 		if (!source.contains("/")) { // no netmask, add default
 			source = source + "/32";
 		}
@@ -105,8 +102,12 @@ public class RemoteAddrRoutePredicateFactory
 		String ipAddress = ipAddressCidrPrefix[0];
 		int cidrPrefix = Integer.parseInt(ipAddressCidrPrefix[1]);
 
-		sources.add(
-				new IpSubnetFilterRule(ipAddress, cidrPrefix, IpFilterRuleType.ACCEPT));
+		try {
+			sources.add(InetAddress.getByName(ipAddress), cidrPrefix);
+		}
+		catch (UnknownHostException ex) {
+			throw new IllegalArgumentException(ex);
+		}
 	}
 
 	@Validated
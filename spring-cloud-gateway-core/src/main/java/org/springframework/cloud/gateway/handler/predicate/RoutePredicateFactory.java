@@ -25,8 +25,6 @@ import org.springframework.cloud.gateway.support.NameUtils;
 import org.springframework.cloud.gateway.support.ShortcutConfigurable;
 import org.springframework.web.server.ServerWebExchange;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.toAsyncPredicate;
-
 /**
  * @author Spencer Gibb
  */
@@ -68,7 +66,7 @@ public interface RoutePredicateFactory<C> extends ShortcutConfigurable, Configur
 	Predicate<ServerWebExchange> apply(C config);
 
 	default AsyncPredicate<ServerWebExchange> applyAsync(C config) {
-		return toAsyncPredicate(apply(config));
+		return new AsyncPredicate.DefaultAsyncPredicate<>(apply(config), config);
 	}
 
 	default String name() {
@@ -26,6 +26,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.cloud.gateway.event.WeightDefinedEvent;
+import org.springframework.cloud.gateway.filter.WeightCalculatorWebFilter;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
 import org.springframework.cloud.gateway.support.WeightConfig;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
@@ -52,6 +54,12 @@ public class WeightRoutePredicateFactory
 	 */
 	public static final String WEIGHT_KEY = WeightConfig.CONFIG_PREFIX + ".weight";
 
+	/**
+	 * Weight config key resolver key.
+	 */
+	public static final String KEY_RESOLVER_KEY = WeightConfig.CONFIG_PREFIX
+			+ ".keyResolver";
+
 	private static final Log log = LogFactory.getLog(WeightRoutePredicateFactory.class);
 
 	private ApplicationEventPublisher publisher;
@@ -67,7 +75,7 @@ public class WeightRoutePredicateFactory
 
 	@Override
 	public List<String> shortcutFieldOrder() {
-		return Arrays.asList(GROUP_KEY, WEIGHT_KEY);
+		return Arrays.asList(GROUP_KEY, WEIGHT_KEY, KEY_RESOLVER_KEY);
 	}
 
 	@Override
@@ -112,4 +120,27 @@ public class WeightRoutePredicateFactory
 		};
 	}
 
+	/**
+	 * Chooses asynchronously with
+	 * {@link WeightCalculatorWebFilter#chooseRoute(ServerWebExchange, String)}, so that
+	 * the key of a group with a key resolver is only resolved when the group is tested.
+	 * Whether a group has a key resolver is decided per group, it is enough that one of
+	 * its routes declares it.
+	 */
+	@Override
+	public AsyncPredicate<ServerWebExchange> applyAsync(WeightConfig config) {
+		String group = config.getGroup();
+		return exchange -> {
+			String routeId = exchange.getAttribute(GATEWAY_PREDICATE_ROUTE_ATTR);
+			return WeightCalculatorWebFilter.chooseRoute(exchange, group)
+					.map(chosenRoute -> {
+						if (log.isTraceEnabled()) {
+							log.trace("in group weight: " + group + ", current route: "
+									+ routeId + ", chosen route: " + chosenRoute);
+						}
+						return chosenRoute.equals(routeId);
+					}).defaultIfEmpty(false);
+		};
+	}
+
 }
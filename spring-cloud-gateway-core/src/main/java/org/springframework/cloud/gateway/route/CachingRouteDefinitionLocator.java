@@ -16,33 +16,60 @@
 
 package org.springframework.cloud.gateway.route;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import reactor.cache.CacheFlux;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
 
 /**
+ * {@link RouteDefinitionLocator} that serves an immutable snapshot of the route
+ * definitions of its delegate. On refresh the new definitions are loaded and then
+ * published with a single volatile write. If loading fails, the previous snapshot is
+ * kept.
+ * <p>
+ * Definitions read while a refresh is loading wait for it, falling back to the previous
+ * snapshot if it fails. As this locator refreshes before other
+ * {@link RefreshRoutesEvent} listeners, a {@link CachingRouteLocator} compiling its
+ * routes from these definitions on the same event uses the new ones, even if the
+ * delegate loads them asynchronously. Requests are not delayed, they are served from
+ * the routes compiled before.
+ *
  * @author Spencer Gibb
  */
-public class CachingRouteDefinitionLocator
-		implements RouteDefinitionLocator, ApplicationListener<RefreshRoutesEvent> {
+public class CachingRouteDefinitionLocator implements RouteDefinitionLocator,
+		ApplicationListener<RefreshRoutesEvent>, Ordered {
+
+	private static final Log logger = LogFactory
+			.getLog(CachingRouteDefinitionLocator.class);
 
 	private final RouteDefinitionLocator delegate;
 
 	private final Flux<RouteDefinition> routeDefinitions;
 
-	private final Map<String, List> cache = new HashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+
+	private long publishedGeneration;
+
+	private volatile Mono<List<RouteDefinition>> snapshot;
+
+	private volatile Mono<List<RouteDefinition>> pending;
 
 	public CachingRouteDefinitionLocator(RouteDefinitionLocator delegate) {
 		this.delegate = delegate;
-		routeDefinitions = CacheFlux.lookup(cache, "routeDefs", RouteDefinition.class)
-				.onCacheMissResume(this.delegate::getRouteDefinitions);
-
+		this.routeDefinitions = Flux.defer(() -> {
+			Mono<List<RouteDefinition>> pending = this.pending;
+			return (pending != null ? pending : this.snapshot)
+					.flatMapIterable(definitions -> definitions);
+		});
+		this.snapshot = initialSnapshot();
 	}
 
 	@Override
@@ -51,12 +78,61 @@ public class CachingRouteDefinitionLocator
 	}
 
 	/**
-	 * Clears the cache of routeDefinitions.
+	 * Lazily loads the first snapshot. Errors are not cached, the next call retries
+	 * unless a refresh has published a snapshot in the meantime.
+	 */
+	private Mono<List<RouteDefinition>> initialSnapshot() {
+		long published;
+		synchronized (this) {
+			published = this.publishedGeneration;
+		}
+		return load().doOnError(ex -> {
+			synchronized (this) {
+				if (this.publishedGeneration == published) {
+					this.snapshot = initialSnapshot();
+				}
+			}
+		}).cache();
+	}
+
+	private Mono<List<RouteDefinition>> load() {
+		return this.delegate.getRouteDefinitions().collectList()
+				.map(Collections::unmodifiableList);
+	}
+
+	/**
+	 * Loads the route definitions of the delegate and publishes them once complete.
+	 * Definitions read in the meantime wait for them.
 	 * @return routeDefinitions flux
 	 */
 	public Flux<RouteDefinition> refresh() {
-		this.cache.clear();
-		return this.routeDefinitions;
+		Mono<List<RouteDefinition>> loaded = load().cache();
+		Mono<List<RouteDefinition>> pending = loaded
+				.onErrorResume(ex -> Mono.defer(() -> this.snapshot));
+		long generation;
+		synchronized (this) {
+			generation = this.generation.incrementAndGet();
+			this.pending = pending;
+		}
+		loaded.subscribe(definitions -> publish(generation, definitions, pending),
+				ex -> {
+					logger.error("Error refreshing route definitions, "
+							+ "keeping the previous ones", ex);
+					publish(generation, null, pending);
+				});
+		return loaded.flatMapIterable(definitions -> definitions);
+	}
+
+	private synchronized void publish(long generation, List<RouteDefinition> definitions,
+			Mono<List<RouteDefinition>> pending) {
+		// an older refresh that completes late must not replace a newer snapshot
+		if (definitions != null && generation > this.publishedGeneration) {
+			this.publishedGeneration = generation;
+			this.snapshot = Mono.just(definitions);
+		}
+		if (this.pending == pending) {
+			this.pending = null;
+		}
 	}
 
 	@Override
@@ -64,6 +140,11 @@ public class CachingRouteDefinitionLocator
 		refresh();
 	}
 
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+
 	@Deprecated
 	/* for testing */ void handleRefresh() {
 		refresh();
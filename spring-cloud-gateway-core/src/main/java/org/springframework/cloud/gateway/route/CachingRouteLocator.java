@@ -16,34 +16,69 @@
 
 package org.springframework.cloud.gateway.route;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import reactor.cache.CacheFlux;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.ApplicationListener;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.web.server.ServerWebExchange;
 
 /**
+ * {@link RouteLocator} that serves an immutable snapshot of the routes of its delegate.
+ * On refresh the new routes are compiled on a dedicated thread, never on the thread
+ * that published the {@link RefreshRoutesEvent}, while lookups keep using the previous
+ * snapshot, which is then replaced with a single volatile write. If compiling the new
+ * routes fails, the previous snapshot is kept. Either way a
+ * {@link RefreshRoutesResultEvent} is published, which refers to the refresh event.
+ *
  * @author Spencer Gibb
  */
 public class CachingRouteLocator
-		implements RouteLocator, ApplicationListener<RefreshRoutesEvent> {
+		implements RouteLocator, ApplicationListener<RefreshRoutesEvent>,
+		ApplicationEventPublisherAware, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(CachingRouteLocator.class);
 
 	private final RouteLocator delegate;
 
 	private final Flux<Route> routes;
 
-	private final Map<String, List> cache = new HashMap<>();
+	private final Scheduler scheduler;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private long publishedGeneration;
+
+	private volatile Mono<RouteIndex> snapshot;
+
+	private ApplicationEventPublisher publisher;
 
 	public CachingRouteLocator(RouteLocator delegate) {
+		this(delegate, Schedulers.newSingle("route-refresh", true));
+	}
+
+	/**
+	 * @param delegate the locator of the routes
+	 * @param scheduler the scheduler to compile refreshed routes on, disposed with this
+	 * locator
+	 */
+	public CachingRouteLocator(RouteLocator delegate, Scheduler scheduler) {
 		this.delegate = delegate;
-		routes = CacheFlux.lookup(cache, "routes", Route.class)
-				.onCacheMissResume(() -> this.delegate.getRoutes()
-						.sort(AnnotationAwareOrderComparator.INSTANCE));
+		this.scheduler = scheduler;
+		this.routes = Flux.defer(
+				() -> this.snapshot.flatMapIterable(RouteIndex::getRoutes));
+		this.snapshot = initialSnapshot();
 	}
 
 	@Override
@@ -51,18 +86,85 @@ public class CachingRouteLocator
 		return this.routes;
 	}
 
+	@Override
+	public Flux<Route> getCandidateRoutes(ServerWebExchange exchange) {
+		return this.snapshot.flatMapIterable(index -> index.getCandidates(exchange));
+	}
+
 	/**
-	 * Clears the routes cache.
+	 * Lazily loads the first snapshot. Errors are not cached, the next lookup retries
+	 * unless a refresh has published a snapshot in the meantime.
+	 */
+	private Mono<RouteIndex> initialSnapshot() {
+		long published;
+		synchronized (this) {
+			published = this.publishedGeneration;
+		}
+		return compile().doOnError(ex -> {
+			synchronized (this) {
+				if (this.publishedGeneration == published) {
+					this.snapshot = initialSnapshot();
+				}
+			}
+		}).cache();
+	}
+
+	private Mono<RouteIndex> compile() {
+		return Flux.defer(this.delegate::getRoutes)
+				.sort(AnnotationAwareOrderComparator.INSTANCE).collectList()
+				.map(RouteIndex::new);
+	}
+
+	/**
+	 * Compiles the routes of the delegate and publishes them once complete. Lookups
+	 * are served from the previous snapshot in the meantime.
 	 * @return routes flux
 	 */
 	public Flux<Route> refresh() {
-		this.cache.clear();
-		return this.routes;
+		return refresh(null);
+	}
+
+	private Flux<Route> refresh(RefreshRoutesEvent event) {
+		long generation = this.generation.incrementAndGet();
+		Mono<RouteIndex> compiled = compile().subscribeOn(this.scheduler).cache();
+		compiled.subscribe(index -> publish(generation, index, event), ex -> {
+			logger.error("Error refreshing routes, keeping the previous routes", ex);
+			publishResult(new RefreshRoutesResultEvent(this, event, ex));
+		});
+		return compiled.flatMapIterable(RouteIndex::getRoutes);
+	}
+
+	private void publish(long generation, RouteIndex index, RefreshRoutesEvent event) {
+		synchronized (this) {
+			// an older refresh that completes late must not replace a newer snapshot,
+			// its result is still published as routes at least as new are in use
+			if (generation > this.publishedGeneration) {
+				this.publishedGeneration = generation;
+				this.snapshot = Mono.just(index);
+			}
+		}
+		publishResult(new RefreshRoutesResultEvent(this, event, null));
+	}
+
+	private void publishResult(RefreshRoutesResultEvent event) {
+		if (this.publisher != null) {
+			this.publisher.publishEvent(event);
+		}
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
 	}
 
 	@Override
 	public void onApplicationEvent(RefreshRoutesEvent event) {
-		refresh();
+		refresh(event);
+	}
+
+	@Override
+	public void destroy() {
+		this.scheduler.dispose();
 	}
 
 	@Deprecated
@@ -16,8 +16,11 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -54,9 +57,36 @@ public class InMemoryRouteDefinitionRepository implements RouteDefinitionReposit
 		});
 	}
 
+	/**
+	 * Applies the change atomically. If any of the route definitions to delete does not
+	 * exist, nothing is changed and the mono fails with a {@link NotFoundException}.
+	 */
+	@Override
+	public Mono<Void> update(List<RouteDefinition> saves, List<String> deletes) {
+		return Mono.defer(() -> {
+			synchronized (routes) {
+				List<String> missing = deletes.stream()
+						.filter(id -> !routes.containsKey(id))
+						.collect(Collectors.toList());
+				if (!missing.isEmpty()) {
+					return Mono.error(new NotFoundException(
+							"RouteDefinitions not found: " + missing));
+				}
+				deletes.forEach(routes::remove);
+				saves.forEach(r -> routes.put(r.getId(), r));
+			}
+			return Mono.empty();
+		});
+	}
+
 	@Override
 	public Flux<RouteDefinition> getRouteDefinitions() {
-		return Flux.fromIterable(routes.values());
+		// a snapshot, so that a concurrent update is either seen as a whole or not at all
+		return Flux.defer(() -> {
+			synchronized (routes) {
+				return Flux.fromIterable(new ArrayList<>(routes.values()));
+			}
+		});
 	}
 
 }
@@ -16,11 +16,19 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
@@ -30,6 +38,7 @@ import reactor.core.publisher.Flux;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.config.GatewayProperties;
 import org.springframework.cloud.gateway.event.FilterArgsEvent;
@@ -41,13 +50,17 @@ import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.handler.AsyncPredicate;
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
 import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.support.CachingSpelExpressionParser;
 import org.springframework.cloud.gateway.support.ConfigurationUtils;
+import org.springframework.cloud.gateway.support.ShortcutConfigurable;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.validation.Validator;
 import org.springframework.web.server.ServerWebExchange;
 
@@ -56,14 +69,19 @@ import org.springframework.web.server.ServerWebExchange;
  *
  * @author Spencer Gibb
  */
-public class RouteDefinitionRouteLocator
-		implements RouteLocator, BeanFactoryAware, ApplicationEventPublisherAware {
+public class RouteDefinitionRouteLocator implements RouteLocator, BeanFactoryAware,
+		ApplicationEventPublisherAware, DisposableBean {
 
 	/**
 	 * Default filters name.
 	 */
 	public static final String DEFAULT_FILTERS = "defaultFilters";
 
+	/**
+	 * Number of changed route definitions from which they are compiled in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 16;
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	private final RouteDefinitionLocator routeDefinitionLocator;
@@ -76,12 +94,20 @@ public class RouteDefinitionRouteLocator
 
 	private final GatewayProperties gatewayProperties;
 
-	private final SpelExpressionParser parser = new SpelExpressionParser();
+	private final SpelExpressionParser parser;
+
+	/**
+	 * Converts changed route definitions in parallel, null if they are converted on the
+	 * calling thread.
+	 */
+	private final ThreadPoolExecutor executor;
 
 	private BeanFactory beanFactory;
 
 	private ApplicationEventPublisher publisher;
 
+	private volatile Map<String, CompiledRoute> compiledRoutes = Collections.emptyMap();
+
 	@Autowired
 	private Validator validator;
 
@@ -95,6 +121,21 @@ public class RouteDefinitionRouteLocator
 		gatewayFilterFactories.forEach(
 				factory -> this.gatewayFilterFactories.put(factory.name(), factory));
 		this.gatewayProperties = gatewayProperties;
+		this.parser = new CachingSpelExpressionParser(
+				gatewayProperties.getExpressionCompilerMode());
+
+		int concurrency = gatewayProperties.getRouteConversionConcurrency();
+		if (concurrency > 1) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+					"route-definition-converter-");
+			threadFactory.setDaemon(true);
+			this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+		else {
+			this.executor = null;
+		}
 	}
 
 	@Override
@@ -124,7 +165,8 @@ public class RouteDefinitionRouteLocator
 
 	@Override
 	public Flux<Route> getRoutes() {
-		return this.routeDefinitionLocator.getRouteDefinitions().map(this::convertToRoute)
+		return this.routeDefinitionLocator.getRouteDefinitions().collectList()
+				.flatMapIterable(this::convertToRoutes)
 				// TODO: error handling
 				.map(route -> {
 					if (logger.isDebugEnabled()) {
@@ -139,44 +181,148 @@ public class RouteDefinitionRouteLocator
 		 */
 	}
 
-	private Route convertToRoute(RouteDefinition routeDefinition) {
-		AsyncPredicate<ServerWebExchange> predicate = combinePredicates(routeDefinition);
-		List<GatewayFilter> gatewayFilters = getFilters(routeDefinition);
+	/**
+	 * Converts the given definitions, reusing the routes of the previous conversion
+	 * whose definition and default filters did not change. Events for the arguments of
+	 * reused routes are not published again.
+	 * <p>
+	 * If {@link GatewayProperties#getRouteConversionConcurrency()} is greater than 1,
+	 * many changed definitions are converted in parallel on a dedicated pool of that many
+	 * threads, while the calling thread waits for them. The events of their arguments
+	 * are published afterwards, in the order of the definitions.
+	 */
+	private List<Route> convertToRoutes(List<RouteDefinition> routeDefinitions) {
+		List<FilterDefinition> defaultFilters = this.gatewayProperties
+				.getDefaultFilters();
+		Map<String, CompiledRoute> previous = this.compiledRoutes;
+		Map<String, CompiledRoute> compiled = new HashMap<>();
+		CompiledRoute[] routes = new CompiledRoute[routeDefinitions.size()];
+		RouteDefinitionKey[] keys = new RouteDefinitionKey[routes.length];
+		List<Integer> changed = new ArrayList<>();
+
+		for (int i = 0; i < routes.length; i++) {
+			RouteDefinition routeDefinition = routeDefinitions.get(i);
+			RouteDefinitionKey key = new RouteDefinitionKey(routeDefinition,
+					defaultFilters);
+			CompiledRoute route = previous.get(routeDefinition.getId());
+			if (route == null || !route.key.equals(key)) {
+				keys[i] = key;
+				changed.add(i);
+			}
+			else {
+				if (logger.isTraceEnabled()) {
+					logger.trace("RouteDefinition unchanged: " + routeDefinition.getId());
+				}
+				routes[i] = route;
+			}
+		}
+
+		List<List<ApplicationEvent>> events;
+		if (this.executor != null && changed.size() >= PARALLEL_THRESHOLD) {
+			events = join(changed.stream()
+					.map(i -> CompletableFuture.supplyAsync(
+							() -> convert(i, routeDefinitions, keys, routes),
+							this.executor))
+					.collect(Collectors.toList()));
+		}
+		else {
+			events = changed.stream().map(i -> convert(i, routeDefinitions, keys, routes))
+					.collect(Collectors.toList());
+		}
+		if (this.publisher != null) {
+			for (List<ApplicationEvent> routeEvents : events) {
+				routeEvents.forEach(this.publisher::publishEvent);
+			}
+		}
+
+		List<Route> result = new ArrayList<>(routes.length);
+		for (int i = 0; i < routes.length; i++) {
+			compiled.put(routeDefinitions.get(i).getId(), routes[i]);
+			result.add(routes[i].route);
+		}
+		this.compiledRoutes = compiled;
+		return result;
+	}
+
+	/**
+	 * Binds the configurations of the predicates and filters of a route definition like
+	 * {@link #getRoutes()} does, but without applying them, so that no factory publishes
+	 * events or changes state. Useful to validate a definition before it is saved.
+	 * @param routeDefinition the route definition
+	 * @throws RuntimeException if a factory is missing or a configuration cannot be
+	 * bound
+	 */
+	public void validate(RouteDefinition routeDefinition) {
+		for (PredicateDefinition predicate : routeDefinition.getPredicates()) {
+			RoutePredicateFactory<Object> factory = predicateFactory(predicate);
+			bind(factory, factory.newConfig(), predicate.getName(), predicate.getArgs());
+		}
+		for (FilterDefinition filter : routeDefinition.getFilters()) {
+			GatewayFilterFactory<Object> factory = filterFactory(filter);
+			bind(factory, factory.newConfig(), filter.getName(), filter.getArgs());
+		}
+	}
+
+	private List<ApplicationEvent> convert(int i, List<RouteDefinition> routeDefinitions,
+			RouteDefinitionKey[] keys, CompiledRoute[] routes) {
+		List<ApplicationEvent> routeEvents = new ArrayList<>();
+		routes[i] = new CompiledRoute(keys[i],
+				convertToRoute(routeDefinitions.get(i), routeEvents));
+		return routeEvents;
+	}
+
+	/**
+	 * Waits for all conversions.
+	 * @return the events of the conversions, in their order
+	 */
+	private static List<List<ApplicationEvent>> join(
+			List<CompletableFuture<List<ApplicationEvent>>> futures) {
+		try {
+			return futures.stream().map(CompletableFuture::join)
+					.collect(Collectors.toList());
+		}
+		catch (CompletionException e) {
+			futures.forEach(future -> future.cancel(false));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+	}
+
+	private Route convertToRoute(RouteDefinition routeDefinition,
+			List<ApplicationEvent> events) {
+		AsyncPredicate<ServerWebExchange> predicate = combinePredicates(routeDefinition,
+				events);
+		List<GatewayFilter> gatewayFilters = getFilters(routeDefinition, events);
 
 		return Route.async(routeDefinition).asyncPredicate(predicate)
 				.replaceFilters(gatewayFilters).build();
 	}
 
-	@SuppressWarnings("unchecked")
 	private List<GatewayFilter> loadGatewayFilters(String id,
-			List<FilterDefinition> filterDefinitions) {
+			List<FilterDefinition> filterDefinitions, List<ApplicationEvent> events) {
 		List<GatewayFilter> filters = filterDefinitions.stream().map(definition -> {
-			GatewayFilterFactory factory = this.gatewayFilterFactories
-					.get(definition.getName());
-			if (factory == null) {
-				throw new IllegalArgumentException(
-						"Unable to find GatewayFilterFactory with name "
-								+ definition.getName());
-			}
+			GatewayFilterFactory<Object> factory = filterFactory(definition);
 			Map<String, String> args = definition.getArgs();
 			if (logger.isDebugEnabled()) {
 				logger.debug("RouteDefinition " + id + " applying filter " + args + " to "
 						+ definition.getName());
 			}
 
-			Map<String, Object> properties = factory.shortcutType().normalize(args,
-					factory, this.parser, this.beanFactory);
-
 			Object configuration = factory.newConfig();
-
-			ConfigurationUtils.bind(configuration, properties,
-					factory.shortcutFieldPrefix(), definition.getName(), validator,
-					conversionService);
+			Map<String, Object> properties = bind(factory, configuration,
+					definition.getName(), args);
 
 			GatewayFilter gatewayFilter = factory.apply(configuration);
-			if (this.publisher != null) {
-				this.publisher.publishEvent(new FilterArgsEvent(this, id, properties));
-			}
+			events.add(new FilterArgsEvent(this, id, properties));
 			return gatewayFilter;
 		}).collect(Collectors.toList());
 
@@ -194,18 +340,19 @@ public class RouteDefinitionRouteLocator
 		return ordered;
 	}
 
-	private List<GatewayFilter> getFilters(RouteDefinition routeDefinition) {
+	private List<GatewayFilter> getFilters(RouteDefinition routeDefinition,
+			List<ApplicationEvent> events) {
 		List<GatewayFilter> filters = new ArrayList<>();
 
 		// TODO: support option to apply defaults after route specific filters?
 		if (!this.gatewayProperties.getDefaultFilters().isEmpty()) {
 			filters.addAll(loadGatewayFilters(DEFAULT_FILTERS,
-					this.gatewayProperties.getDefaultFilters()));
+					this.gatewayProperties.getDefaultFilters(), events));
 		}
 
 		if (!routeDefinition.getFilters().isEmpty()) {
 			filters.addAll(loadGatewayFilters(routeDefinition.getId(),
-					routeDefinition.getFilters()));
+					routeDefinition.getFilters(), events));
 		}
 
 		AnnotationAwareOrderComparator.sort(filters);
@@ -213,23 +360,39 @@ public class RouteDefinitionRouteLocator
 	}
 
 	private AsyncPredicate<ServerWebExchange> combinePredicates(
-			RouteDefinition routeDefinition) {
+			RouteDefinition routeDefinition, List<ApplicationEvent> events) {
 		List<PredicateDefinition> predicates = routeDefinition.getPredicates();
 		AsyncPredicate<ServerWebExchange> predicate = lookup(routeDefinition,
-				predicates.get(0));
+				predicates.get(0), events);
 
 		for (PredicateDefinition andPredicate : predicates.subList(1,
 				predicates.size())) {
 			AsyncPredicate<ServerWebExchange> found = lookup(routeDefinition,
-					andPredicate);
+					andPredicate, events);
 			predicate = predicate.and(found);
 		}
 
 		return predicate;
 	}
 
-	@SuppressWarnings("unchecked")
 	private AsyncPredicate<ServerWebExchange> lookup(RouteDefinition route,
+			PredicateDefinition predicate, List<ApplicationEvent> events) {
+		RoutePredicateFactory<Object> factory = predicateFactory(predicate);
+		Map<String, String> args = predicate.getArgs();
+		if (logger.isDebugEnabled()) {
+			logger.debug("RouteDefinition " + route.getId() + " applying " + args + " to "
+					+ predicate.getName());
+		}
+
+		Object config = factory.newConfig();
+		Map<String, Object> properties = bind(factory, config, predicate.getName(),
+				args);
+		events.add(new PredicateArgsEvent(this, route.getId(), properties));
+		return factory.applyAsync(config);
+	}
+
+	@SuppressWarnings("unchecked")
+	private RoutePredicateFactory<Object> predicateFactory(
 			PredicateDefinition predicate) {
 		RoutePredicateFactory<Object> factory = this.predicates.get(predicate.getName());
 		if (factory == null) {
@@ -237,22 +400,117 @@ public class RouteDefinitionRouteLocator
 					"Unable to find RoutePredicateFactory with name "
 							+ predicate.getName());
 		}
-		Map<String, String> args = predicate.getArgs();
-		if (logger.isDebugEnabled()) {
-			logger.debug("RouteDefinition " + route.getId() + " applying " + args + " to "
-					+ predicate.getName());
+		return factory;
+	}
+
+	@SuppressWarnings("unchecked")
+	private GatewayFilterFactory<Object> filterFactory(FilterDefinition filter) {
+		GatewayFilterFactory<Object> factory = this.gatewayFilterFactories
+				.get(filter.getName());
+		if (factory == null) {
+			throw new IllegalArgumentException(
+					"Unable to find GatewayFilterFactory with name " + filter.getName());
 		}
+		return factory;
+	}
 
+	/**
+	 * Normalizes the arguments of a predicate or filter and binds them to its config.
+	 * @return the normalized arguments
+	 */
+	private Map<String, Object> bind(ShortcutConfigurable factory, Object config,
+			String name, Map<String, String> args) {
 		Map<String, Object> properties = factory.shortcutType().normalize(args, factory,
 				this.parser, this.beanFactory);
-		Object config = factory.newConfig();
-		ConfigurationUtils.bind(config, properties, factory.shortcutFieldPrefix(),
-				predicate.getName(), validator, conversionService);
-		if (this.publisher != null) {
-			this.publisher.publishEvent(
-					new PredicateArgsEvent(this, route.getId(), properties));
+		ConfigurationUtils.bind(config, properties, factory.shortcutFieldPrefix(), name,
+				validator, conversionService);
+		return properties;
+	}
+
+	private static final class CompiledRoute {
+
+		private final RouteDefinitionKey key;
+
+		private final Route route;
+
+		CompiledRoute(RouteDefinitionKey key, Route route) {
+			this.key = key;
+			this.route = route;
 		}
-		return factory.applyAsync(config);
+
+	}
+
+	/**
+	 * Copy of everything a {@link Route} is compiled from, so that later changes to the
+	 * (mutable) definitions are detected.
+	 */
+	private static final class RouteDefinitionKey {
+
+		private final String id;
+
+		private final URI uri;
+
+		private final int order;
+
+		private final List<PredicateDefinition> predicates;
+
+		private final List<FilterDefinition> filters;
+
+		private final List<FilterDefinition> defaultFilters;
+
+		private final int hash;
+
+		RouteDefinitionKey(RouteDefinition routeDefinition,
+				List<FilterDefinition> defaultFilters) {
+			this.id = routeDefinition.getId();
+			this.uri = routeDefinition.getUri();
+			this.order = routeDefinition.getOrder();
+			this.predicates = routeDefinition.getPredicates().stream()
+					.map(RouteDefinitionKey::copy).collect(Collectors.toList());
+			this.filters = copy(routeDefinition.getFilters());
+			this.defaultFilters = copy(defaultFilters);
+			this.hash = Objects.hash(this.id, this.uri, this.order, this.predicates,
+					this.filters, this.defaultFilters);
+		}
+
+		private static PredicateDefinition copy(PredicateDefinition definition) {
+			PredicateDefinition copy = new PredicateDefinition();
+			copy.setName(definition.getName());
+			copy.setArgs(new LinkedHashMap<>(definition.getArgs()));
+			return copy;
+		}
+
+		private static List<FilterDefinition> copy(List<FilterDefinition> definitions) {
+			return definitions.stream().map(definition -> {
+				FilterDefinition copy = new FilterDefinition();
+				copy.setName(definition.getName());
+				copy.setArgs(new LinkedHashMap<>(definition.getArgs()));
+				return copy;
+			}).collect(Collectors.toList());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			RouteDefinitionKey that = (RouteDefinitionKey) o;
+			return this.hash == that.hash && this.order == that.order
+					&& Objects.equals(this.id, that.id)
+					&& Objects.equals(this.uri, that.uri)
+					&& Objects.equals(this.predicates, that.predicates)
+					&& Objects.equals(this.filters, that.filters)
+					&& Objects.equals(this.defaultFilters, that.defaultFilters);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
 	}
 
 }
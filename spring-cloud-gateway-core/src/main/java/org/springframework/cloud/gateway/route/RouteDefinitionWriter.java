@@ -16,6 +16,9 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.util.List;
+
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -27,4 +30,20 @@ public interface RouteDefinitionWriter {
 
 	Mono<Void> delete(Mono<String> routeId);
 
+	/**
+	 * Saves and deletes route definitions as a single change. The default
+	 * implementation saves and deletes them one after the other, so readers may see a
+	 * part of the change and a failing delete leaves the preceding changes applied.
+	 * Writers that can apply the whole change atomically should override it.
+	 * @param saves the route definitions to save
+	 * @param deletes the ids of the route definitions to delete
+	 * @return a mono that completes once the change is applied
+	 */
+	default Mono<Void> update(List<RouteDefinition> saves, List<String> deletes) {
+		return Flux.fromIterable(saves).concatMap(route -> save(Mono.just(route)))
+				.thenMany(Flux.fromIterable(deletes)
+						.concatMap(id -> delete(Mono.just(id))))
+				.then();
+	}
+
 }
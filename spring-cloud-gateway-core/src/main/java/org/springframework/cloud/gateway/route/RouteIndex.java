@@ -0,0 +1,405 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.AndAsyncPredicate;
+import org.springframework.cloud.gateway.handler.AsyncPredicate.DefaultAsyncPredicate;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.getPathContainer;
+
+/**
+ * Index over an ordered list of {@link Route}s that narrows down the routes that have
+ * to be tested for a given exchange.
+ * <p>
+ * A route whose predicate is a conjunction containing a Host, Path or Method predicate
+ * is keyed by, in this order of preference, the literal hosts, the literal path
+ * prefixes, the literal trailing host labels (e.g. {@code example.com} of
+ * {@code **.example.com}) or the method of that predicate. Hosts are looked up in a
+ * hash map, path prefixes in a segment trie and host suffixes in a trie of reversed
+ * labels, so the cost of a lookup does not grow with the number of routes. These keys
+ * are only necessary conditions, so candidates still need to be tested with the full
+ * route predicate. Routes that can not be keyed are always
+ * returned as candidates. Candidates are returned in route order, keeping first-match
+ * semantics intact.
+ */
+public class RouteIndex {
+
+	private static final String PATTERN_CHARS = "{}*?%;";
+
+	private final List<Route> routes;
+
+	private final SegmentNode paths = new SegmentNode();
+
+	private final Map<String, IndexList> hosts = new HashMap<>();
+
+	private final SegmentNode hostSuffixes = new SegmentNode();
+
+	private final Map<HttpMethod, IndexList> methods = new EnumMap<>(HttpMethod.class);
+
+	private final int[] unindexed;
+
+	public RouteIndex(List<Route> routes) {
+		this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+
+		IndexList unindexed = new IndexList();
+		for (int i = 0; i < this.routes.size(); i++) {
+			if (!index(i, this.routes.get(i))) {
+				unindexed.add(i);
+			}
+		}
+		this.unindexed = unindexed.toArray();
+		this.paths.freeze();
+		this.hosts.values().forEach(IndexList::freeze);
+		this.hostSuffixes.freeze();
+		this.methods.values().forEach(IndexList::freeze);
+	}
+
+	/**
+	 * @return all indexed routes, in order
+	 */
+	public List<Route> getRoutes() {
+		return this.routes;
+	}
+
+	/**
+	 * Returns the routes that may match the given exchange, in route order.
+	 * @param exchange the current exchange
+	 * @return the candidate routes
+	 */
+	public List<Route> getCandidates(ServerWebExchange exchange) {
+		ServerHttpRequest request = exchange.getRequest();
+		if (this.unindexed.length == this.routes.size() || request == null) {
+			return this.routes;
+		}
+
+		IndexList candidates = new IndexList();
+		candidates.addAll(this.unindexed);
+
+		if (!this.methods.isEmpty() && request.getMethod() != null) {
+			IndexList found = this.methods.get(request.getMethod());
+			if (found != null) {
+				candidates.addAll(found.indexes);
+			}
+		}
+
+		if (!this.hosts.isEmpty() || !this.hostSuffixes.isEmpty()) {
+			String host = request.getHeaders().getFirst(HttpHeaders.HOST);
+			if (host != null) {
+				String normalized = normalizeHost(host);
+				IndexList found = this.hosts.get(normalized);
+				if (found != null) {
+					candidates.addAll(found.indexes);
+				}
+				if (!this.hostSuffixes.isEmpty()) {
+					SegmentNode node = this.hostSuffixes;
+					int end = normalized.length();
+					while (end > 0 && node != null) {
+						int start = normalized.lastIndexOf('.', end - 1) + 1;
+						node = node.children.get(normalized.substring(start, end));
+						if (node != null) {
+							candidates.addAll(node.routes.indexes);
+						}
+						end = start - 1;
+					}
+				}
+			}
+		}
+
+		if (!this.paths.isEmpty()) {
+			SegmentNode node = this.paths;
+			PathContainer path = getPathContainer(exchange);
+			for (PathContainer.Element element : path.elements()) {
+				if (!(element instanceof PathContainer.PathSegment)) {
+					continue;
+				}
+				String segment = ((PathContainer.PathSegment) element).valueToMatch();
+				node = node.children.get(segment.toLowerCase(Locale.ROOT));
+				if (node == null) {
+					break;
+				}
+				candidates.addAll(node.routes.indexes);
+			}
+		}
+
+		int[] indexes = candidates.sorted();
+		List<Route> matched = new ArrayList<>(indexes.length);
+		for (int i = 0; i < indexes.length; i++) {
+			if (i == 0 || indexes[i] != indexes[i - 1]) {
+				matched.add(this.routes.get(indexes[i]));
+			}
+		}
+		return matched;
+	}
+
+	private boolean index(int position, Route route) {
+		List<Object> configs = new ArrayList<>();
+		collectConfigs(route.getPredicate(), configs);
+
+		for (Object config : configs) {
+			if (config instanceof HostRoutePredicateFactory.Config) {
+				List<String> literalHosts = literalHosts(
+						(HostRoutePredicateFactory.Config) config);
+				if (literalHosts != null) {
+					literalHosts.forEach(host -> this.hosts
+							.computeIfAbsent(host, key -> new IndexList()).add(position));
+					return true;
+				}
+			}
+		}
+		for (Object config : configs) {
+			if (config instanceof PathRoutePredicateFactory.Config) {
+				List<List<String>> prefixes = pathPrefixes(
+						(PathRoutePredicateFactory.Config) config);
+				if (prefixes != null) {
+					prefixes.forEach(prefix -> this.paths.add(prefix, position));
+					return true;
+				}
+			}
+		}
+		for (Object config : configs) {
+			if (config instanceof HostRoutePredicateFactory.Config) {
+				if (indexHostSuffixes(position,
+						(HostRoutePredicateFactory.Config) config)) {
+					return true;
+				}
+			}
+		}
+		for (Object config : configs) {
+			if (config instanceof MethodRoutePredicateFactory.Config) {
+				HttpMethod method = ((MethodRoutePredicateFactory.Config) config)
+						.getMethod();
+				if (method != null) {
+					this.methods.computeIfAbsent(method, key -> new IndexList())
+							.add(position);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Indexes literal hosts by host and patterns by their literal trailing labels.
+	 * @return false if a pattern does not end with at least one literal label
+	 */
+	private boolean indexHostSuffixes(int position,
+			HostRoutePredicateFactory.Config config) {
+		if (config.getPatterns() == null || config.getPatterns().isEmpty()) {
+			return false;
+		}
+		List<List<String>> suffixes = new ArrayList<>();
+		for (String pattern : config.getPatterns()) {
+			if (pattern == null) {
+				return false;
+			}
+			String[] labels = StringUtils.delimitedListToStringArray(
+					normalizeHost(pattern), ".");
+			List<String> suffix = new ArrayList<>();
+			for (int i = labels.length - 1; i >= 0; i--) {
+				if (labels[i].isEmpty() || containsPatternChars(labels[i])) {
+					break;
+				}
+				suffix.add(labels[i]);
+			}
+			if (suffix.isEmpty()) {
+				return false;
+			}
+			suffixes.add(suffix);
+		}
+		suffixes.forEach(suffix -> this.hostSuffixes.add(suffix, position));
+		return true;
+	}
+
+	/**
+	 * Collects the configurations of the predicates that all have to match for the
+	 * given predicate to match.
+	 */
+	private static void collectConfigs(AsyncPredicate<?> predicate,
+			List<Object> configs) {
+		if (predicate instanceof AndAsyncPredicate) {
+			AndAsyncPredicate<?> and = (AndAsyncPredicate<?>) predicate;
+			collectConfigs(and.getLeft(), configs);
+			collectConfigs(and.getRight(), configs);
+		}
+		else if (predicate instanceof DefaultAsyncPredicate) {
+			Object config = ((DefaultAsyncPredicate<?>) predicate).getConfig();
+			if (config != null) {
+				configs.add(config);
+			}
+		}
+	}
+
+	/**
+	 * @return the literal leading segments of every pattern, or null if a pattern does
+	 * not start with at least one literal segment
+	 */
+	private static List<List<String>> pathPrefixes(
+			PathRoutePredicateFactory.Config config) {
+		if (config.getPatterns() == null || config.getPatterns().isEmpty()) {
+			return null;
+		}
+		List<List<String>> prefixes = new ArrayList<>();
+		for (String pattern : config.getPatterns()) {
+			if (pattern == null || !pattern.startsWith("/")) {
+				return null;
+			}
+			List<String> prefix = new ArrayList<>();
+			for (String segment : StringUtils
+					.delimitedListToStringArray(pattern.substring(1), "/")) {
+				if (segment.isEmpty() || containsPatternChars(segment)) {
+					break;
+				}
+				prefix.add(segment.toLowerCase(Locale.ROOT));
+			}
+			if (prefix.isEmpty()) {
+				return null;
+			}
+			prefixes.add(prefix);
+		}
+		return prefixes;
+	}
+
+	/**
+	 * @return the normalized hosts, or null if any of the patterns is not a literal
+	 */
+	private static List<String> literalHosts(HostRoutePredicateFactory.Config config) {
+		if (config.getPatterns() == null || config.getPatterns().isEmpty()) {
+			return null;
+		}
+		List<String> hosts = new ArrayList<>();
+		for (String pattern : config.getPatterns()) {
+			if (pattern == null || containsPatternChars(pattern)) {
+				return null;
+			}
+			hosts.add(normalizeHost(pattern));
+		}
+		return hosts;
+	}
+
+	private static boolean containsPatternChars(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (PATTERN_CHARS.indexOf(value.charAt(i)) != -1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Lower cases the host and drops empty labels, the same way the default
+	 * {@link org.springframework.util.AntPathMatcher} tokenizes it.
+	 */
+	static String normalizeHost(String host) {
+		String[] labels = StringUtils
+				.tokenizeToStringArray(host.toLowerCase(Locale.ROOT), ".", false, true);
+		return StringUtils.arrayToDelimitedString(labels, ".");
+	}
+
+	@Override
+	public String toString() {
+		return "RouteIndex{routes=" + this.routes.size() + ", unindexed="
+				+ this.unindexed.length + ", hosts=" + this.hosts.size()
+				+ ", hostSuffixes=" + this.hostSuffixes.children.size() + ", methods="
+				+ this.methods.keySet() + '}';
+	}
+
+	/**
+	 * Trie node keyed by path segments or reversed host labels.
+	 */
+	private static final class SegmentNode {
+
+		private final Map<String, SegmentNode> children = new HashMap<>();
+
+		private final IndexList routes = new IndexList();
+
+		void add(List<String> segments, int position) {
+			SegmentNode node = this;
+			for (String segment : segments) {
+				node = node.children.computeIfAbsent(segment, key -> new SegmentNode());
+			}
+			node.routes.add(position);
+		}
+
+		boolean isEmpty() {
+			return this.children.isEmpty();
+		}
+
+		void freeze() {
+			this.routes.freeze();
+			this.children.values().forEach(SegmentNode::freeze);
+		}
+
+	}
+
+	/**
+	 * Growable list of route positions.
+	 */
+	private static final class IndexList {
+
+		private int[] indexes = new int[4];
+
+		private int size;
+
+		void add(int index) {
+			if (this.size == this.indexes.length) {
+				this.indexes = Arrays.copyOf(this.indexes, this.size * 2);
+			}
+			this.indexes[this.size++] = index;
+		}
+
+		void addAll(int[] values) {
+			for (int value : values) {
+				add(value);
+			}
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(this.indexes, this.size);
+		}
+
+		int[] sorted() {
+			int[] sorted = toArray();
+			Arrays.sort(sorted);
+			return sorted;
+		}
+
+		void freeze() {
+			this.indexes = toArray();
+		}
+
+	}
+
+}
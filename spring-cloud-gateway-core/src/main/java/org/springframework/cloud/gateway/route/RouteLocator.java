@@ -18,6 +18,8 @@ package org.springframework.cloud.gateway.route;
 
 import reactor.core.publisher.Flux;
 
+import org.springframework.web.server.ServerWebExchange;
+
 /**
  * @author Spencer Gibb
  */
@@ -26,4 +28,15 @@ public interface RouteLocator {
 
 	Flux<Route> getRoutes();
 
+	/**
+	 * Returns the routes that may match the given exchange, in the same order as
+	 * {@link #getRoutes()}. Implementations may use this to skip routes that can not
+	 * match; by default all routes are returned.
+	 * @param exchange the current exchange
+	 * @return the candidate routes
+	 */
+	default Flux<Route> getCandidateRoutes(ServerWebExchange exchange) {
+		return getRoutes();
+	}
+
 }
@@ -16,6 +16,13 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
 import org.springframework.cloud.client.discovery.event.HeartbeatMonitor;
 import org.springframework.cloud.client.discovery.event.InstanceRegisteredEvent;
@@ -26,19 +33,72 @@ import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
+/**
+ * Publishes a {@link RefreshRoutesEvent} when the context or the refresh scope is
+ * refreshed, an instance is registered or a heartbeat reports a change.
+ * <p>
+ * With a positive debounce window, the event is published once no further triggering
+ * event arrived within the window, but at the latest the maximum delay after the first
+ * event of a burst. A burst of events therefore causes a single refresh. Without a
+ * window, every triggering event is published immediately.
+ */
 // see ZuulDiscoveryRefreshListener
 // TODO: make abstract class in commons?
-public class RouteRefreshListener implements ApplicationListener<ApplicationEvent> {
+public class RouteRefreshListener
+		implements ApplicationListener<ApplicationEvent>, DisposableBean {
 
 	private final ApplicationEventPublisher publisher;
 
 	private HeartbeatMonitor monitor = new HeartbeatMonitor();
 
+	private final long debounceNanos;
+
+	private final long maxDelayNanos;
+
+	private final ScheduledThreadPoolExecutor executor;
+
+	private final LongAdder executed = new LongAdder();
+
+	private final LongAdder suppressed = new LongAdder();
+
+	/**
+	 * The pending refresh, null if there is none. Guarded by this.
+	 */
+	private ScheduledFuture<?> pending;
+
+	/**
+	 * Identifies the last scheduled refresh, so that a replaced one that already
+	 * started does not publish. Guarded by this.
+	 */
+	private long scheduled;
+
+	private long burstStart;
+
 	public RouteRefreshListener(ApplicationEventPublisher publisher) {
+		this(publisher, Duration.ZERO, Duration.ZERO);
+	}
+
+	public RouteRefreshListener(ApplicationEventPublisher publisher, Duration debounce,
+			Duration maxDelay) {
 		Assert.notNull(publisher, "publisher may not be null");
+		Assert.notNull(debounce, "debounce may not be null");
+		Assert.notNull(maxDelay, "maxDelay may not be null");
 		this.publisher = publisher;
+		this.debounceNanos = Math.max(0, debounce.toNanos());
+		this.maxDelayNanos = Math.max(this.debounceNanos, maxDelay.toNanos());
+		if (this.debounceNanos > 0) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+					"route-refresh-");
+			threadFactory.setDaemon(true);
+			this.executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+			this.executor.setRemoveOnCancelPolicy(true);
+		}
+		else {
+			this.executor = null;
+		}
 	}
 
 	@Override
@@ -65,7 +125,62 @@ public class RouteRefreshListener implements ApplicationListener<ApplicationEven
 	}
 
 	private void reset() {
+		if (this.executor == null) {
+			publish();
+			return;
+		}
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (this.pending == null) {
+				this.burstStart = now;
+			}
+			else {
+				// coalesced into the pending refresh, which is postponed
+				this.pending.cancel(false);
+				this.suppressed.increment();
+			}
+			long delay = Math.min(this.debounceNanos,
+					this.burstStart + this.maxDelayNanos - now);
+			long id = ++this.scheduled;
+			this.pending = this.executor.schedule(() -> publishScheduled(id),
+					Math.max(0, delay), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private void publishScheduled(long id) {
+		synchronized (this) {
+			if (id != this.scheduled) {
+				return;
+			}
+			this.pending = null;
+		}
+		publish();
+	}
+
+	private void publish() {
+		this.executed.increment();
 		this.publisher.publishEvent(new RefreshRoutesEvent(this));
 	}
 
+	/**
+	 * @return the number of published refreshes
+	 */
+	public long getExecutedCount() {
+		return this.executed.sum();
+	}
+
+	/**
+	 * @return the number of triggering events that were coalesced into another refresh
+	 */
+	public long getSuppressedCount() {
+		return this.suppressed.sum();
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+	}
+
 }
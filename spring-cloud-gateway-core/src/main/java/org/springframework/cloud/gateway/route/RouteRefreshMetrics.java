@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the number of executed and suppressed refreshes of a
+ * {@link RouteRefreshListener}.
+ */
+public class RouteRefreshMetrics implements MeterBinder {
+
+	private static final String NAME = "gateway.route.refreshes";
+
+	private final RouteRefreshListener listener;
+
+	public RouteRefreshMetrics(RouteRefreshListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter
+				.builder(NAME, this.listener, RouteRefreshListener::getExecutedCount)
+				.tag("result", "executed").description("Published route refreshes")
+				.register(registry);
+		FunctionCounter
+				.builder(NAME, this.listener, RouteRefreshListener::getSuppressedCount)
+				.tag("result", "suppressed")
+				.description("Route refresh triggers coalesced into another refresh")
+				.register(registry);
+	}
+
+}
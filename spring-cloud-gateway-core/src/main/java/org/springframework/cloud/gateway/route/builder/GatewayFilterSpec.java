@@ -19,6 +19,7 @@ package org.springframework.cloud.gateway.route.builder;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -39,7 +40,9 @@ import org.springframework.cloud.gateway.filter.factory.AbstractChangeRequestUri
 import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.AddRequestParameterGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.AddResponseHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.ConsistentHashGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.FallbackHeadersGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.HealthCheckGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.HystrixGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PrefixPathGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.PreserveHostHeaderGatewayFilterFactory;
@@ -177,6 +180,43 @@ public class GatewayFilterSpec extends UriSpec {
 				.apply(c -> c.setName(headerName).setValue(headerValue)));
 	}
 
+	/**
+	 * A filter that actively checks the health of the upstream of the route. Requests
+	 * to an unhealthy {@code http} or {@code https} URI fail with {@code 503}, unhealthy
+	 * instances of an {@code lb://} service are not chosen.
+	 * @param path the path of the health endpoint of the upstream
+	 * @param interval the interval between health checks
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec healthCheck(String path, Duration interval) {
+		return healthCheck(c -> c.setPath(path).setInterval(interval));
+	}
+
+	/**
+	 * A filter that actively checks the health of the upstream of the route.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the
+	 * health checks
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec healthCheck(
+			Consumer<HealthCheckGatewayFilterFactory.Config> configConsumer) {
+		return filter(
+				getBean(HealthCheckGatewayFilterFactory.class).apply(configConsumer));
+	}
+
+	/**
+	 * A filter that makes the reactive load balancer send the requests of the route
+	 * with the same key to the same instance.
+	 * @param configConsumer a {@link Consumer} which provides configuration for the
+	 * key of the requests
+	 * @return a {@link GatewayFilterSpec} that can be used to apply additional filters
+	 */
+	public GatewayFilterSpec consistentHash(
+			Consumer<ConsistentHashGatewayFilterFactory.Config> configConsumer) {
+		return filter(getBean(ConsistentHashGatewayFilterFactory.class)
+				.apply(configConsumer));
+	}
+
 	/**
 	 * Wraps the route in a Hystrix command. Depends on @{code
 	 * org.springframework.cloud::spring-cloud-starter-netflix-hystrix} being on the
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.function.Predicate;
 
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.handler.AsyncPredicate;
 import org.springframework.cloud.gateway.handler.predicate.AfterRoutePredicateFactory;
 import org.springframework.cloud.gateway.handler.predicate.BeforeRoutePredicateFactory;
@@ -286,8 +287,22 @@ public class PredicateSpec extends UriSpec {
 	 * @return a {@link BooleanSpec} to be used to add logical operators
 	 */
 	public BooleanSpec weight(String group, int weight) {
-		return asyncPredicate(getBean(WeightRoutePredicateFactory.class).applyAsync(c -> c
-				.setGroup(group).setRouteId(routeBuilder.getId()).setWeight(weight)));
+		return weight(group, weight, null);
+	}
+
+	/**
+	 * A predicate which will select a route based on its assigned weight. Requests
+	 * with the same key resolved by the {@link KeyResolver} of the group select the
+	 * same route.
+	 * @param group the group the route belongs to
+	 * @param weight the weight for the route
+	 * @param keyResolver the key resolver of the group
+	 * @return a {@link BooleanSpec} to be used to add logical operators
+	 */
+	public BooleanSpec weight(String group, int weight, KeyResolver keyResolver) {
+		return asyncPredicate(getBean(WeightRoutePredicateFactory.class)
+				.applyAsync(c -> c.setGroup(group).setRouteId(routeBuilder.getId())
+						.setWeight(weight).setKeyResolver(keyResolver)));
 	}
 
 	public BooleanSpec cloudFoundryRouteService() {
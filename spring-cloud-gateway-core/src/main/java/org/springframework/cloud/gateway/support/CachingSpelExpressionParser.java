@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+/**
+ * {@link SpelExpressionParser} that parses every distinct expression once. Parsed
+ * expressions are thread safe and are shared, so that the same expression used by
+ * many routes is parsed once and, if the compiler is enabled, compiled once.
+ * <p>
+ * Meant for expressions from configuration, the cache is not bounded.
+ */
+public class CachingSpelExpressionParser extends SpelExpressionParser {
+
+	private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+	public CachingSpelExpressionParser() {
+	}
+
+	/**
+	 * @param compilerMode the compiler mode, or null for the default of
+	 * {@link SpelParserConfiguration}
+	 */
+	public CachingSpelExpressionParser(SpelCompilerMode compilerMode) {
+		super(compilerMode != null ? new SpelParserConfiguration(compilerMode, null)
+				: new SpelParserConfiguration());
+	}
+
+	@Override
+	public Expression parseExpression(String expressionString, ParserContext context)
+			throws ParseException {
+		String key = context == null ? expressionString
+				: (context.isTemplate() ? "T" : "E") + context.getExpressionPrefix()
+						+ '\0' + context.getExpressionSuffix() + '\0' + expressionString;
+		Expression expression = this.expressions.get(key);
+		if (expression == null) {
+			// parsed outside of computeIfAbsent, which locks other keys meanwhile
+			expression = super.parseExpression(expressionString, context);
+			Expression existing = this.expressions.putIfAbsent(key, expression);
+			if (existing != null) {
+				expression = existing;
+			}
+		}
+		return expression;
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+/**
+ * 64 bit hashes of strings that are stable across JVMs, unlike identity hash codes,
+ * and spread every input bit over the result, unlike {@link String#hashCode()}.
+ */
+public final class HashUtils {
+
+	private HashUtils() {
+		throw new AssertionError("Must not instantiate utility class.");
+	}
+
+	/**
+	 * @param value the value to hash
+	 * @return the hash of the value with seed 0, see {@link #hash(String, long)}
+	 */
+	public static long hash(String value) {
+		return hash(value, 0);
+	}
+
+	/**
+	 * FNV-1a over the chars of the value, followed by {@link #mix(long)}.
+	 * @param value the value to hash
+	 * @param seed combined with the offset basis, different seeds give unrelated hashes
+	 * @return the hash
+	 */
+	public static long hash(String value, long seed) {
+		long hash = 0xcbf29ce484222325L ^ seed;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Finalizer of SplitMix64, spreads every input bit over the result.
+	 * @param z the value to mix
+	 * @return the mixed value
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}
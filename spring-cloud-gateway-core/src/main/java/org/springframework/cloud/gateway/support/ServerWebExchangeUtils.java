@@ -24,10 +24,10 @@ import java.util.function.Predicate;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import reactor.core.publisher.Mono;
 
 import org.springframework.cloud.gateway.handler.AsyncPredicate;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
 import org.springframework.http.server.reactive.AbstractServerHttpResponse;
 import org.springframework.util.Assert;
 import org.springframework.web.server.ServerWebExchange;
@@ -67,6 +67,30 @@ public final class ServerWebExchangeUtils {
 	public static final String CLIENT_RESPONSE_HEADER_NAMES = qualify(
 			"gatewayClientResponseHeaderNames");
 
+	/**
+	 * Client response listener attribute name. The value is a
+	 * {@code Consumer<HttpClientResponse>} that the {@code NettyRoutingFilter} calls as
+	 * soon as the response headers of the proxied request are received.
+	 */
+	public static final String CLIENT_RESPONSE_LISTENER_ATTR = qualify(
+			"gatewayClientResponseListener");
+
+	/**
+	 * Load balancer instance selector attribute name. The value is an
+	 * {@code InstanceSelector} that the {@code ReactiveLoadBalancerClientFilter} uses
+	 * instead of its own to choose the instance for the current route.
+	 */
+	public static final String LOAD_BALANCER_SELECTOR_ATTR = qualify(
+			"gatewayLoadBalancerSelector");
+
+	/**
+	 * Load balancer key resolver attribute name. The value is a {@code KeyResolver} that
+	 * the {@code ConsistentHashInstanceSelector} uses instead of its own to resolve the
+	 * key of the current request.
+	 */
+	public static final String LOAD_BALANCER_KEY_RESOLVER_ATTR = qualify(
+			"gatewayLoadBalancerKeyResolver");
+
 	/**
 	 * Gateway route attribute name.
 	 */
@@ -101,6 +125,12 @@ public final class ServerWebExchangeUtils {
 	public static final String GATEWAY_PREDICATE_ROUTE_ATTR = qualify(
 			"gatewayPredicateRouteAttr");
 
+	/**
+	 * Gateway predicate parsed request path attribute name.
+	 */
+	public static final String GATEWAY_PREDICATE_PATH_CONTAINER_ATTR = qualify(
+			"gatewayPredicatePathContainer");
+
 	/**
 	 * Weight attribute name.
 	 */
@@ -219,7 +249,7 @@ public final class ServerWebExchangeUtils {
 	public static AsyncPredicate<ServerWebExchange> toAsyncPredicate(
 			Predicate<? super ServerWebExchange> predicate) {
 		Assert.notNull(predicate, "predicate must not be null");
-		return t -> Mono.just(predicate.test(t));
+		return new AsyncPredicate.DefaultAsyncPredicate<>(predicate);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -238,6 +268,25 @@ public final class ServerWebExchangeUtils {
 		}
 	}
 
+	/**
+	 * Returns the path of the request parsed into a {@link PathContainer}. The result is
+	 * kept as an exchange attribute, so that predicates of all routes share it.
+	 * @param exchange the current exchange
+	 * @return the parsed path
+	 */
+	public static PathContainer getPathContainer(ServerWebExchange exchange) {
+		String path = exchange.getRequest().getURI().getPath();
+		PathContainer pathContainer = exchange
+				.getAttribute(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR);
+		// the attributes are shared with mutated exchanges, which may have another path
+		if (pathContainer == null || !pathContainer.value().equals(path)) {
+			pathContainer = PathContainer.parsePath(path);
+			exchange.getAttributes().put(GATEWAY_PREDICATE_PATH_CONTAINER_ATTR,
+					pathContainer);
+		}
+		return pathContainer;
+	}
+
 	public static Map<String, String> getUriTemplateVariables(
 			ServerWebExchange exchange) {
 		return exchange.getAttributeOrDefault(URI_TEMPLATE_VARIABLES_ATTRIBUTE,
@@ -19,6 +19,7 @@ package org.springframework.cloud.gateway.support;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.validation.annotation.Validated;
 
@@ -38,6 +39,11 @@ public class WeightConfig {
 	@Min(0)
 	private int weight;
 
+	/**
+	 * Resolves the key by which requests stick to a route of the group, if any.
+	 */
+	private KeyResolver keyResolver;
+
 	private WeightConfig() {
 	}
 
@@ -78,10 +84,19 @@ public class WeightConfig {
 		return this;
 	}
 
+	public KeyResolver getKeyResolver() {
+		return keyResolver;
+	}
+
+	public WeightConfig setKeyResolver(KeyResolver keyResolver) {
+		this.keyResolver = keyResolver;
+		return this;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringCreator(this).append("group", group).append("routeId", routeId)
-				.append("weight", weight).toString();
+				.append("weight", weight).append("keyResolver", keyResolver).toString();
 	}
 
 }
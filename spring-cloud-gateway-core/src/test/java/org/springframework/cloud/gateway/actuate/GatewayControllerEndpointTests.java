@@ -16,20 +16,34 @@
 
 package org.springframework.cloud.gateway.actuate;
 
+import java.net.URI;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import reactor.core.publisher.Flux;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
+import org.springframework.cloud.gateway.filter.WeightCalculatorWebFilter;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.test.PermitAllSecurityConfiguration;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -42,6 +56,12 @@ public class GatewayControllerEndpointTests {
 	@Autowired
 	WebTestClient testClient;
 
+	@Autowired
+	TestConfig testConfig;
+
+	@Autowired
+	WeightCalculatorWebFilter weightCalculatorWebFilter;
+
 	@LocalServerPort
 	int port;
 
@@ -51,6 +71,13 @@ public class GatewayControllerEndpointTests {
 				.exchange().expectStatus().isOk();
 	}
 
+	@Test
+	public void testLoadBalancerWithoutReactiveLoadBalancer() {
+		testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/loadbalancer")
+				.exchange().expectStatus().isOk().expectBody().json("{}");
+	}
+
 	@Test
 	public void testRoutes() {
 		testClient.get().uri("http://localhost:" + port + "/actuator/gateway/routes")
@@ -61,11 +88,263 @@ public class GatewayControllerEndpointTests {
 				});
 	}
 
+	@Test
+	public void testRoutesPage() {
+		List<Map> firstTwo = testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes?limit=2")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class).hasSize(2)
+				.returnResult().getResponseBody();
+
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes?offset=1&limit=1")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class)
+				.consumeWith(result -> assertThat(result.getResponseBody())
+						.extracting(route -> route.get("route_id"))
+						.containsExactly(firstTwo.get(1).get("route_id")));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRoutesFiltered() {
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes?idPrefix=hystrix_")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class)
+				.consumeWith(result -> assertThat(result.getResponseBody())
+						.isNotEmpty().extracting(route -> route.get("route_id"))
+						.allMatch(id -> ((String) id).startsWith("hystrix_")));
+
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes?predicate=Method")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class)
+				.consumeWith(result -> {
+					assertThat(result.getResponseBody())
+							.extracting(route -> route.get("route_id"))
+							.contains("method_test");
+					assertThat(result.getResponseBody()).allMatch(route -> {
+						Map<String, Object> definition = (Map<String, Object>) route
+								.get("route_definition");
+						List<Map<String, Object>> predicates = (List<Map<String, Object>>) definition
+								.get("predicates");
+						return predicates.stream().anyMatch(
+								predicate -> "Method".equals(predicate.get("name")));
+					});
+				});
+	}
+
+	@Test
+	public void testRoutesStreamed() {
+		List<Map> routes = testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes?limit=3")
+				.accept(MediaType.APPLICATION_STREAM_JSON).exchange().expectStatus()
+				.isOk().returnResult(Map.class).getResponseBody().collectList().block();
+
+		assertThat(routes).hasSize(3);
+	}
+
+	@Test
+	public void testRoutesNegativeOffset() {
+		testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes?offset=-1")
+				.exchange().expectStatus().isBadRequest();
+	}
+
+	@Test
+	public void testBatchUpdate() {
+		RouteDefinitionBatch batch = new RouteDefinitionBatch();
+		batch.getSave().put("batch-route1", routeDefinition("/batch1"));
+		batch.getSave().put("batch-route2", routeDefinition("/batch2"));
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.syncBody(batch).exchange().expectStatus().isOk();
+
+		testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes/batch-route1")
+				.exchange().expectStatus().isOk();
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes?idPrefix=batch-route")
+				.exchange().expectStatus().isOk().expectBodyList(Map.class)
+				.consumeWith(result -> assertThat(result.getResponseBody())
+						.extracting(route -> route.get("route_id"))
+						.containsExactly("batch-route1", "batch-route2"));
+
+		batch = new RouteDefinitionBatch();
+		batch.getSave().put("batch-route3", routeDefinition("/batch3"));
+		batch.setDelete(Collections.singletonList("batch-route1"));
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.syncBody(batch).exchange().expectStatus().isOk();
+
+		testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes/batch-route1")
+				.exchange().expectStatus().isNotFound();
+		testClient.get()
+				.uri("http://localhost:" + port + "/actuator/gateway/routes/batch-route3")
+				.exchange().expectStatus().isOk();
+	}
+
+	@Test
+	public void testBatchUpdateWithInvalidRoutesChangesNothing() {
+		RouteDefinitionBatch batch = new RouteDefinitionBatch();
+		batch.getSave().put("invalid-batch-valid", routeDefinition("/valid"));
+		RouteDefinition noUri = routeDefinition("/nouri");
+		noUri.setUri(null);
+		batch.getSave().put("invalid-batch-nouri", noUri);
+		RouteDefinition unknownFilter = routeDefinition("/unknown");
+		unknownFilter.getFilters().add(new FilterDefinition("DoesNotExist=1"));
+		unknownFilter.getPredicates().add(new PredicateDefinition("DoesNotExist=1"));
+		batch.getSave().put("invalid-batch-unknown", unknownFilter);
+
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.syncBody(batch).exchange().expectStatus().isBadRequest()
+				.expectBody(Map.class).consumeWith(result -> {
+					Map<String, List<String>> errors = result.getResponseBody();
+					assertThat(errors).containsOnlyKeys("invalid-batch-nouri",
+							"invalid-batch-unknown");
+					assertThat(errors.get("invalid-batch-nouri"))
+							.containsExactly("uri must not be null");
+					assertThat(errors.get("invalid-batch-unknown")).containsExactly(
+							"unknown predicate: DoesNotExist",
+							"unknown filter: DoesNotExist");
+				});
+
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes/invalid-batch-valid")
+				.exchange().expectStatus().isNotFound();
+	}
+
+	@Test
+	public void testBatchUpdateRefreshesRoutesOnce() {
+		RouteDefinitionBatch batch = new RouteDefinitionBatch();
+		batch.getSave().put("once-batch-route1", routeDefinition("/once1"));
+		batch.getSave().put("once-batch-route2", routeDefinition("/once2"));
+		batch.getSave().put("once-batch-route3", routeDefinition("/once3"));
+		int refreshes = testConfig.endpointRefreshes.get();
+
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.syncBody(batch).exchange().expectStatus().isOk();
+
+		assertThat(testConfig.endpointRefreshes).hasValue(refreshes + 1);
+	}
+
+	@Test
+	public void testBatchUpdateWithUnbindableRouteChangesNothing() {
+		RouteDefinitionBatch batch = new RouteDefinitionBatch();
+		batch.getSave().put("unbindable-batch-valid", routeDefinition("/valid"));
+		RouteDefinition unbindable = routeDefinition("/unbindable");
+		unbindable.getPredicates().add(new PredicateDefinition("Method=NOT_A_METHOD"));
+		batch.getSave().put("unbindable-batch-method", unbindable);
+		int refreshes = testConfig.endpointRefreshes.get();
+
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.syncBody(batch).exchange().expectStatus().isBadRequest()
+				.expectBody(Map.class).consumeWith(result -> {
+					Map<String, List<String>> errors = result.getResponseBody();
+					assertThat(errors).containsOnlyKeys("unbindable-batch-method");
+					assertThat(errors.get("unbindable-batch-method")).hasSize(1)
+							.allMatch(error -> error.startsWith("invalid route: "));
+				});
+
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes/unbindable-batch-valid")
+				.exchange().expectStatus().isNotFound();
+		assertThat(testConfig.endpointRefreshes).hasValue(refreshes);
+	}
+
+	@Test
+	public void testRoutesLooksUpDefinitionsOfReturnedRoutesOnly() {
+		RouteDefinition definition1 = routeDefinition("/1");
+		definition1.setId("route1");
+		RouteDefinition definition2 = routeDefinition("/2");
+		definition2.setId("route2");
+		AtomicInteger lookups = new AtomicInteger();
+		GatewayControllerEndpoint endpoint = new GatewayControllerEndpoint(
+				() -> Flux.just(definition1, definition2)
+						.doOnSubscribe(subscription -> lookups.incrementAndGet()),
+				Collections.emptyList(), Collections.emptyList(), null,
+				() -> Flux.just(route(definition1), route(definition2)));
+
+		assertThat(endpoint.routes("other", null, 0, -1).collectList().block())
+				.isEmpty();
+		assertThat(lookups).hasValue(0);
+
+		List<Map<String, Object>> page = endpoint.routes(null, null, 1, 1).collectList()
+				.block();
+		assertThat(page).hasSize(1);
+		assertThat(page.get(0)).containsEntry("route_id", "route2")
+				.containsEntry("route_definition", definition2);
+
+		List<Map<String, Object>> all = endpoint.routes(null, null, 0, -1)
+				.collectList().block();
+		assertThat(all).extracting(route -> route.get("route_definition"))
+				.containsExactly(definition1, definition2);
+		assertThat(lookups).hasValue(2);
+	}
+
+	@Test
+	public void testRejectedBatchUpdateDoesNotDefineWeights() {
+		RouteDefinitionBatch batch = new RouteDefinitionBatch();
+		RouteDefinition weighted = routeDefinition("/weighted");
+		weighted.getPredicates()
+				.add(new PredicateDefinition("Weight=rejected-batch-group,5"));
+		batch.getSave().put("rejected-batch-weighted", weighted);
+		RouteDefinition unbindable = routeDefinition("/unbindable");
+		unbindable.getPredicates().add(new PredicateDefinition("Method=NOT_A_METHOD"));
+		batch.getSave().put("rejected-batch-method", unbindable);
+
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.syncBody(batch).exchange().expectStatus().isBadRequest();
+
+		Map<String, ?> groupWeights = ReflectionTestUtils
+				.invokeMethod(weightCalculatorWebFilter, "getGroupWeights");
+		assertThat(groupWeights).doesNotContainKey("rejected-batch-group");
+	}
+
+	@Test
+	public void testBatchUpdateDeletingUnknownRouteChangesNothing() {
+		RouteDefinitionBatch batch = new RouteDefinitionBatch();
+		batch.getSave().put("missing-batch-route", routeDefinition("/missing"));
+		batch.setDelete(Collections.singletonList("does-not-exist"));
+
+		testClient.post().uri("http://localhost:" + port + "/actuator/gateway/routes")
+				.syncBody(batch).exchange().expectStatus().isNotFound();
+
+		testClient.get()
+				.uri("http://localhost:" + port
+						+ "/actuator/gateway/routes/missing-batch-route")
+				.exchange().expectStatus().isNotFound();
+	}
+
+	private Route route(RouteDefinition definition) {
+		return Route.async(definition).predicate(exchange -> true).build();
+	}
+
+	private RouteDefinition routeDefinition(String path) {
+		RouteDefinition definition = new RouteDefinition();
+		definition.setUri(URI.create("http://example.org"));
+		definition.getPredicates().add(new PredicateDefinition("Path=" + path));
+		return definition;
+	}
+
 	@SpringBootConfiguration
 	@EnableAutoConfiguration
 	@Import(PermitAllSecurityConfiguration.class)
 	static class TestConfig {
 
+		final AtomicInteger endpointRefreshes = new AtomicInteger();
+
+		@Bean
+		ApplicationListener<RefreshRoutesEvent> endpointRefreshCounter() {
+			return event -> {
+				if (event.getSource() instanceof GatewayControllerEndpoint) {
+					endpointRefreshes.incrementAndGet();
+				}
+			};
+		}
+
 	}
 
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.config;
+
+import org.junit.Test;
+
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.factory.ConsistentHashGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.loadbalancer.ConsistentHashInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.InstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.LeastOutstandingInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.filter.loadbalancer.PeakEwmaInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class GatewayReactiveLoadBalancerClientAutoConfigurationTests {
+
+	private final ReactiveWebApplicationContextRunner contextRunner = new ReactiveWebApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(
+					GatewayReactiveLoadBalancerClientAutoConfiguration.class,
+					GatewayLoadBalancerClientAutoConfiguration.class))
+			.withUserConfiguration(TestConfig.class);
+
+	@Test
+	public void loadBalancerClientFilterByDefault() {
+		contextRunner.run(context -> {
+			assertThat(context).hasSingleBean(LoadBalancerClientFilter.class);
+			assertThat(context).doesNotHaveBean(ReactiveLoadBalancerClientFilter.class);
+			assertThat(context).doesNotHaveBean(ServiceInstanceCache.class);
+		});
+	}
+
+	@Test
+	public void reactiveLoadBalancerClientFilterReplacesLoadBalancerClientFilter() {
+		contextRunner
+				.withPropertyValues("spring.cloud.gateway.loadbalancer.reactive.enabled=true")
+				.run(context -> {
+					assertThat(context)
+							.hasSingleBean(ReactiveLoadBalancerClientFilter.class);
+					assertThat(context).hasSingleBean(ServiceInstanceCache.class);
+					assertThat(context).doesNotHaveBean(LoadBalancerClientFilter.class);
+					assertThat(context).getBean(InstanceSelector.class)
+							.isInstanceOf(LeastOutstandingInstanceSelector.class);
+					assertThat(context).doesNotHaveBean(OutlierDetector.class);
+				});
+	}
+
+	@Test
+	public void peakEwmaSelector() {
+		contextRunner
+				.withPropertyValues("spring.cloud.gateway.loadbalancer.reactive.enabled=true",
+						"spring.cloud.gateway.loadbalancer.reactive.selector=peak-ewma")
+				.run(context -> assertThat(context).getBean(InstanceSelector.class)
+						.isInstanceOf(PeakEwmaInstanceSelector.class));
+	}
+
+	@Test
+	public void consistentHashSelector() {
+		contextRunner
+				.withPropertyValues("spring.cloud.gateway.loadbalancer.reactive.enabled=true",
+						"spring.cloud.gateway.loadbalancer.reactive.selector=consistent-hash",
+						"spring.cloud.gateway.loadbalancer.reactive.consistent-hash.header=X-Key")
+				.run(context -> {
+					assertThat(context).getBean(InstanceSelector.class)
+							.isInstanceOf(ConsistentHashInstanceSelector.class);
+					ConsistentHashGatewayFilterFactory factory = context
+							.getBean(ConsistentHashGatewayFilterFactory.class);
+					assertThat(factory.getSelector())
+							.isSameAs(context.getBean(InstanceSelector.class));
+				});
+	}
+
+	@Test
+	public void consistentHashFilterWithOtherSelector() {
+		contextRunner
+				.withPropertyValues("spring.cloud.gateway.loadbalancer.reactive.enabled=true")
+				.run(context -> {
+					ConsistentHashGatewayFilterFactory factory = context
+							.getBean(ConsistentHashGatewayFilterFactory.class);
+					assertThat(factory.getSelector()).isNotNull()
+							.isNotSameAs(context.getBean(InstanceSelector.class));
+				});
+	}
+
+	@Test
+	public void outlierDetector() {
+		contextRunner
+				.withPropertyValues("spring.cloud.gateway.loadbalancer.reactive.enabled=true",
+						"spring.cloud.gateway.loadbalancer.reactive.outlier-detection.enabled=true")
+				.run(context -> assertThat(context).hasSingleBean(OutlierDetector.class));
+	}
+
+	@Configuration
+	protected static class TestConfig {
+
+		@Bean
+		public LoadBalancerClient loadBalancerClient() {
+			return mock(LoadBalancerClient.class);
+		}
+
+		@Bean
+		public DiscoveryClient discoveryClient() {
+			return mock(DiscoveryClient.class);
+		}
+
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.gateway.discovery;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -66,9 +67,12 @@ public class DiscoveryClientRouteDefinitionLocatorIntegrationTests {
 
 		publisher.publishEvent(new HeartbeatEvent(this, 1L));
 
+		// routes are refreshed asynchronously
 		routes = routeLocator.getRoutes()
 				.filter(route -> route.getId().startsWith("test__")).collectList()
-				.block();
+				.filter(refreshed -> refreshed.size() == 2)
+				.repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(10)))
+				.block(Duration.ofSeconds(5));
 		assertThat(routes).hasSize(2);
 	}
 
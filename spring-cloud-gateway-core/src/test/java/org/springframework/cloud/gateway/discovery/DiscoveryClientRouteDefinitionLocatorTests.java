@@ -16,10 +16,16 @@
 
 package org.springframework.cloud.gateway.discovery;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -90,6 +96,93 @@ public class DiscoveryClientRouteDefinitionLocatorTests {
 				.containsEntry(REPLACEMENT_KEY, "/${remaining}");
 	}
 
+	@Test
+	public void definitionsOfUnchangedServicesAreReused() throws Exception {
+		DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+		when(discoveryClient.getServices())
+				.thenReturn(Arrays.asList("service1", "service2"));
+		Map<String, String> metadata = new HashMap<>();
+		when(discoveryClient.getInstances("service1"))
+				.thenReturn(Collections.singletonList(new DefaultServiceInstance(
+						"service1", "localhost", 8001, false, metadata)));
+		when(discoveryClient.getInstances("service2"))
+				.thenReturn(Collections.singletonList(new DefaultServiceInstance(
+						"service2", "localhost", 8002, false)));
+		DiscoveryLocatorProperties properties = new DiscoveryLocatorProperties();
+		properties.setPredicates(
+				GatewayDiscoveryClientAutoConfiguration.initPredicates());
+		DiscoveryClientRouteDefinitionLocator locator = new DiscoveryClientRouteDefinitionLocator(
+				discoveryClient, properties);
+
+		try {
+			List<RouteDefinition> first = locator.getRouteDefinitions().collectList()
+					.block();
+			List<RouteDefinition> second = locator.getRouteDefinitions()
+					.collectList().block();
+			assertThat(second).hasSize(2);
+			assertThat(second.get(0)).isSameAs(first.get(0));
+			assertThat(second.get(1)).isSameAs(first.get(1));
+
+			metadata.put("version", "2");
+			List<RouteDefinition> third = locator.getRouteDefinitions().collectList()
+					.block();
+			assertThat(third.get(0)).isNotSameAs(second.get(0))
+					.isEqualTo(second.get(0));
+			assertThat(third.get(1)).isSameAs(second.get(1));
+
+			properties.setUrlExpression("'http://'+host+':'+port");
+			List<RouteDefinition> fourth = locator.getRouteDefinitions()
+					.collectList().block();
+			assertThat(fourth.get(0).getUri()).hasScheme("http").hasPort(8001);
+			assertThat(fourth.get(1).getUri()).hasScheme("http").hasPort(8002);
+		}
+		finally {
+			locator.destroy();
+		}
+	}
+
+	@Test
+	public void servicesAreFetchedConcurrentlyInOrder() throws Exception {
+		List<String> services = new ArrayList<>();
+		DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+		// the first calls only return once 10 are in flight together
+		CountDownLatch inFlightTogether = new CountDownLatch(10);
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		for (int i = 0; i < 50; i++) {
+			String serviceId = "service" + i;
+			services.add(serviceId);
+			when(discoveryClient.getInstances(serviceId)).thenAnswer(invocation -> {
+				peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				inFlightTogether.countDown();
+				inFlightTogether.await(1, TimeUnit.SECONDS);
+				inFlight.decrementAndGet();
+				return Collections.singletonList(new DefaultServiceInstance(serviceId,
+						"localhost", 8001, false));
+			});
+		}
+		when(discoveryClient.getServices()).thenReturn(services);
+		DiscoveryLocatorProperties properties = new DiscoveryLocatorProperties();
+		properties.setRouteIdPrefix("test_");
+		properties.setConcurrency(10);
+		DiscoveryClientRouteDefinitionLocator locator = new DiscoveryClientRouteDefinitionLocator(
+				discoveryClient, properties);
+
+		try {
+			List<RouteDefinition> definitions = locator.getRouteDefinitions()
+					.collectList().block();
+			assertThat(definitions.stream().map(RouteDefinition::getId)
+					.collect(Collectors.toList()))
+							.isEqualTo(services.stream().map(id -> "test_" + id)
+									.collect(Collectors.toList()));
+			assertThat(inFlightTogether.getCount()).isZero();
+			assertThat(peak).hasValue(10);
+		}
+		finally {
+			locator.destroy();
+		}
+	}
+
 	@SpringBootConfiguration
 	@EnableAutoConfiguration
 	protected static class Config {
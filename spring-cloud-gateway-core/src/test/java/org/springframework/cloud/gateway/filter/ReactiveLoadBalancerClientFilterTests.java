@@ -0,0 +1,379 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.netty.http.client.HttpClientResponse;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+import org.springframework.cloud.gateway.config.ReactiveLoadBalancerProperties.OutlierDetection;
+import org.springframework.cloud.gateway.filter.loadbalancer.InstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.InstanceStats;
+import org.springframework.cloud.gateway.filter.loadbalancer.LeastOutstandingInstanceSelector;
+import org.springframework.cloud.gateway.filter.loadbalancer.LoadBalancerStats;
+import org.springframework.cloud.gateway.filter.loadbalancer.OutlierDetector;
+import org.springframework.cloud.gateway.filter.loadbalancer.ServiceInstanceCache;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_LISTENER_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_SCHEME_PREFIX_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_SELECTOR_ATTR;
+
+public class ReactiveLoadBalancerClientFilterTests {
+
+	private final DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+
+	private final LoadBalancerStats stats = new LoadBalancerStats();
+
+	private final LoadBalancerProperties properties = new LoadBalancerProperties();
+
+	private final GatewayFilterChain chain = mock(GatewayFilterChain.class);
+
+	private ServiceInstanceCache cache;
+
+	private ReactiveLoadBalancerClientFilter filter;
+
+	@Before
+	public void setup() {
+		cache = new ServiceInstanceCache(discoveryClient, Duration.ofMinutes(1), 1);
+		filter = new ReactiveLoadBalancerClientFilter(cache,
+				new LeastOutstandingInstanceSelector(stats), stats, properties);
+		when(chain.filter(any())).thenReturn(Mono.empty());
+	}
+
+	@After
+	public void destroy() {
+		cache.destroy();
+	}
+
+	@Test
+	public void shouldNotFilterWhenSchemeIsNotLb() {
+		ServerWebExchange exchange = exchange("http://myservice");
+
+		StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+		verify(chain).filter(exchange);
+		verifyZeroInteractions(discoveryClient);
+	}
+
+	@Test
+	public void shouldReplaceServiceIdWithInstance() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, true);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		ServerWebExchange exchange = exchange("lb://myservice");
+
+		StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+		URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+		assertThat(url).isEqualTo(URI.create("https://myhost:9797/mypath?a=b"));
+		LinkedHashSet<URI> originalUrls = exchange
+				.getAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR);
+		assertThat(originalUrls).contains(URI.create("lb://myservice"));
+	}
+
+	@Test
+	public void shouldUseSelectorOfExchange() {
+		ServiceInstance instance1 = new DefaultServiceInstance("myservice", "myhost1",
+				9797, false);
+		ServiceInstance instance2 = new DefaultServiceInstance("myservice", "myhost2",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Arrays.asList(instance1, instance2));
+		ServerWebExchange exchange = exchange("lb://myservice");
+		exchange.getAttributes().put(LOAD_BALANCER_SELECTOR_ATTR,
+				(InstanceSelector) (serviceId, instances, e) -> instances.get(1));
+
+		StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+		URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+		assertThat(url.getHost()).isEqualTo("myhost2");
+	}
+
+	@Test
+	public void shouldUseSchemePrefixWhenInstanceHasNoScheme() {
+		ServiceInstance instance = mock(ServiceInstance.class);
+		when(instance.getServiceId()).thenReturn("myservice");
+		when(instance.getHost()).thenReturn("myhost");
+		when(instance.getPort()).thenReturn(9797);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		ServerWebExchange exchange = exchange("ws://myservice");
+		exchange.getAttributes().put(GATEWAY_SCHEME_PREFIX_ATTR, "lb");
+
+		StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+		URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+		assertThat(url.getScheme()).isEqualTo("ws");
+		assertThat(url.getHost()).isEqualTo("myhost");
+	}
+
+	@Test
+	public void shouldCountRequestsInFlight() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		// fetched before, the first fetch completes on another thread
+		cache.getInstances("myservice").block();
+		MonoProcessor<Void> response = MonoProcessor.create();
+		when(chain.filter(any())).thenReturn(response);
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.then(() -> {
+					assertThat(stats.get("myservice", instance).getOutstanding())
+							.isEqualTo(1);
+					response.onComplete();
+				}).verifyComplete();
+
+		assertThat(stats.get("myservice", instance).getOutstanding()).isZero();
+	}
+
+	@Test
+	public void shouldKeepStatsByRequestedServiceId() {
+		// e.g. eureka lists the application name in upper case
+		ServiceInstance instance = new DefaultServiceInstance(null, "myhost", 9797,
+				false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.verifyComplete();
+
+		assertThat(stats.getStats()).containsOnlyKeys("myservice");
+		stats.retain("myservice", Collections.emptyList());
+		assertThat(stats.getStats().get("myservice")).isEmpty();
+	}
+
+	@Test
+	public void shouldRecordLatencyWhenResponseIsReceived() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		// fetched before, the first fetch completes on another thread
+		cache.getInstances("myservice").block();
+		ServerWebExchange exchange = exchange("lb://myservice");
+		MonoProcessor<Void> response = MonoProcessor.create();
+		when(chain.filter(any())).thenReturn(response);
+
+		StepVerifier.create(filter.filter(exchange, chain)).then(() -> {
+			assertThat(stats.get("myservice", instance).hasLatency()).isFalse();
+			Consumer<HttpClientResponse> listener = exchange
+					.getAttribute(CLIENT_RESPONSE_LISTENER_ATTR);
+			assertThat(listener).isNotNull();
+			listener.accept(mock(HttpClientResponse.class));
+			assertThat(stats.get("myservice", instance).hasLatency()).isTrue();
+			response.onComplete();
+		}).verifyComplete();
+
+		assertThat(stats.get("myservice", instance).getLatency())
+				.isLessThan(InstanceStats.FAILURE_LATENCY.toNanos());
+	}
+
+	@Test
+	public void shouldRecordLatencyWithoutResponse() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.verifyComplete();
+
+		assertThat(stats.get("myservice", instance).hasLatency()).isTrue();
+		assertThat(stats.get("myservice", instance).getLatency())
+				.isLessThan(InstanceStats.FAILURE_LATENCY.toNanos());
+	}
+
+	@Test
+	public void shouldRecordFailureLatencyWhenRequestFailsWithoutResponse() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		when(chain.filter(any())).thenReturn(Mono.error(new ConnectException()));
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.verifyError(ConnectException.class);
+
+		// a refused connection must not make the instance look fast
+		assertThat(stats.get("myservice", instance).getLatency()).isGreaterThan(
+				InstanceStats.FAILURE_LATENCY.toNanos() * 0.9);
+	}
+
+	@Test
+	public void shouldNotChooseEjectedInstance() {
+		ServiceInstance failing = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		ServiceInstance healthy = new DefaultServiceInstance("myservice", "myhost",
+				9798, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Arrays.asList(failing, healthy));
+		OutlierDetector detector = outlierDetection();
+		for (int i = 0; i < 5; i++) {
+			detector.record("myservice", failing, Arrays.asList(failing, healthy), true);
+		}
+
+		for (int i = 0; i < 10; i++) {
+			ServerWebExchange exchange = exchange("lb://myservice");
+			StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+			URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+			assertThat(url.getPort()).isEqualTo(9798);
+		}
+	}
+
+	@Test
+	public void shouldRecordServerErrorsAsFailures() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		outlierDetection();
+		ServerWebExchange exchange = exchange("lb://myservice");
+
+		StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+		Consumer<HttpClientResponse> listener = exchange
+				.getAttribute(CLIENT_RESPONSE_LISTENER_ATTR);
+		HttpClientResponse response = mock(HttpClientResponse.class);
+		when(response.status()).thenReturn(HttpResponseStatus.BAD_GATEWAY);
+		listener.accept(response);
+
+		assertThat(stats.get("myservice", instance).getConsecutiveFailures())
+				.isEqualTo(1);
+	}
+
+	@Test
+	public void shouldRecordConnectErrorsAsFailures() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		outlierDetection();
+		when(chain.filter(any())).thenReturn(Mono.error(new ConnectException()));
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.verifyError(ConnectException.class);
+
+		assertThat(stats.get("myservice", instance).getConsecutiveFailures())
+				.isEqualTo(1);
+	}
+
+	@Test
+	public void shouldFailWith503WhenNoInstanceIsFound() {
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.emptyList());
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.expectErrorSatisfies(e -> assertThat(e)
+						.isInstanceOf(NotFoundException.class).hasFieldOrPropertyWithValue(
+								"status", HttpStatus.SERVICE_UNAVAILABLE))
+				.verify();
+	}
+
+	@Test
+	public void shouldNotChooseUnhealthyInstance() {
+		ServiceInstance unhealthy = new DefaultServiceInstance("myservice", "host1",
+				9797, false);
+		ServiceInstance healthy = new DefaultServiceInstance("myservice", "host2",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Arrays.asList(unhealthy, healthy));
+		stats.get("myservice", unhealthy).setHealthy(false);
+
+		for (int i = 0; i < 10; i++) {
+			ServerWebExchange exchange = exchange("lb://myservice");
+			StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+			URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+			assertThat(url.getHost()).isEqualTo("host2");
+		}
+	}
+
+	@Test
+	public void shouldFailWith503WhenAllInstancesAreUnhealthy() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "myhost",
+				9797, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.singletonList(instance));
+		stats.get("myservice", instance).setHealthy(false);
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.expectErrorSatisfies(e -> assertThat(e)
+						.isInstanceOf(NotFoundException.class).hasFieldOrPropertyWithValue(
+								"status", HttpStatus.SERVICE_UNAVAILABLE))
+				.verify();
+	}
+
+	@Test
+	public void shouldFailWith404WhenNoInstanceIsFound() {
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Collections.emptyList());
+		properties.setUse404(true);
+
+		StepVerifier.create(filter.filter(exchange("lb://myservice"), chain))
+				.expectErrorSatisfies(e -> assertThat(e)
+						.isInstanceOf(NotFoundException.class).hasFieldOrPropertyWithValue(
+								"status", HttpStatus.NOT_FOUND))
+				.verify();
+	}
+
+	private OutlierDetector outlierDetection() {
+		OutlierDetector detector = new OutlierDetector(stats, new OutlierDetection());
+		filter = new ReactiveLoadBalancerClientFilter(cache,
+				new LeastOutstandingInstanceSelector(stats), stats, properties,
+				detector);
+		return detector;
+	}
+
+	private ServerWebExchange exchange(String url) {
+		ServerWebExchange exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.get("http://localhost/mypath?a=b").build());
+		exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, URI.create(url));
+		return exchange;
+	}
+
+}
@@ -20,16 +20,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import org.springframework.cloud.gateway.event.PredicateArgsEvent;
 import org.springframework.cloud.gateway.filter.WeightCalculatorWebFilter.GroupWeightConfig;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.handler.predicate.WeightRoutePredicateFactory;
 import org.springframework.cloud.gateway.support.WeightConfig;
 import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilterChain;
 
 import static java.util.Arrays.asList;
@@ -38,8 +45,12 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.WEIGHT_ATTR;
 
 public class WeightCalculatorWebFilterTests {
 
@@ -129,6 +140,218 @@ public class WeightCalculatorWebFilterTests {
 		assertThat(weights).containsEntry("groupa", "route3");
 	}
 
+	@Test
+	public void chooseRouteOnlyWhenGroupIsLookedUp() {
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		WebFilterChain filterChain = mock(WebFilterChain.class);
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost").build());
+
+		filter.filter(exchange, filterChain);
+		assertThat(exchange.getAttributes()).doesNotContainKey(WEIGHT_ATTR);
+
+		filter.addWeightConfig(new WeightConfig("groupa", "route1", 1));
+		filter.addWeightConfig(new WeightConfig("groupa", "route2", 3));
+		filter.addWeightConfig(new WeightConfig("groupb", "route3", 1));
+		Random random = mock(Random.class);
+		when(random.nextDouble()).thenReturn(0.25).thenReturn(0.0);
+		filter.setRandom(random);
+
+		filter.filter(exchange, filterChain);
+		verifyZeroInteractions(random);
+
+		Map<String, String> weights = WeightCalculatorWebFilter.getWeights(exchange);
+		// 0.25 is the lower bound of the range of route2
+		assertThat(weights.get("groupa")).isEqualTo("route2");
+		assertThat(weights.get("groupa")).isEqualTo("route2");
+		assertThat(weights.containsKey("groupc")).isFalse();
+		verify(random, times(1)).nextDouble();
+
+		assertThat(weights).containsEntry("groupa", "route2")
+				.containsEntry("groupb", "route3").hasSize(2);
+	}
+
+	@Test
+	public void chooseRouteWithZeroWeight() {
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(new WeightConfig("groupa", "route1", 1));
+		filter.addWeightConfig(new WeightConfig("groupa", "route2", 0));
+		filter.addWeightConfig(new WeightConfig("groupa", "route3", 1));
+
+		GroupWeightConfig config = filter.getGroupWeights().get("groupa");
+		assertThat(config.choose(0.0)).isEqualTo("route1");
+		assertThat(config.choose(0.4999)).isEqualTo("route1");
+		assertThat(config.choose(0.5)).isEqualTo("route3");
+		assertThat(config.choose(Math.nextDown(1.0))).isEqualTo("route3");
+	}
+
+	@Test
+	public void chooseRouteByKey() {
+		KeyResolver keyResolver = exchange -> Mono.justOrEmpty(
+				exchange.getRequest().getHeaders().getFirst("X-User"));
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(
+				new WeightConfig("groupa", "route1", 1).setKeyResolver(keyResolver));
+		filter.addWeightConfig(new WeightConfig("groupa", "route2", 3));
+		Random random = mock(Random.class);
+		when(random.nextDouble()).thenReturn(0.9);
+		filter.setRandom(random);
+
+		GroupWeightConfig config = filter.getGroupWeights().get("groupa");
+		for (int i = 0; i < 100; i++) {
+			MockServerWebExchange exchange = MockServerWebExchange
+					.from(MockServerHttpRequest.get("http://localhost")
+							.header("X-User", "user" + i).build());
+			filter.filter(exchange, e -> Mono.empty()).block();
+			assertThat(WeightCalculatorWebFilter.chooseRoute(exchange, "groupa").block())
+					.isEqualTo(config.choose("user" + i));
+		}
+		verifyZeroInteractions(random);
+
+		// without a key the route is chosen at random
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost").build());
+		filter.filter(exchange, e -> Mono.empty()).block();
+		assertThat(WeightCalculatorWebFilter.chooseRoute(exchange, "groupa").block())
+				.isEqualTo("route2");
+	}
+
+	@Test
+	public void keyIsResolvedOnlyForChosenGroup() {
+		AtomicInteger resolved = new AtomicInteger();
+		KeyResolver keyResolver = exchange -> Mono.fromCallable(() -> {
+			resolved.incrementAndGet();
+			return "user";
+		});
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(
+				new WeightConfig("groupa", "route1", 1).setKeyResolver(keyResolver));
+		filter.addWeightConfig(
+				new WeightConfig("groupb", "route2", 1).setKeyResolver(keyResolver));
+
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost").build());
+		filter.filter(exchange, e -> Mono.empty()).block();
+		assertThat(resolved).hasValue(0);
+
+		assertThat(WeightCalculatorWebFilter.chooseRoute(exchange, "groupa").block())
+				.isEqualTo("route1");
+		assertThat(WeightCalculatorWebFilter.chooseRoute(exchange, "groupb").block())
+				.isEqualTo("route2");
+		assertThat(resolved).hasValue(1);
+	}
+
+	@Test
+	public void weightPredicateResolvesKeyWhenTested() {
+		KeyResolver keyResolver = exchange -> Mono.just("user");
+		WeightConfig config = new WeightConfig("groupa", "route1", 1)
+				.setKeyResolver(keyResolver);
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(config);
+		filter.addWeightConfig(new WeightConfig("groupa", "route2", 1));
+		String chosen = filter.getGroupWeights().get("groupa").choose("user");
+		AsyncPredicate<ServerWebExchange> predicate = new WeightRoutePredicateFactory()
+				.applyAsync(config);
+		assertThat(predicate.isSynchronous()).isFalse();
+
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost").build());
+		filter.filter(exchange, e -> Mono.empty()).block();
+		exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, "route1");
+
+		StepVerifier.create(predicate.apply(exchange))
+				.expectNext("route1".equals(chosen)).verifyComplete();
+	}
+
+	@Test
+	public void routeWithoutKeyResolverChoosesByKeyOfGroup() {
+		KeyResolver keyResolver = exchange -> Mono.just("user");
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(
+				new WeightConfig("groupa", "route1", 1).setKeyResolver(keyResolver));
+		WeightConfig config = new WeightConfig("groupa", "route2", 1);
+		filter.addWeightConfig(config);
+		String chosen = filter.getGroupWeights().get("groupa").choose("user");
+		// a random choice would pick the other route
+		Random random = mock(Random.class);
+		when(random.nextDouble()).thenReturn("route1".equals(chosen) ? 0.9 : 0.1);
+		filter.setRandom(random);
+
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost").build());
+		filter.filter(exchange, e -> Mono.empty()).block();
+		exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, "route2");
+
+		StepVerifier.create(new WeightRoutePredicateFactory().applyAsync(config)
+				.apply(exchange)).expectNext("route2".equals(chosen)).verifyComplete();
+		assertThat(WeightCalculatorWebFilter.chooseRoute(exchange, "groupa").block())
+				.isEqualTo(chosen);
+	}
+
+	@Test
+	public void keyResolverErrorChoosesAtRandom() {
+		KeyResolver keyResolver = exchange -> Mono
+				.error(new IllegalStateException("boom"));
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(
+				new WeightConfig("groupa", "route1", 1).setKeyResolver(keyResolver));
+		filter.addWeightConfig(new WeightConfig("groupa", "route2", 3));
+		Random random = mock(Random.class);
+		when(random.nextDouble()).thenReturn(0.1);
+		filter.setRandom(random);
+
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost").build());
+		filter.filter(exchange, e -> Mono.empty()).block();
+
+		assertThat(WeightCalculatorWebFilter.chooseRoute(exchange, "groupa").block())
+				.isEqualTo("route1");
+	}
+
+	@Test
+	public void chooseByKeyFollowsWeights() {
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(new WeightConfig("groupa", "route1", 1));
+		filter.addWeightConfig(new WeightConfig("groupa", "route2", 3));
+		filter.addWeightConfig(new WeightConfig("groupa", "route3", 6));
+		GroupWeightConfig config = filter.getGroupWeights().get("groupa");
+
+		int keys = 10000;
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < keys; i++) {
+			counts.merge(config.choose("user" + i), 1, Integer::sum);
+		}
+
+		assertThat(counts.get("route1")).isBetween(800, 1200);
+		assertThat(counts.get("route2")).isBetween(2700, 3300);
+		assertThat(counts.get("route3")).isBetween(5600, 6400);
+	}
+
+	@Test
+	public void changingWeightOnlyMovesKeysOfThatRoute() {
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+		filter.addWeightConfig(new WeightConfig("groupa", "route1", 1));
+		filter.addWeightConfig(new WeightConfig("groupa", "route2", 3));
+		filter.addWeightConfig(new WeightConfig("groupa", "route3", 6));
+		GroupWeightConfig before = filter.getGroupWeights().get("groupa");
+
+		filter.addWeightConfig(new WeightConfig("groupa", "route1", 2));
+		GroupWeightConfig after = filter.getGroupWeights().get("groupa");
+
+		int moved = 0;
+		for (int i = 0; i < 10000; i++) {
+			String routeBefore = before.choose("user" + i);
+			String routeAfter = after.choose("user" + i);
+			if (!routeBefore.equals(routeAfter)) {
+				// keys only move to the route with the increased weight
+				assertThat(routeAfter).isEqualTo("route1");
+				moved++;
+			}
+		}
+		// route1 goes from 10% to about 18% of the keys
+		assertThat(moved).isBetween(600, 1000);
+	}
+
 	@Test
 	public void receivesPredicateArgsEvent() {
 		WeightCalculatorWebFilter filter = mock(WeightCalculatorWebFilter.class);
@@ -151,4 +374,19 @@ public class WeightCalculatorWebFilterTests {
 		assertThat(weightConfig.getWeight()).isEqualTo(1);
 	}
 
+	@Test
+	public void bindsKeyResolverFromPredicateArgsEvent() {
+		KeyResolver keyResolver = exchange -> Mono.just("user");
+		WeightCalculatorWebFilter filter = new WeightCalculatorWebFilter();
+
+		HashMap<String, Object> args = new HashMap<>();
+		args.put("weight.group", "group1");
+		args.put("weight.weight", "1");
+		args.put("weight.keyResolver", keyResolver);
+		filter.handle(new PredicateArgsEvent(this, "routeA", args));
+
+		assertThat(filter.getGroupWeights().get("group1").keyResolver)
+				.isSameAs(keyResolver);
+	}
+
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_KEY_RESOLVER_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_SELECTOR_ATTR;
+
+public class ConsistentHashGatewayFilterFactoryTests {
+
+	private final ConsistentHashGatewayFilterFactory factory = new ConsistentHashGatewayFilterFactory(
+			65537);
+
+	private final GatewayFilterChain chain = mock(GatewayFilterChain.class);
+
+	@After
+	public void destroy() {
+		factory.destroy();
+	}
+
+	@Test
+	public void headerIsTheKey() {
+		GatewayFilter filter = factory
+				.apply(new ConsistentHashGatewayFilterFactory.Config().setHeader("X-Key"));
+		MockServerWebExchange exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.get("http://localhost/").header("X-Key", "abc"));
+		when(chain.filter(any())).thenReturn(Mono.empty());
+
+		StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+		assertThat((Object) exchange.getAttribute(LOAD_BALANCER_SELECTOR_ATTR))
+				.isSameAs(factory.getSelector());
+		KeyResolver keyResolver = exchange.getAttribute(LOAD_BALANCER_KEY_RESOLVER_ATTR);
+		StepVerifier.create(keyResolver.resolve(exchange)).expectNext("abc")
+				.verifyComplete();
+	}
+
+	@Test
+	public void keyResolverIsUsed() {
+		KeyResolver keyResolver = exchange -> Mono.just("key");
+		GatewayFilter filter = factory.apply(
+				new ConsistentHashGatewayFilterFactory.Config().setHeader("X-Key")
+						.setKeyResolver(keyResolver));
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/"));
+		when(chain.filter(any())).thenReturn(Mono.empty());
+
+		StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+		assertThat((Object) exchange.getAttribute(LOAD_BALANCER_KEY_RESOLVER_ATTR))
+				.isSameAs(keyResolver);
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker.Settings;
+import org.springframework.cloud.gateway.test.BaseWebClientTests;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@DirtiesContext
+public class HealthCheckGatewayFilterFactoryTests extends BaseWebClientTests {
+
+	@Autowired
+	private HealthChecker healthChecker;
+
+	@Test
+	public void unhealthyUpstreamFailsWith503() {
+		long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+		HttpStatus status;
+		do {
+			status = testClient.get().uri("/get")
+					.header("Host", "www.healthcheckdead.org").exchange()
+					.returnResult(String.class).getStatus();
+		}
+		while (status != HttpStatus.SERVICE_UNAVAILABLE
+				&& System.nanoTime() < deadline);
+		assertThat(status).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+		Settings settings = healthChecker
+				.watch(URI.create("http://localhost:1"), new Settings("/other",
+						Duration.ofSeconds(1), Duration.ofSeconds(1), 1, 1))
+				.getSettings();
+		assertThat(settings.getPath()).isEqualTo("/get");
+		assertThat(settings.getInterval()).isEqualTo(Duration.ofMillis(100));
+	}
+
+	@Test
+	public void lbUpstreamWithoutReactiveLoadBalancerIsServed() {
+		testClient.get().uri("/headers").header("Host", "www.healthcheck.org")
+				.exchange().expectStatus().isOk();
+	}
+
+	@EnableAutoConfiguration
+	@SpringBootConfiguration
+	@Import(DefaultTestConfig.class)
+	public static class TestConfig {
+
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PathRewriterTests {
+
+	private static final List<String[]> REWRITES = Arrays.asList(
+			new String[] { "/foo/(?<segment>.*)", "/${segment}" },
+			new String[] { "/foo/(?<segment>.*)", "/bar/${segment}/baz" },
+			new String[] { "^/foo/(.*)", "/$1" },
+			new String[] { "/foo(.*)", "$1" },
+			new String[] { "/foo/(.*)", "/$10" },
+			new String[] { "/foo/(.*)", "/\\$1" },
+			new String[] { "/(?<first>[^/]+)/(?<rest>.*)", "/${rest}/${first}" },
+			new String[] { "/foo", "/bar" }, new String[] { "o", "0" },
+			new String[] { "/foo/(?<segment>.*)", "/$1/${segment}" });
+
+	private static final List<String> PATHS = Arrays.asList("", "/", "/foo",
+			"/foo/", "/foo/bar", "/foo/bar/baz", "/x/foo/bar", "/foo/foo/bar",
+			"/foo/b\nar", "/bar");
+
+	@Test
+	public void rewritesLikeReplaceAll() {
+		for (String[] rewrite : REWRITES) {
+			PathRewriter rewriter = PathRewriter.compile(rewrite[0], rewrite[1]);
+			for (String path : PATHS) {
+				assertThat(rewriter.rewrite(path))
+						.as("'%s' rewritten with '%s' and '%s'", path, rewrite[0],
+								rewrite[1])
+						.isEqualTo(path.replaceAll(rewrite[0], rewrite[1]));
+			}
+		}
+	}
+
+	@Test
+	public void invalidReplacementFailsOnCompile() {
+		assertThatThrownBy(() -> PathRewriter.compile("/foo", "/$"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> PathRewriter.compile("/foo", "/\\"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> PathRewriter.compile("/foo", "/${x"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
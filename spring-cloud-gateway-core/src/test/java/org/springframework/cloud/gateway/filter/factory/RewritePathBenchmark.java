@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.factory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link String#replaceAll}, as previously used by
+ * {@link RewritePathGatewayFilterFactory}, with the precompiled {@link PathRewriter}.
+ * Run from the IDE or with the test classpath, it is not part of the test suite.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewritePathBenchmark {
+
+	private static final String PREFIX_REGEXP = "/foo/(?<segment>.*)";
+
+	private static final String PREFIX_REPLACEMENT = "/${segment}";
+
+	private static final String PATTERN_REGEXP = "/(?<first>[^/]+)/(?<rest>.*)";
+
+	private static final String PATTERN_REPLACEMENT = "/${rest}/${first}";
+
+	private final String path = "/foo/bar/baz/qux";
+
+	private final PathRewriter prefixRewriter = PathRewriter.compile(PREFIX_REGEXP,
+			PREFIX_REPLACEMENT);
+
+	private final PathRewriter patternRewriter = PathRewriter.compile(PATTERN_REGEXP,
+			PATTERN_REPLACEMENT);
+
+	@Benchmark
+	public String prefixReplaceAll() {
+		return this.path.replaceAll(PREFIX_REGEXP, PREFIX_REPLACEMENT);
+	}
+
+	@Benchmark
+	public String prefixRewriter() {
+		return this.prefixRewriter.rewrite(this.path);
+	}
+
+	@Benchmark
+	public String patternReplaceAll() {
+		return this.path.replaceAll(PATTERN_REGEXP, PATTERN_REPLACEMENT);
+	}
+
+	@Benchmark
+	public String patternRewriter() {
+		return this.patternRewriter.rewrite(this.path);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(RewritePathBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.LOAD_BALANCER_KEY_RESOLVER_ATTR;
+
+public class ConsistentHashInstanceSelectorTests {
+
+	private static final int KEYS = 10000;
+
+	private final ConsistentHashInstanceSelector selector = new ConsistentHashInstanceSelector(
+			exchange -> Mono.justOrEmpty(
+					exchange.getRequest().getHeaders().getFirst("X-Key")));
+
+	@After
+	public void destroy() {
+		selector.destroy();
+	}
+
+	@Test
+	public void keyIsMappedToSameInstance() {
+		List<ServiceInstance> instances = instances(8001, 8002, 8003);
+		ServiceInstance instance = selector.selectForKey("service", instances, "key");
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(selector.selectForKey("service", instances, "key"))
+					.isSameAs(instance);
+		}
+		List<ServiceInstance> reversed = instances(8003, 8002, 8001);
+		assertThat(address(selector.selectForKey("service", reversed, "key")))
+				.isEqualTo(address(instance));
+	}
+
+	@Test
+	public void keysAreSpreadEvenly() {
+		List<ServiceInstance> instances = instances(8001, 8002, 8003, 8004, 8005);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(address(selector.selectForKey("service", instances, "key" + i)),
+					1, Integer::sum);
+		}
+
+		assertThat(counts).hasSize(5);
+		assertThat(counts.values()).allSatisfy(
+				count -> assertThat(count).isBetween(KEYS / 5 * 85 / 100,
+						KEYS / 5 * 115 / 100));
+	}
+
+	@Test
+	public void removingAnInstanceOnlyMovesItsKeys() {
+		List<ServiceInstance> before = instances(8001, 8002, 8003, 8004, 8005);
+		Map<String, String> mapped = mapKeys(before);
+		List<ServiceInstance> after = instances(8001, 8002, 8004, 8005);
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String key = "key" + i;
+			String address = address(selector.selectForKey("service", after, key));
+			assertThat(address).isNotEqualTo("localhost:8003");
+			if (!mapped.get(key).equals("localhost:8003")
+					&& !mapped.get(key).equals(address)) {
+				moved++;
+			}
+		}
+		// Maglev keeps all but a few percent of the other keys in place
+		assertThat(moved).isLessThan(KEYS * 3 / 100);
+	}
+
+	@Test
+	public void addingAnInstanceOnlyMovesItsShare() {
+		Map<String, String> mapped = mapKeys(instances(8001, 8002, 8003, 8004));
+		List<ServiceInstance> after = instances(8001, 8002, 8003, 8004, 8005);
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String key = "key" + i;
+			if (!mapped.get(key)
+					.equals(address(selector.selectForKey("service", after, key)))) {
+				moved++;
+			}
+		}
+		// the new instance takes a fifth of the keys
+		assertThat(moved).isBetween(KEYS / 5 * 85 / 100, KEYS / 5 * 130 / 100);
+	}
+
+	@Test
+	public void partialInstancesGetTheirTableInBackground() throws Exception {
+		List<ServiceInstance> all = instances(8001, 8002, 8003, 8004, 8005);
+		selector.update("service", all);
+		Map<String, String> mapped = mapKeys(all);
+		// e.g. without an ejected instance
+		List<ServiceInstance> partial = new ArrayList<>(all);
+		partial.remove(2);
+
+		// before and after its table is built
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String key = "key" + i;
+			String address = address(selector.selectForKey("service", partial, key));
+			assertThat(address).isNotEqualTo("localhost:8003");
+			if (!mapped.get(key).equals("localhost:8003")
+					&& !mapped.get(key).equals(address)) {
+				moved++;
+			}
+		}
+		assertThat(moved).isLessThan(KEYS * 3 / 100);
+
+		ConsistentHashInstanceSelector expected = new ConsistentHashInstanceSelector(
+				exchange -> Mono.empty());
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!mapKeys(partial).equals(mapKeys(expected, partial))) {
+			assertThat(System.nanoTime()).isLessThan(deadline);
+			Thread.sleep(10);
+		}
+		expected.destroy();
+	}
+
+	@Test
+	public void chooseUsesResolvedKey() {
+		List<ServiceInstance> instances = instances(8001, 8002, 8003);
+		ServiceInstance expected = selector.selectForKey("service", instances, "abc");
+
+		for (int i = 0; i < 10; i++) {
+			StepVerifier
+					.create(selector.choose("service", instances,
+							MockServerWebExchange.from(MockServerHttpRequest
+									.get("http://localhost/").header("X-Key", "abc"))))
+					.expectNext(expected).verifyComplete();
+		}
+	}
+
+	@Test
+	public void chooseUsesKeyResolverOfExchange() {
+		List<ServiceInstance> instances = instances(8001, 8002, 8003);
+		ServiceInstance expected = selector.selectForKey("service", instances, "abc");
+		ConsistentHashInstanceSelector routeSelector = new ConsistentHashInstanceSelector(
+				ConsistentHashInstanceSelector.DEFAULT_TABLE_SIZE);
+		try {
+			for (ConsistentHashInstanceSelector selector : Arrays.asList(this.selector,
+					routeSelector)) {
+				MockServerWebExchange exchange = MockServerWebExchange
+						.from(MockServerHttpRequest.get("http://localhost/")
+								.header("X-Key", "other").header("X-Route-Key", "abc"));
+				exchange.getAttributes().put(LOAD_BALANCER_KEY_RESOLVER_ATTR,
+						(KeyResolver) e -> Mono.justOrEmpty(
+								e.getRequest().getHeaders().getFirst("X-Route-Key")));
+
+				StepVerifier.create(selector.choose("service", instances, exchange))
+						.assertNext(instance -> assertThat(address(instance))
+								.isEqualTo(address(expected)))
+						.verifyComplete();
+			}
+		}
+		finally {
+			routeSelector.destroy();
+		}
+	}
+
+	@Test
+	public void chooseWithoutKeyPicksAnyInstance() {
+		List<ServiceInstance> instances = instances(8001, 8002, 8003);
+
+		StepVerifier
+				.create(selector.choose("service", instances, MockServerWebExchange
+						.from(MockServerHttpRequest.get("http://localhost/"))))
+				.assertNext(instance -> assertThat(instances).contains(instance))
+				.verifyComplete();
+	}
+
+	@Test
+	public void tableSizeMustBePrime() {
+		assertThatThrownBy(() -> new ConsistentHashInstanceSelector(
+				exchange -> Mono.empty(), 65536))
+						.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private Map<String, String> mapKeys(List<ServiceInstance> instances) {
+		return mapKeys(selector, instances);
+	}
+
+	private static Map<String, String> mapKeys(ConsistentHashInstanceSelector selector,
+			List<ServiceInstance> instances) {
+		Map<String, String> mapped = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			mapped.put("key" + i,
+					address(selector.selectForKey("service", instances, "key" + i)));
+		}
+		return mapped;
+	}
+
+	private static List<ServiceInstance> instances(int... ports) {
+		List<ServiceInstance> instances = new ArrayList<>();
+		for (int port : ports) {
+			instances.add(
+					new DefaultServiceInstance("service", "localhost", port, false));
+		}
+		return Collections.unmodifiableList(instances);
+	}
+
+	private static String address(ServiceInstance instance) {
+		return instance.getHost() + ":" + instance.getPort();
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker.Settings;
+import org.springframework.cloud.gateway.filter.loadbalancer.HealthChecker.Target;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HealthCheckerTests {
+
+	private static final Settings SETTINGS = new Settings("/health",
+			Duration.ofMillis(20), Duration.ofSeconds(1), 2, 2);
+
+	private final AtomicInteger status = new AtomicInteger(200);
+
+	private final LoadBalancerStats stats = new LoadBalancerStats();
+
+	private final DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+
+	private DisposableServer server;
+
+	private ServiceInstanceCache cache;
+
+	private HealthChecker healthChecker;
+
+	@Before
+	public void setup() {
+		server = HttpServer.create().port(0)
+				.route(routes -> routes.get("/health", (request, response) -> response
+						.status(HttpResponseStatus.valueOf(status.get())).send()))
+				.bindNow();
+		cache = new ServiceInstanceCache(discoveryClient, Duration.ofMinutes(1), 1);
+		healthChecker = new HealthChecker(HttpClient.create(), cache, stats);
+	}
+
+	@After
+	public void destroy() {
+		healthChecker.destroy();
+		cache.destroy();
+		server.disposeNow();
+	}
+
+	@Test
+	public void targetBecomesUnhealthyAndRecovers() {
+		Target target = healthChecker.watch(uri("/foo"), SETTINGS);
+		assertThat(target.isHealthy()).isTrue();
+
+		status.set(503);
+		await(target, () -> !target.isHealthy());
+
+		status.set(204);
+		await(target, target::isHealthy);
+	}
+
+	@Test
+	public void unreachableTargetIsUnhealthy() {
+		Target target = healthChecker.watch(URI.create("http://localhost:1"),
+				SETTINGS);
+
+		await(target, () -> !target.isHealthy());
+	}
+
+	@Test
+	public void targetIsWatchedOncePerAuthority() {
+		Target target = healthChecker.watch(uri("/foo"), SETTINGS);
+
+		assertThat(healthChecker.watch(uri("/bar?a=b"), new Settings("/other",
+				Duration.ofSeconds(1), Duration.ofSeconds(1), 1, 1))).isSameAs(target);
+		assertThat(target.getSettings()).isSameAs(SETTINGS);
+		assertThat(healthChecker.getTargetCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void unhealthyServiceInstancesAreMarked() {
+		ServiceInstance healthy = new DefaultServiceInstance("myservice", "localhost",
+				server.port(), false);
+		ServiceInstance unhealthy = new DefaultServiceInstance("myservice",
+				"localhost", 1, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Arrays.asList(healthy, unhealthy));
+
+		Target target = healthChecker.watchService("myservice", SETTINGS);
+
+		await(target, () -> !stats.get("myservice", unhealthy).isHealthy());
+		assertThat(stats.get("myservice", healthy).isHealthy()).isTrue();
+		assertThat(target.isHealthy()).isTrue();
+	}
+
+	@Test
+	public void idleTargetIsStopped() {
+		ServiceInstance instance = new DefaultServiceInstance("myservice", "localhost",
+				1, false);
+		when(discoveryClient.getInstances("myservice"))
+				.thenReturn(Arrays.asList(instance));
+
+		Target target = healthChecker.watchService("myservice", SETTINGS);
+		await(() -> !stats.get("myservice", instance).isHealthy());
+
+		await(target::isStopped);
+		assertThat(healthChecker.getTargetCount()).isZero();
+		assertThat(stats.get("myservice", instance).isHealthy()).isTrue();
+		assertThat(healthChecker.watchService("myservice", SETTINGS))
+				.isNotSameAs(target);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void servicesCannotBeWatchedWithoutLoadBalancer() {
+		HealthChecker checker = new HealthChecker(HttpClient.create());
+
+		assertThat(checker.isServiceCheckingAvailable()).isFalse();
+		checker.watchService("myservice", SETTINGS);
+	}
+
+	@Test
+	public void healthStateHonoursThresholds() {
+		HealthChecker.HealthState state = new HealthChecker.HealthState(
+				new Settings("/health", Duration.ofSeconds(1), Duration.ofSeconds(1),
+						2, 3));
+
+		assertThat(state.record(false)).isFalse();
+		assertThat(state.record(false)).isFalse();
+		assertThat(state.record(true)).isFalse();
+		assertThat(state.record(false)).isFalse();
+		assertThat(state.record(false)).isFalse();
+		assertThat(state.record(false)).isTrue();
+		assertThat(state.isHealthy()).isFalse();
+
+		assertThat(state.record(true)).isFalse();
+		assertThat(state.record(false)).isFalse();
+		assertThat(state.record(true)).isFalse();
+		assertThat(state.record(true)).isTrue();
+		assertThat(state.isHealthy()).isTrue();
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + server.port() + path);
+	}
+
+	private void await(Target target, BooleanSupplier condition) {
+		// keep the target from going idle
+		await(() -> {
+			target.touch();
+			return condition.getAsBoolean();
+		});
+	}
+
+	private void await(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met in time")
+					.isLessThan(deadline);
+			try {
+				Thread.sleep(10);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+}
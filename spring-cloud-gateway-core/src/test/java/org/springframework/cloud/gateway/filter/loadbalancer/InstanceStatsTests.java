@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class InstanceStatsTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final InstanceStats stats = new InstanceStats(Duration.ofSeconds(10));
+
+	@Test
+	public void latencyIsZeroWithoutSamples() {
+		assertThat(stats.getLatency(SECOND)).isZero();
+		assertThat(stats.hasLatency()).isFalse();
+	}
+
+	@Test
+	public void higherLatencyReplacesAverage() {
+		stats.recordLatency(100, SECOND);
+		stats.recordLatency(1000, SECOND);
+
+		assertThat(stats.getLatency(SECOND)).isEqualTo(1000);
+	}
+
+	@Test
+	public void lowerLatencyIsAveragedByElapsedTime() {
+		stats.recordLatency(1000, SECOND);
+		// one decay time later the previous average weighs 1/e
+		stats.recordLatency(0, 11 * SECOND);
+
+		assertThat(stats.getLatency(11 * SECOND)).isCloseTo(1000 / Math.E,
+				within(0.001));
+	}
+
+	@Test
+	public void latencyDecaysWithoutSamples() {
+		stats.recordLatency(1000, SECOND);
+
+		assertThat(stats.getLatency(SECOND)).isEqualTo(1000);
+		assertThat(stats.getLatency(11 * SECOND)).isCloseTo(1000 / Math.E,
+				within(0.001));
+		assertThat(stats.getLatency(101 * SECOND)).isLessThan(0.1);
+		assertThat(stats.hasLatency()).isTrue();
+	}
+
+	@Test
+	public void failedLatencyIsAtLeastFailureLatency() {
+		stats.recordFailedLatency(1, TimeUnit.MILLISECONDS);
+
+		assertThat(stats.getLatency()).isCloseTo(InstanceStats.FAILURE_LATENCY.toNanos(),
+				within(InstanceStats.FAILURE_LATENCY.toNanos() * 0.01));
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LeastOutstandingInstanceSelectorTests {
+
+	private final LoadBalancerStats stats = new LoadBalancerStats();
+
+	private final LeastOutstandingInstanceSelector selector = new LeastOutstandingInstanceSelector(
+			stats);
+
+	@Test
+	public void singleInstanceIsChosen() {
+		ServiceInstance instance = instance(8001);
+
+		assertThat(selector.select("service", Collections.singletonList(instance),
+				null)).isSameAs(instance);
+	}
+
+	@Test
+	public void instanceWithFewerOutstandingRequestsIsChosen() {
+		ServiceInstance busy = instance(8001);
+		ServiceInstance idle = instance(8002);
+		stats.get("service", busy).requestStarted();
+		List<ServiceInstance> instances = Arrays.asList(busy, idle);
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(selector.select("service", instances, null)).isSameAs(idle);
+		}
+	}
+
+	@Test
+	public void mostLoadedInstanceIsNeverChosen() {
+		List<ServiceInstance> instances = Arrays.asList(instance(8001), instance(8002),
+				instance(8003));
+		for (int i = 0; i < 5; i++) {
+			stats.get("service", instances.get(2)).requestStarted();
+		}
+		stats.get("service", instances.get(1)).requestStarted();
+
+		int[] counts = new int[3];
+		for (int i = 0; i < 3000; i++) {
+			counts[instances.indexOf(selector.select("service", instances, null))]++;
+		}
+
+		// 2 of the 3 pairs contain the idle instance, the third one the busy one
+		assertThat(counts[2]).isZero();
+		assertThat(counts[0]).isBetween(1800, 2200);
+		assertThat(counts[1]).isBetween(800, 1200);
+	}
+
+	private static ServiceInstance instance(int port) {
+		return new DefaultServiceInstance("service", "localhost", port, false);
+	}
+
+}
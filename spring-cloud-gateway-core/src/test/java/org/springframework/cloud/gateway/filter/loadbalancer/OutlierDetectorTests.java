@@ -0,0 +1,241 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.config.ReactiveLoadBalancerProperties.OutlierDetection;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OutlierDetectorTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final LoadBalancerStats stats = new LoadBalancerStats();
+
+	private final List<ServiceInstance> instances = Arrays.asList(instance(8001),
+			instance(8002), instance(8003), instance(8004));
+
+	private final ServiceInstance instance = instances.get(0);
+
+	private OutlierDetector detector;
+
+	@Before
+	public void setup() {
+		OutlierDetection properties = new OutlierDetection();
+		properties.setConsecutiveFailures(3);
+		properties.setMinimumRequests(10);
+		properties.setFailureRateThreshold(0.5);
+		properties.setInterval(Duration.ofSeconds(10));
+		properties.setBaseEjectionTime(Duration.ofSeconds(30));
+		properties.setMaxEjectionTime(Duration.ofSeconds(100));
+		properties.setMaxEjectionPercent(50);
+		detector = new OutlierDetector(stats, properties);
+	}
+
+	@Test
+	public void consecutiveFailuresEject() {
+		fail(instance, 2, SECOND);
+		assertThat(stats.get("service", instance).isEjected(SECOND)).isFalse();
+
+		fail(instance, 1, SECOND);
+		assertThat(stats.get("service", instance).isEjected(SECOND)).isTrue();
+		assertThat(stats.get("service", instance).isEjected(31 * SECOND)).isFalse();
+		assertThat(detector.getEjectionCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void successResetsConsecutiveFailures() {
+		fail(instance, 2, SECOND);
+		detector.record("service", instance, instances, false, SECOND);
+		fail(instance, 2, SECOND);
+
+		assertThat(stats.get("service", instance).isEjected(SECOND)).isFalse();
+		assertThat(stats.get("service", instance).getConsecutiveFailures()).isEqualTo(2);
+	}
+
+	@Test
+	public void failureRateEjects() {
+		for (int i = 0; i < 4; i++) {
+			detector.record("service", instance, instances, false, SECOND);
+			detector.record("service", instance, instances, true, SECOND);
+			assertThat(stats.get("service", instance).isEjected(SECOND)).isFalse();
+		}
+		detector.record("service", instance, instances, false, SECOND);
+		detector.record("service", instance, instances, true, SECOND);
+
+		// 5 failures out of 10 requests reached the threshold
+		assertThat(stats.get("service", instance).isEjected(SECOND)).isTrue();
+	}
+
+	@Test
+	public void failureRateIsPerInterval() {
+		for (int i = 0; i < 4; i++) {
+			detector.record("service", instance, instances, false, SECOND);
+			detector.record("service", instance, instances, true, SECOND);
+		}
+		for (int i = 0; i < 2; i++) {
+			detector.record("service", instance, instances, false, 12 * SECOND);
+			detector.record("service", instance, instances, true, 12 * SECOND);
+		}
+
+		assertThat(stats.get("service", instance).isEjected(12 * SECOND)).isFalse();
+	}
+
+	@Test
+	public void ejectionTimeDoublesUpToMaximum() {
+		long now = SECOND;
+		long[] expected = { 30, 60, 100, 100 };
+		for (long seconds : expected) {
+			fail(instance, 3, now);
+			assertThat(stats.get("service", instance)
+					.isEjected(now + seconds * SECOND - 1)).isTrue();
+			assertThat(stats.get("service", instance).isEjected(now + seconds * SECOND))
+					.isFalse();
+			now += seconds * SECOND;
+		}
+		assertThat(stats.get("service", instance).getEjections()).isEqualTo(4);
+
+		// back for longer than the maximum ejection time
+		now += 101 * SECOND;
+		fail(instance, 3, now);
+		assertThat(stats.get("service", instance).isEjected(now + 30 * SECOND)).isFalse();
+		assertThat(stats.get("service", instance).getEjections()).isEqualTo(1);
+	}
+
+	@Test
+	public void maxEjectionPercentIsRespected() {
+		fail(instances.get(0), 3, SECOND);
+		fail(instances.get(1), 3, SECOND);
+		fail(instances.get(2), 3, SECOND);
+
+		assertThat(stats.get("service", instances.get(0)).isEjected(SECOND)).isTrue();
+		assertThat(stats.get("service", instances.get(1)).isEjected(SECOND)).isTrue();
+		assertThat(stats.get("service", instances.get(2)).isEjected(SECOND)).isFalse();
+		assertThat(detector.available("service", instances, SECOND))
+				.containsExactly(instances.get(2), instances.get(3));
+	}
+
+	@Test
+	public void maxEjectionPercentIsRespectedConcurrently() throws Exception {
+		// slow lookups widen the window between counting and ejecting
+		LoadBalancerStats stats = new LoadBalancerStats() {
+			@Override
+			public InstanceStats get(String serviceId, ServiceInstance instance) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+				return super.get(serviceId, instance);
+			}
+		};
+		OutlierDetection properties = new OutlierDetection();
+		properties.setConsecutiveFailures(1);
+		properties.setMaxEjectionPercent(50);
+		OutlierDetector detector = new OutlierDetector(stats, properties);
+		List<ServiceInstance> instances = new ArrayList<>();
+		for (int port = 9001; port <= 9008; port++) {
+			instances.add(instance(port));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(instances.size());
+		try {
+			for (int round = 0; round < 5; round++) {
+				String serviceId = "service" + round;
+				CyclicBarrier barrier = new CyclicBarrier(instances.size());
+				List<Future<?>> futures = new ArrayList<>();
+				for (ServiceInstance instance : instances) {
+					futures.add(executor.submit(() -> {
+						barrier.await();
+						detector.record(serviceId, instance, instances, true, SECOND);
+						return null;
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get(10, TimeUnit.SECONDS);
+				}
+
+				assertThat(instances).filteredOn(
+						instance -> stats.get(serviceId, instance).isEjected(SECOND))
+						.hasSize(4);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void allInstancesAreAvailableIfAllAreEjected() {
+		List<ServiceInstance> two = instances.subList(0, 2);
+		fail(two.get(0), 3, SECOND);
+		assertThat(detector.available("service", two, SECOND))
+				.containsExactly(two.get(1));
+
+		List<ServiceInstance> one = instances.subList(0, 1);
+		assertThat(detector.available("service", one, SECOND)).isSameAs(one);
+	}
+
+	@Test
+	public void singleInstanceIsNeverEjected() {
+		List<ServiceInstance> one = instances.subList(0, 1);
+		for (int i = 0; i < 10; i++) {
+			detector.record("service", instance, one, true, SECOND);
+		}
+
+		assertThat(stats.get("service", instance).isEjected(SECOND)).isFalse();
+	}
+
+	@Test
+	public void timeoutsAndConnectErrorsAreFailures() {
+		assertThat(OutlierDetector.isFailure(new ConnectException())).isTrue();
+		assertThat(OutlierDetector.isFailure(new TimeoutException())).isTrue();
+		assertThat(OutlierDetector.isFailure(
+				new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT))).isTrue();
+		assertThat(OutlierDetector
+				.isFailure(new IllegalStateException(new ConnectException()))).isTrue();
+		assertThat(OutlierDetector.isFailure(new IllegalStateException())).isFalse();
+		assertThat(OutlierDetector
+				.isFailure(new ResponseStatusException(HttpStatus.NOT_FOUND))).isFalse();
+	}
+
+	private void fail(ServiceInstance instance, int times, long now) {
+		for (int i = 0; i < times; i++) {
+			detector.record("service", instance, instances, true, now);
+		}
+	}
+
+	private static ServiceInstance instance(int port) {
+		return new DefaultServiceInstance("service", "localhost", port, false);
+	}
+
+}
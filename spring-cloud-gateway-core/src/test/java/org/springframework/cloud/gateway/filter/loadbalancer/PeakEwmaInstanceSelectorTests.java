@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PeakEwmaInstanceSelectorTests {
+
+	private final LoadBalancerStats stats = new LoadBalancerStats();
+
+	private final PeakEwmaInstanceSelector selector = new PeakEwmaInstanceSelector(
+			stats);
+
+	@Test
+	public void singleInstanceIsChosen() {
+		ServiceInstance instance = instance(8001);
+
+		assertThat(selector.select("service", Collections.singletonList(instance),
+				null)).isSameAs(instance);
+	}
+
+	@Test
+	public void fasterInstanceIsChosen() {
+		ServiceInstance slow = instance(8001);
+		ServiceInstance fast = instance(8002);
+		stats.get("service", slow).recordLatency(100, TimeUnit.MILLISECONDS);
+		stats.get("service", fast).recordLatency(10, TimeUnit.MILLISECONDS);
+		List<ServiceInstance> instances = Arrays.asList(slow, fast);
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(selector.select("service", instances, null)).isSameAs(fast);
+		}
+	}
+
+	@Test
+	public void outstandingRequestsOutweighLatency() {
+		ServiceInstance slow = instance(8001);
+		ServiceInstance fast = instance(8002);
+		stats.get("service", slow).recordLatency(100, TimeUnit.MILLISECONDS);
+		stats.get("service", fast).recordLatency(10, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 20; i++) {
+			stats.get("service", fast).requestStarted();
+		}
+		List<ServiceInstance> instances = Arrays.asList(slow, fast);
+
+		assertThat(selector.select("service", instances, null)).isSameAs(slow);
+	}
+
+	@Test
+	public void unmeasuredInstanceCostsDefaultLatency() {
+		ServiceInstance measured = instance(8001);
+		ServiceInstance unmeasured = instance(8002);
+		stats.get("service", measured).recordLatency(10, TimeUnit.MILLISECONDS);
+		List<ServiceInstance> instances = Arrays.asList(measured, unmeasured);
+
+		assertThat(selector.select("service", instances, null)).isSameAs(measured);
+		// the measured instance is busier than the default latency of the other one
+		for (int i = 0; i < 20; i++) {
+			stats.get("service", measured).requestStarted();
+		}
+		assertThat(selector.select("service", instances, null)).isSameAs(unmeasured);
+	}
+
+	@Test
+	public void failingInstanceIsAvoided() {
+		ServiceInstance failing = instance(8001);
+		ServiceInstance healthy = instance(8002);
+		stats.get("service", failing).recordFailedLatency(1, TimeUnit.MILLISECONDS);
+		stats.get("service", healthy).recordLatency(100, TimeUnit.MILLISECONDS);
+		List<ServiceInstance> instances = Arrays.asList(failing, healthy);
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(selector.select("service", instances, null)).isSameAs(healthy);
+		}
+	}
+
+	private static ServiceInstance instance(int port) {
+		return new DefaultServiceInstance("service", "localhost", port, false);
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RequestHashKeyResolverTests {
+
+	private final RequestHashKeyResolver resolver = new RequestHashKeyResolver("X-Key",
+			"key", 1);
+
+	@Test
+	public void headerIsResolvedFirst() {
+		StepVerifier.create(resolver.resolve(MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/shard/abc/def")
+						.header("X-Key", "header")
+						.cookie(new HttpCookie("key", "cookie")))))
+				.expectNext("header").verifyComplete();
+	}
+
+	@Test
+	public void cookieIsResolvedWithoutHeader() {
+		StepVerifier.create(resolver.resolve(MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/shard/abc/def")
+						.cookie(new HttpCookie("key", "cookie")))))
+				.expectNext("cookie").verifyComplete();
+	}
+
+	@Test
+	public void pathSegmentIsResolvedWithoutHeaderAndCookie() {
+		StepVerifier
+				.create(resolver.resolve(MockServerWebExchange.from(
+						MockServerHttpRequest.get("http://localhost/shard/abc/def"))))
+				.expectNext("abc").verifyComplete();
+	}
+
+	@Test
+	public void emptyWithoutKey() {
+		StepVerifier
+				.create(resolver.resolve(MockServerWebExchange
+						.from(MockServerHttpRequest.get("http://localhost/shard"))))
+				.verifyComplete();
+	}
+
+	@Test
+	public void keySourceIsRequired() {
+		assertThatThrownBy(() -> new RequestHashKeyResolver(null, null, -1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.filter.loadbalancer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServiceInstanceCacheTests {
+
+	private final DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+
+	private ServiceInstanceCache cache;
+
+	@After
+	public void destroy() {
+		if (cache != null) {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void instancesAreCached() {
+		ServiceInstance instance = instance(8001);
+		when(discoveryClient.getInstances("service"))
+				.thenReturn(Collections.singletonList(instance));
+		cache = new ServiceInstanceCache(discoveryClient, Duration.ofMinutes(1), 1);
+
+		StepVerifier.create(cache.getInstances("service")).expectNext(
+				Collections.singletonList(instance)).verifyComplete();
+		StepVerifier.create(cache.getInstances("service")).expectNext(
+				Collections.singletonList(instance)).verifyComplete();
+
+		verify(discoveryClient, times(1)).getInstances("service");
+	}
+
+	@Test
+	public void firstFetchDoesNotContinueOnThePool() {
+		when(discoveryClient.getInstances("service"))
+				.thenReturn(Collections.singletonList(instance(8001)));
+		cache = new ServiceInstanceCache(discoveryClient, Duration.ofMinutes(1), 1);
+
+		String thread = cache.getInstances("service")
+				.map(instances -> Thread.currentThread().getName()).block();
+
+		assertThat(thread).doesNotStartWith("service-instance-cache-");
+	}
+
+	@Test
+	public void staleInstancesAreRefreshedInTheBackground() throws Exception {
+		ServiceInstance first = instance(8001);
+		ServiceInstance second = instance(8002);
+		when(discoveryClient.getInstances("service"))
+				.thenReturn(Collections.singletonList(first))
+				.thenReturn(Collections.singletonList(second));
+		AtomicReference<List<ServiceInstance>> listened = new AtomicReference<>();
+		cache = new ServiceInstanceCache(discoveryClient, Duration.ofMillis(50), 1);
+		cache.addListener((serviceId, instances) -> listened.set(instances));
+
+		StepVerifier.create(cache.getInstances("service"))
+				.expectNext(Collections.singletonList(first)).verifyComplete();
+		Thread.sleep(100);
+
+		// stale, served while it is refreshed
+		StepVerifier.create(cache.getInstances("service"))
+				.expectNext(Collections.singletonList(first)).verifyComplete();
+		verify(discoveryClient, timeout(1000).times(2)).getInstances("service");
+		Thread.sleep(50);
+
+		StepVerifier.create(cache.getInstances("service"))
+				.expectNext(Collections.singletonList(second)).verifyComplete();
+		assertThat(listened.get()).containsExactly(second);
+	}
+
+	@Test
+	public void failedRefreshKeepsInstances() throws Exception {
+		ServiceInstance instance = instance(8001);
+		when(discoveryClient.getInstances("service"))
+				.thenReturn(Collections.singletonList(instance))
+				.thenThrow(new IllegalStateException("unavailable"));
+		cache = new ServiceInstanceCache(discoveryClient, Duration.ofMillis(50), 1);
+
+		StepVerifier.create(cache.getInstances("service"))
+				.expectNext(Collections.singletonList(instance)).verifyComplete();
+		Thread.sleep(100);
+		cache.getInstances("service").block();
+		verify(discoveryClient, timeout(1000).times(2)).getInstances("service");
+		Thread.sleep(50);
+
+		StepVerifier.create(cache.getInstances("service"))
+				.expectNext(Collections.singletonList(instance)).verifyComplete();
+	}
+
+	@Test
+	public void failedFirstFetchIsRetried() {
+		ServiceInstance instance = instance(8001);
+		when(discoveryClient.getInstances("service"))
+				.thenThrow(new IllegalStateException("unavailable"))
+				.thenReturn(Collections.singletonList(instance));
+		cache = new ServiceInstanceCache(discoveryClient, Duration.ofMinutes(1), 1);
+
+		StepVerifier.create(cache.getInstances("service"))
+				.expectError(IllegalStateException.class).verify();
+		StepVerifier.create(cache.getInstances("service"))
+				.expectNext(Collections.singletonList(instance)).verifyComplete();
+	}
+
+	private static ServiceInstance instance(int port) {
+		return new DefaultServiceInstance("service", "localhost", port, false);
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.handler.AsyncPredicate.DefaultAsyncPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncPredicateTests {
+
+	@Test
+	public void synchronousPredicatesComposeSynchronously() {
+		AsyncPredicate<String> predicate = sync("a").and(sync("b").negate())
+				.or(sync("c"));
+
+		assertThat(predicate.isSynchronous()).isTrue();
+		assertThat(predicate.test("a")).isTrue();
+		assertThat(predicate.test("b")).isFalse();
+		assertThat(predicate.test("c")).isTrue();
+		assertThat(predicate.apply("a")).isSameAs(predicate.apply("c"));
+		StepVerifier.create(predicate.apply("b")).expectNext(false).verifyComplete();
+	}
+
+	@Test
+	public void asynchronousPredicatesComposeReactively() {
+		AsyncPredicate<String> async = value -> Mono.just(value.startsWith("a"));
+		AsyncPredicate<String> predicate = sync("ab").and(async);
+
+		assertThat(predicate.isSynchronous()).isFalse();
+		assertThat(predicate.negate().isSynchronous()).isFalse();
+		StepVerifier.create(predicate.apply("ab")).expectNext(true).verifyComplete();
+		StepVerifier.create(predicate.apply("b")).expectNext(false).verifyComplete();
+	}
+
+	@Test
+	public void rightSideIsOnlyEvaluatedWhenNeeded() {
+		AtomicInteger evaluations = new AtomicInteger();
+		AsyncPredicate<String> counting = value -> Mono.fromSupplier(() -> {
+			evaluations.incrementAndGet();
+			return true;
+		});
+		AsyncPredicate<String> asyncFalse = value -> Mono.just(false);
+		AsyncPredicate<String> asyncTrue = value -> Mono.just(true);
+
+		StepVerifier.create(asyncFalse.and(counting).apply("a")).expectNext(false)
+				.verifyComplete();
+		StepVerifier.create(asyncTrue.or(counting).apply("a")).expectNext(true)
+				.verifyComplete();
+		StepVerifier.create(sync("b").and(counting).apply("a")).expectNext(false)
+				.verifyComplete();
+		StepVerifier.create(sync("a").or(counting).apply("a")).expectNext(true)
+				.verifyComplete();
+		assertThat(evaluations).hasValue(0);
+
+		StepVerifier.create(asyncTrue.and(counting).apply("a")).expectNext(true)
+				.verifyComplete();
+		StepVerifier.create(sync("b").or(counting).apply("a")).expectNext(true)
+				.verifyComplete();
+		assertThat(evaluations).hasValue(2);
+	}
+
+	@Test
+	public void errorsArePropagated() {
+		AsyncPredicate<String> error = value -> Mono
+				.error(new IllegalStateException("boom"));
+		AsyncPredicate<String> asyncTrue = value -> Mono.just(true);
+
+		StepVerifier.create(error.and(asyncTrue).apply("a"))
+				.verifyError(IllegalStateException.class);
+		StepVerifier.create(asyncTrue.and(error).apply("a"))
+				.verifyError(IllegalStateException.class);
+		StepVerifier.create(error.or(asyncTrue).apply("a"))
+				.verifyError(IllegalStateException.class);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRequiresSynchronousPredicate() {
+		AsyncPredicate<String> async = value -> Mono.just(true);
+		async.test("a");
+	}
+
+	private AsyncPredicate<String> sync(String expected) {
+		return new DefaultAsyncPredicate<>(expected::equals);
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Measures {@link FilteringWebHandler#handle} for a route with 10 route filters and
+ * 10 global filters that all pass the exchange on. Run with the GC profiler, e.g.
+ * {@code -prof gc}, to see the allocation per request. Run from the IDE or with the
+ * test classpath, it is not part of the test suite.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilteringWebHandlerBenchmark {
+
+	private static final int FILTERS = 10;
+
+	private final CoreSubscriber<Void> subscriber = new CoreSubscriber<Void>() {
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(Void value) {
+		}
+
+		@Override
+		public void onError(Throwable error) {
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	};
+
+	private FilteringWebHandler handler;
+
+	private ServerWebExchange exchange;
+
+	@Setup
+	public void setup() {
+		List<GlobalFilter> globalFilters = new ArrayList<>();
+		Route.AsyncBuilder route = Route.async().id("route").uri("http://localhost")
+				.predicate(exchange -> true);
+		for (int i = 0; i < FILTERS; i++) {
+			globalFilters.add((exchange, chain) -> chain.filter(exchange));
+			route.filter(new OrderedGatewayFilter(
+					(exchange, chain) -> chain.filter(exchange), i));
+		}
+		this.handler = new FilteringWebHandler(globalFilters);
+		this.exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/get").build());
+		this.exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route.build());
+	}
+
+	@Benchmark
+	public void handle() {
+		this.handler.handle(this.exchange).subscribe(this.subscriber);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(FilteringWebHandlerBenchmark.class.getSimpleName())
+				.addProfiler("gc").build()).run();
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.core.Ordered;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+public class FilteringWebHandlerTests {
+
+	@Test
+	public void filtersAreCombinedInOrder() {
+		List<String> invocations = new ArrayList<>();
+		FilteringWebHandler handler = new FilteringWebHandler(
+				Collections.singletonList(new OrderedGlobalFilter("global", 5,
+						invocations)));
+		Route route = Route.async().id("route").uri("http://localhost")
+				.predicate(exchange -> true)
+				.filter(new OrderedGatewayFilter(recording("late", invocations), 10))
+				.filter(new OrderedGatewayFilter(recording("early", invocations), 1))
+				.build();
+
+		handler.handle(exchange(route)).block();
+
+		assertThat(invocations).containsExactly("early", "global", "late");
+	}
+
+	@Test
+	public void combinedFiltersAreCachedWhileRouteIsInUse() {
+		FilteringWebHandler handler = new FilteringWebHandler(Collections.emptyList());
+		Route kept = route("kept");
+		Route dropped = route("dropped");
+
+		List<GatewayFilter> keptFilters = handler.getCombinedFilters(kept);
+		List<GatewayFilter> droppedFilters = handler.getCombinedFilters(dropped);
+		assertThat(handler.getCombinedFilters(kept)).isSameAs(keptFilters);
+
+		RouteLocator routeLocator = () -> Flux.just(kept);
+		handler.onApplicationEvent(new RefreshRoutesResultEvent(routeLocator));
+
+		assertThat(handler.getCombinedFilters(kept)).isSameAs(keptFilters);
+		assertThat(handler.getCombinedFilters(dropped)).isNotSameAs(droppedFilters)
+				.isEqualTo(droppedFilters);
+	}
+
+	@Test
+	public void concurrentLookupsShareOneChainPerRoute() throws Exception {
+		FilteringWebHandler handler = new FilteringWebHandler(Collections.emptyList());
+		List<Route> routes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			routes.add(route("route" + i));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<List<GatewayFilter>>>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> {
+					List<List<GatewayFilter>> filters = new ArrayList<>();
+					for (Route route : routes) {
+						filters.add(handler.getCombinedFilters(route));
+					}
+					return filters;
+				}));
+			}
+			for (Future<List<List<GatewayFilter>>> result : results) {
+				List<List<GatewayFilter>> filters = result.get();
+				for (int i = 0; i < routes.size(); i++) {
+					assertThat(filters.get(i))
+							.isSameAs(handler.getCombinedFilters(routes.get(i)));
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void equalRoutesHaveTheirOwnChains() {
+		FilteringWebHandler handler = new FilteringWebHandler(Collections.emptyList());
+		GatewayFilter filter = (exchange, chain) -> Mono.empty();
+		AsyncPredicate<ServerWebExchange> predicate = exchange -> Mono.just(true);
+		Route route = Route.async().id("route").uri("http://localhost")
+				.asyncPredicate(predicate).filter(filter).build();
+		Route equal = Route.async().id("route").uri("http://localhost")
+				.asyncPredicate(predicate).filter(filter).build();
+		assertThat(equal).isEqualTo(route);
+
+		assertThat(handler.getCombinedFilters(equal))
+				.isNotSameAs(handler.getCombinedFilters(route));
+	}
+
+	@Test
+	public void chainIsReusedAcrossRequests() {
+		Set<GatewayFilterChain> chains = new HashSet<>();
+		FilteringWebHandler handler = new FilteringWebHandler(Collections.emptyList());
+		Route route = Route.async().id("route").uri("http://localhost")
+				.predicate(exchange -> true).filter((exchange, chain) -> {
+					chains.add(chain);
+					return chain.filter(exchange);
+				}).build();
+
+		handler.handle(exchange(route)).block();
+		handler.handle(exchange(route)).block();
+
+		assertThat(chains).hasSize(1);
+	}
+
+	@Test
+	public void thrownExceptionsAreSignalled() {
+		FilteringWebHandler handler = new FilteringWebHandler(Collections.emptyList());
+		Route route = Route.async().id("route").uri("http://localhost")
+				.predicate(exchange -> true).filter((exchange, chain) -> {
+					throw new IllegalStateException("boom");
+				}).build();
+
+		Mono<Void> result = handler.handle(exchange(route));
+
+		StepVerifier.create(result).verifyError(IllegalStateException.class);
+	}
+
+	@Test
+	public void filtersAreInvokedAgainOnResubscription() {
+		AtomicInteger invocations = new AtomicInteger();
+		FilteringWebHandler handler = new FilteringWebHandler(Collections.emptyList());
+		Route route = Route.async().id("route").uri("http://localhost")
+				.predicate(exchange -> true)
+				.filter((exchange, chain) -> chain.filter(exchange).repeat(2).then())
+				.filter((exchange, chain) -> {
+					invocations.incrementAndGet();
+					return chain.filter(exchange);
+				}).build();
+
+		handler.handle(exchange(route)).block();
+
+		assertThat(invocations).hasValue(3);
+	}
+
+	private MockServerWebExchange exchange(Route route) {
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/").build());
+		exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+		return exchange;
+	}
+
+	private Route route(String id) {
+		return Route.async().id(id).uri("http://localhost").predicate(exchange -> true)
+				.filter((exchange, chain) -> Mono.empty()).build();
+	}
+
+	private GatewayFilter recording(String name, List<String> invocations) {
+		return (exchange, chain) -> {
+			invocations.add(name);
+			return chain.filter(exchange);
+		};
+	}
+
+	private static class OrderedGlobalFilter implements GlobalFilter, Ordered {
+
+		private final String name;
+
+		private final int order;
+
+		private final List<String> invocations;
+
+		OrderedGlobalFilter(String name, int order, List<String> invocations) {
+			this.name = name;
+			this.order = order;
+			this.invocations = invocations;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+			this.invocations.add(this.name);
+			return chain.filter(exchange);
+		}
+
+		@Override
+		public int getOrder() {
+			return this.order;
+		}
+
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler;
+
+import org.junit.Test;
+
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.predicate.HeaderRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteMatchCacheTests {
+
+	private final Route route = Route.async().id("route").uri("http://localhost")
+			.asyncPredicate(new PathRoutePredicateFactory()
+					.applyAsync(c -> c.setPattern("/foo")))
+			.build();
+
+	@Test
+	public void cachesRoutesAndMisses() {
+		RouteMatchCache cache = new RouteMatchCache(100);
+		long generation = cache.generation();
+		assertThat(cache.get("GET localhost /foo")).isNull();
+
+		cache.put("GET localhost /foo", this.route, generation);
+		cache.put("GET localhost /bar", null, generation);
+
+		assertThat(cache.get("GET localhost /foo")).contains(this.route);
+		assertThat(cache.get("GET localhost /bar")).isEmpty();
+		assertThat(cache.getHitCount()).isEqualTo(2);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void clearedOnRefresh() {
+		RouteMatchCache cache = new RouteMatchCache(100);
+		long generation = cache.generation();
+		cache.put("GET localhost /foo", this.route, generation);
+
+		assertThat(cache.supportsEventType(RefreshRoutesEvent.class)).isTrue();
+		assertThat(cache.supportsEventType(RefreshRoutesResultEvent.class)).isTrue();
+		cache.onApplicationEvent(new RefreshRoutesEvent(this));
+
+		assertThat(cache.size()).isZero();
+		// lookups that started before the refresh are not cached
+		cache.put("GET localhost /foo", this.route, generation);
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		RouteMatchCache cache = new RouteMatchCache(16);
+		long generation = cache.generation();
+		for (int i = 0; i < 1000; i++) {
+			cache.put("GET localhost /" + i, null, generation);
+		}
+		assertThat(cache.size()).isLessThanOrEqualTo(16);
+		assertThat(cache.getEvictionCount()).isEqualTo(1000 - cache.size());
+	}
+
+	@Test
+	public void holdsExactlyMaxSizeEntries() {
+		for (int maxSize : new int[] { 1, 5, 15, 17, 100 }) {
+			RouteMatchCache cache = new RouteMatchCache(maxSize);
+			long generation = cache.generation();
+			for (int i = 0; i < 10000; i++) {
+				cache.put("GET localhost /" + i, null, generation);
+			}
+			assertThat(cache.size()).as("max size %d", maxSize).isEqualTo(maxSize);
+		}
+	}
+
+	@Test
+	public void keyIncludesMethodHostAndPath() {
+		RouteMatchCache cache = new RouteMatchCache(100);
+		MockServerWebExchange exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.post("http://example.org/foo?bar=baz")
+						.header("Host", "example.org").build());
+
+		assertThat(cache.key(exchange)).isEqualTo("POST example.org /foo");
+	}
+
+	@Test
+	public void cacheableRoutes() {
+		Route methodHostAndPath = Route.async().id("route").uri("http://localhost")
+				.asyncPredicate(new MethodRoutePredicateFactory()
+						.applyAsync(c -> c.setMethod(HttpMethod.GET)))
+				.and(new HostRoutePredicateFactory()
+						.applyAsync(c -> c.setPattern("**.example.org")))
+				.or(new PathRoutePredicateFactory().applyAsync(c -> c.setPattern("/foo"))
+						.negate())
+				.build();
+		Route header = Route.async().id("route").uri("http://localhost")
+				.asyncPredicate(new PathRoutePredicateFactory()
+						.applyAsync(c -> c.setPattern("/foo")))
+				.and(new HeaderRoutePredicateFactory()
+						.applyAsync(c -> c.setHeader("X-Foo")))
+				.build();
+		Route plain = Route.async().id("route").uri("http://localhost")
+				.predicate(exchange -> true).build();
+
+		assertThat(RouteMatchCache.isCacheable(methodHostAndPath)).isTrue();
+		assertThat(RouteMatchCache.isCacheable(header)).isFalse();
+		assertThat(RouteMatchCache.isCacheable(plain)).isFalse();
+	}
+
+}
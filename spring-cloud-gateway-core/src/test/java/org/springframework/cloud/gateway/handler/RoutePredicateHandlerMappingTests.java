@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.gateway.handler;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -25,12 +27,17 @@ import reactor.test.StepVerifier;
 
 import org.springframework.boot.test.rule.OutputCapture;
 import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.web.server.ServerWebExchange;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.getUriTemplateVariables;
 
 /**
  * @author Simon Baslé
@@ -99,4 +106,72 @@ public class RoutePredicateHandlerMappingTests {
 		outputCapture.expect(containsString("java.lang.IllegalStateException: boom2"));
 	}
 
+	@Test
+	public void lookupRouteFromCache() {
+		Route routeFoo = Route.async().id("routeFoo").uri("http://localhost")
+				.asyncPredicate(new PathRoutePredicateFactory()
+						.applyAsync(c -> c.setPattern("/foo/{segment}")))
+				.build();
+		AtomicInteger lookups = new AtomicInteger();
+		RouteLocator routeLocator = () -> Flux.defer(() -> {
+			lookups.incrementAndGet();
+			return Flux.just(routeFoo);
+		});
+		RoutePredicateHandlerMapping mapping = new RoutePredicateHandlerMapping(null,
+				routeLocator, new GlobalCorsProperties(), new MockEnvironment());
+		RouteMatchCache cache = new RouteMatchCache(100);
+		mapping.setRouteMatchCache(cache);
+
+		for (int i = 0; i < 2; i++) {
+			ServerWebExchange exchange = MockServerWebExchange
+					.from(MockServerHttpRequest.get("http://localhost/foo/bar").build());
+			StepVerifier.create(mapping.lookupRoute(exchange).map(Route::getId))
+					.expectNext("routeFoo").verifyComplete();
+			// set by the predicate even if the route is cached
+			assertThat(getUriTemplateVariables(exchange)).containsEntry("segment",
+					"bar");
+
+			StepVerifier.create(mapping.lookupRoute(MockServerWebExchange
+					.from(MockServerHttpRequest.get("http://localhost/baz").build())))
+					.verifyComplete();
+		}
+
+		assertThat(lookups).hasValue(2);
+		assertThat(cache.getHitCount()).isEqualTo(2);
+		assertThat(cache.getMissCount()).isEqualTo(2);
+
+		cache.clear();
+		StepVerifier.create(mapping.lookupRoute(MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/baz").build())))
+				.verifyComplete();
+		assertThat(lookups).hasValue(3);
+	}
+
+	@Test
+	public void lookupRouteNotCachedForOtherPredicates() {
+		Route routeHeader = Route.async().id("routeHeader").uri("http://localhost")
+				.predicate(swe -> swe.getRequest().getHeaders().containsKey("X-Foo"))
+				.build();
+		AtomicInteger lookups = new AtomicInteger();
+		RouteLocator routeLocator = () -> Flux.defer(() -> {
+			lookups.incrementAndGet();
+			return Flux.just(routeHeader);
+		});
+		RoutePredicateHandlerMapping mapping = new RoutePredicateHandlerMapping(null,
+				routeLocator, new GlobalCorsProperties(), new MockEnvironment());
+		RouteMatchCache cache = new RouteMatchCache(100);
+		mapping.setRouteMatchCache(cache);
+
+		StepVerifier.create(mapping.lookupRoute(MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost/foo").build())))
+				.verifyComplete();
+		StepVerifier.create(mapping.lookupRoute(
+				MockServerWebExchange.from(MockServerHttpRequest
+						.get("http://localhost/foo").header("X-Foo", "bar").build()))
+				.map(Route::getId)).expectNext("routeHeader").verifyComplete();
+
+		assertThat(lookups).hasValue(2);
+		assertThat(cache.size()).isZero();
+	}
+
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.netty.handler.ipfilter.IpFilterRuleType;
+import io.netty.handler.ipfilter.IpSubnetFilterRule;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IpSubnetTrieTests {
+
+	@Test
+	public void matchesSubnets() throws UnknownHostException {
+		IpSubnetTrie trie = new IpSubnetTrie();
+		trie.add(address("10.0.0.0"), 8);
+		trie.add(address("192.168.1.17"), 32);
+		trie.add(address("2001:db8::"), 32);
+
+		assertThat(trie.matches(address("10.20.30.40"))).isTrue();
+		assertThat(trie.matches(address("11.0.0.1"))).isFalse();
+		assertThat(trie.matches(address("192.168.1.17"))).isTrue();
+		assertThat(trie.matches(address("192.168.1.18"))).isFalse();
+		assertThat(trie.matches(address("2001:db8:1::1"))).isTrue();
+		assertThat(trie.matches(address("2001:db9::1"))).isFalse();
+		assertThat(trie.matches(address("::ffff:10.0.0.1"))).isTrue();
+	}
+
+	@Test
+	public void familiesAreSeparate() throws UnknownHostException {
+		IpSubnetTrie trie = new IpSubnetTrie();
+		trie.add(address("0.0.0.0"), 0);
+
+		assertThat(trie.matches(address("1.2.3.4"))).isTrue();
+		assertThat(trie.matches(address("::1"))).isFalse();
+	}
+
+	@Test
+	public void invalidPrefixIsRejected() {
+		assertThatThrownBy(() -> new IpSubnetTrie().add(address("10.0.0.0"), 33))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new IpSubnetTrie().add(address("::"), 129))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void matchesLikeIpSubnetFilterRules() throws UnknownHostException {
+		Random random = new Random(42);
+		IpSubnetTrie trie = new IpSubnetTrie();
+		List<IpSubnetFilterRule> rules = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			boolean ipv4 = random.nextBoolean();
+			InetAddress address = randomAddress(random, ipv4);
+			int prefix = 4 + random.nextInt(ipv4 ? 29 : 125);
+			trie.add(address, prefix);
+			rules.add(new IpSubnetFilterRule(address, prefix, IpFilterRuleType.ACCEPT));
+		}
+
+		for (int i = 0; i < 5000; i++) {
+			InetAddress address = randomAddress(random, random.nextBoolean());
+			InetSocketAddress socketAddress = new InetSocketAddress(address, 80);
+			boolean expected = rules.stream()
+					.anyMatch(rule -> rule.matches(socketAddress));
+			assertThat(trie.matches(address)).as(address.toString())
+					.isEqualTo(expected);
+		}
+	}
+
+	private InetAddress randomAddress(Random random, boolean ipv4)
+			throws UnknownHostException {
+		byte[] bytes = new byte[ipv4 ? 4 : 16];
+		random.nextBytes(bytes);
+		// keep the leading bits in a small range, so that subnets do overlap
+		bytes[0] &= 0x03;
+		return InetAddress.getByAddress(bytes);
+	}
+
+	private InetAddress address(String address) throws UnknownHostException {
+		return InetAddress.getByName(address);
+	}
+
+}
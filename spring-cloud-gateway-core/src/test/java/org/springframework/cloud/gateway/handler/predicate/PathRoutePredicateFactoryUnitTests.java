@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.getPathContainer;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.getUriTemplateVariables;
+
+public class PathRoutePredicateFactoryUnitTests {
+
+	@Test
+	public void variablesAreExtracted() {
+		Predicate<ServerWebExchange> predicate = predicate("/foo/**",
+				"/bar/{segment}");
+		ServerWebExchange exchange = exchange("/bar/baz");
+
+		assertThat(predicate.test(exchange)).isTrue();
+		assertThat(getUriTemplateVariables(exchange)).containsEntry("segment", "baz");
+	}
+
+	@Test
+	public void patternsWithoutVariablesAreNotExtracted() {
+		Predicate<ServerWebExchange> predicate = predicate("/foo/**",
+				"/bar/{segment}");
+		ServerWebExchange exchange = exchange("/foo/baz");
+
+		assertThat(predicate.test(exchange)).isTrue();
+		assertThat(exchange.getAttributes())
+				.doesNotContainKey(URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		assertThat(predicate.test(exchange("/baz"))).isFalse();
+	}
+
+	@Test
+	public void parsedPathIsShared() {
+		ServerWebExchange exchange = exchange("/foo/bar");
+		PathContainer path = getPathContainer(exchange);
+
+		assertThat(predicate("/foo/**").test(exchange)).isTrue();
+		assertThat(getPathContainer(exchange)).isSameAs(path);
+
+		ServerWebExchange mutated = exchange.mutate()
+				.request(exchange.getRequest().mutate().path("/bar").build()).build();
+		assertThat(getPathContainer(mutated).value()).isEqualTo("/bar");
+		assertThat(predicate("/foo/**").test(mutated)).isFalse();
+	}
+
+	private Predicate<ServerWebExchange> predicate(String... patterns) {
+		PathRoutePredicateFactory.Config config = new PathRoutePredicateFactory.Config()
+				.setPatterns(Arrays.asList(patterns));
+		return new PathRoutePredicateFactory().apply(config);
+	}
+
+	private ServerWebExchange exchange(String path) {
+		return MockServerWebExchange
+				.from(MockServerHttpRequest.get("http://localhost" + path).build());
+	}
+
+}
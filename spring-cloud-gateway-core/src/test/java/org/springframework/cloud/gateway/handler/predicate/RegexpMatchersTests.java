@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.handler.predicate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RegexpMatchersTests {
+
+	private static final List<String> REGEXPS = Arrays.asList("abc", "abc.*", ".*abc",
+			".*abc.*", ".*", ".*.*", "", "a.c", "ab+c", "\\d+", ".*a|b.*");
+
+	private static final List<String> VALUES = Arrays.asList("", "abc", "abcd", "xabc",
+			"xabcx", "ab", "aXc", "abbc", "123", "a\nabc", "abc\n", " abc",
+			"abc\rx");
+
+	@Test
+	public void matchesLikeStringMatches() {
+		for (String regexp : REGEXPS) {
+			Predicate<String> predicate = RegexpMatchers.matches(regexp);
+			for (String value : VALUES) {
+				assertThat(predicate.test(value))
+						.as("'%s' matches '%s'", value, regexp)
+						.isEqualTo(value.matches(regexp));
+			}
+		}
+	}
+
+}
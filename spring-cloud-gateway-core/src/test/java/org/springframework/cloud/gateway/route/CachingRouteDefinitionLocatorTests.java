@@ -18,9 +18,15 @@ package org.springframework.cloud.gateway.route;
 
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -64,6 +70,110 @@ public class CachingRouteDefinitionLocatorTests {
 		assertThat(routes).containsExactlyInAnyOrder(routeDef1, routeDef2);
 	}
 
+	@Test
+	public void failedRefreshKeepsPreviousRouteDefinitions() {
+		RouteDefinition routeDef1 = routeDef(1);
+		CachingRouteDefinitionLocator locator = new CachingRouteDefinitionLocator(
+				new RouteDefinitionLocator() {
+					int i = 0;
+
+					@Override
+					public Flux<RouteDefinition> getRouteDefinitions() {
+						if (i++ == 0) {
+							return Flux.just(routeDef1);
+						}
+						return Flux.error(new IllegalStateException("boom"));
+					}
+				});
+
+		assertThat(locator.getRouteDefinitions().collectList().block())
+				.containsExactly(routeDef1);
+
+		StepVerifier.create(locator.refresh())
+				.verifyError(IllegalStateException.class);
+		assertThat(locator.getRouteDefinitions().collectList().block())
+				.containsExactly(routeDef1);
+	}
+
+	@Test
+	public void failedInitialLoadKeepsRefreshedRouteDefinitions() {
+		RouteDefinition routeDef1 = routeDef(1);
+		AtomicInteger loads = new AtomicInteger();
+		MonoProcessor<RouteDefinition> initial = MonoProcessor.create();
+		CachingRouteDefinitionLocator locator = new CachingRouteDefinitionLocator(() -> {
+			switch (loads.getAndIncrement()) {
+			case 0:
+				return Flux.from(initial);
+			case 1:
+				return Flux.just(routeDef1);
+			default:
+				return Flux.empty();
+			}
+		});
+
+		locator.getRouteDefinitions().subscribe(definition -> {
+		}, ex -> {
+		});
+		locator.refresh();
+		initial.onError(new IllegalStateException("boom"));
+
+		assertThat(locator.getRouteDefinitions().collectList().block())
+				.containsExactly(routeDef1);
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	public void routesAreCompiledFromPendingRefresh() {
+		RouteDefinition routeDef1 = routeDef(1);
+		RouteDefinition routeDef2 = routeDef(2);
+		AtomicInteger loads = new AtomicInteger();
+		MonoProcessor<RouteDefinition> pending = MonoProcessor.create();
+		CachingRouteDefinitionLocator definitionLocator;
+		definitionLocator = new CachingRouteDefinitionLocator(() -> {
+			if (loads.getAndIncrement() == 0) {
+				return Flux.just(routeDef1);
+			}
+			return Flux.just(routeDef1).concatWith(pending);
+		});
+		CachingRouteLocator routeLocator = new CachingRouteLocator(
+				() -> definitionLocator.getRouteDefinitions()
+						.map(definition -> Route.async(definition)
+								.predicate(exchange -> true).build()),
+				Schedulers.immediate());
+		assertThat(routeLocator.getRoutes().collectList().block()).hasSize(1);
+
+		RefreshRoutesEvent event = new RefreshRoutesEvent(this);
+		definitionLocator.onApplicationEvent(event);
+		routeLocator.onApplicationEvent(event);
+		assertThat(routeLocator.getRoutes().collectList().block()).hasSize(1);
+		pending.onNext(routeDef2);
+
+		assertThat(routeLocator.getRoutes().map(Route::getId).collectList().block())
+				.containsExactly("1", "2");
+		assertThat(definitionLocator.getRouteDefinitions().collectList().block())
+				.containsExactly(routeDef1, routeDef2);
+	}
+
+	@Test
+	public void failedPendingRefreshServesPreviousRouteDefinitions() {
+		RouteDefinition routeDef1 = routeDef(1);
+		AtomicInteger loads = new AtomicInteger();
+		MonoProcessor<RouteDefinition> pending = MonoProcessor.create();
+		CachingRouteDefinitionLocator locator = new CachingRouteDefinitionLocator(() -> {
+			if (loads.getAndIncrement() == 0) {
+				return Flux.just(routeDef1);
+			}
+			return Flux.from(pending);
+		});
+		assertThat(locator.getRouteDefinitions().collectList().block())
+				.containsExactly(routeDef1);
+
+		locator.refresh();
+		StepVerifier.create(locator.getRouteDefinitions())
+				.then(() -> pending.onError(new IllegalStateException("boom")))
+				.expectNext(routeDef1).verifyComplete();
+	}
+
 	RouteDefinition routeDef(int id) {
 		RouteDefinition def = new RouteDefinition();
 		def.setId(String.valueOf(id));
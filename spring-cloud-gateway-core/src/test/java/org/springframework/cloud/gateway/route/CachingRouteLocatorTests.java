@@ -16,10 +16,19 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -60,6 +69,135 @@ public class CachingRouteLocatorTests {
 		assertThat(routes).containsExactly(route1, route2);
 	}
 
+	@Test
+	public void refreshKeepsPreviousRoutesUntilCompiled() {
+		Route route1 = route(1);
+		Route route2 = route(2);
+		AtomicInteger compiles = new AtomicInteger();
+		MonoProcessor<Route> pending = MonoProcessor.create();
+		CachingRouteLocator locator = new CachingRouteLocator(() -> {
+			if (compiles.getAndIncrement() == 0) {
+				return Flux.just(route1);
+			}
+			return Flux.concat(Flux.just(route1), pending);
+		}, Schedulers.immediate());
+
+		assertThat(locator.getRoutes().collectList().block()).containsExactly(route1);
+		assertThat(locator.getRoutes().collectList().block()).containsExactly(route1);
+		assertThat(compiles).hasValue(1);
+
+		locator.refresh();
+		assertThat(locator.getRoutes().collectList().block()).containsExactly(route1);
+
+		pending.onNext(route2);
+		assertThat(locator.getRoutes().collectList().block()).containsExactly(route1,
+				route2);
+		assertThat(compiles).hasValue(2);
+	}
+
+	@Test
+	public void failedRefreshKeepsPreviousRoutes() {
+		Route route1 = route(1);
+		CachingRouteLocator locator = new CachingRouteLocator(new RouteLocator() {
+			int i = 0;
+
+			@Override
+			public Flux<Route> getRoutes() {
+				if (i++ == 0) {
+					return Flux.just(route1);
+				}
+				return Flux.error(new IllegalStateException("boom"));
+			}
+		});
+
+		assertThat(locator.getRoutes().collectList().block()).containsExactly(route1);
+
+		StepVerifier.create(locator.refresh()).verifyError(IllegalStateException.class);
+		assertThat(locator.getRoutes().collectList().block()).containsExactly(route1);
+	}
+
+	@Test
+	public void refreshPublishesResult() {
+		Route route1 = route(1);
+		AtomicInteger compiles = new AtomicInteger();
+		MonoProcessor<Route> pending = MonoProcessor.create();
+		CachingRouteLocator locator = new CachingRouteLocator(() -> {
+			if (compiles.getAndIncrement() == 0) {
+				return Flux.from(pending);
+			}
+			return Flux.error(new IllegalStateException("boom"));
+		}, Schedulers.immediate());
+		List<RefreshRoutesResultEvent> events = new ArrayList<>();
+		locator.setApplicationEventPublisher(
+				event -> events.add((RefreshRoutesResultEvent) event));
+
+		locator.refresh();
+		assertThat(events).isEmpty();
+		pending.onNext(route1);
+		assertThat(events).hasSize(1);
+		assertThat(events.get(0).isSuccess()).isTrue();
+
+		locator.refresh();
+		assertThat(events).hasSize(2);
+		assertThat(events.get(1).getThrowable())
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void refreshCompilesOnDedicatedThread() {
+		AtomicReference<String> thread = new AtomicReference<>();
+		CachingRouteLocator locator = new CachingRouteLocator(() -> {
+			thread.set(Thread.currentThread().getName());
+			return Flux.just(route(1));
+		});
+
+		locator.refresh().blockLast();
+
+		assertThat(thread.get()).startsWith("route-refresh");
+		locator.destroy();
+	}
+
+	@Test
+	public void failedInitialLoadKeepsRefreshedRoutes() {
+		Route route1 = route(1);
+		AtomicInteger compiles = new AtomicInteger();
+		MonoProcessor<Route> initial = MonoProcessor.create();
+		CachingRouteLocator locator = new CachingRouteLocator(() -> {
+			switch (compiles.getAndIncrement()) {
+			case 0:
+				return Flux.from(initial);
+			case 1:
+				return Flux.just(route1);
+			default:
+				return Flux.empty();
+			}
+		}, Schedulers.immediate());
+
+		locator.getRoutes().subscribe(route -> {
+		}, ex -> {
+		});
+		locator.refresh();
+		initial.onError(new IllegalStateException("boom"));
+
+		assertThat(locator.getRoutes().collectList().block()).containsExactly(route1);
+		assertThat(compiles).hasValue(2);
+	}
+
+	@Test
+	public void resultRefersToRefreshEvent() {
+		CachingRouteLocator locator = new CachingRouteLocator(() -> Flux.just(route(1)),
+				Schedulers.immediate());
+		List<RefreshRoutesResultEvent> events = new ArrayList<>();
+		locator.setApplicationEventPublisher(
+				event -> events.add((RefreshRoutesResultEvent) event));
+		RefreshRoutesEvent refresh = new RefreshRoutesEvent(this);
+
+		locator.onApplicationEvent(refresh);
+
+		assertThat(events).hasSize(1);
+		assertThat(events.get(0).getRefreshEvent()).isSameAs(refresh);
+	}
+
 	Route route(int id) {
 		return Route.async().id(String.valueOf(id)).uri("http://localhost/" + id)
 				.order(id).predicate(exchange -> true).build();
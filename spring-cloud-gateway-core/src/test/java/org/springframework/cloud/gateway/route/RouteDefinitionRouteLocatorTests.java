@@ -17,13 +17,17 @@
 package org.springframework.cloud.gateway.route;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
+import reactor.core.publisher.Flux;
 
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.cloud.gateway.config.GatewayProperties;
 import org.springframework.cloud.gateway.config.PropertiesRouteDefinitionLocator;
+import org.springframework.cloud.gateway.event.PredicateArgsEvent;
 import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
@@ -35,6 +39,7 @@ import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFac
 import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
 import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
 import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.expression.spel.SpelCompilerMode;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -80,6 +85,99 @@ public class RouteDefinitionRouteLocatorTests {
 				.startsWith("RouteDefinitionRouteLocatorTests$TestOrderedGateway");
 	}
 
+	@Test
+	public void unchangedRoutesAreReused() {
+		RouteDefinition foo = new RouteDefinition("foo=http://foo.example.com,Host=foo");
+		RouteDefinition bar = new RouteDefinition("bar=http://bar.example.com,Host=bar");
+		List<RouteDefinition> definitions = new ArrayList<>(Arrays.asList(foo, bar));
+		GatewayProperties gatewayProperties = new GatewayProperties();
+		RouteDefinitionRouteLocator routeDefinitionRouteLocator = new RouteDefinitionRouteLocator(
+				() -> Flux.fromIterable(definitions),
+				Arrays.asList(new HostRoutePredicateFactory()),
+				Arrays.asList(new AddResponseHeaderGatewayFilterFactory()),
+				gatewayProperties, new DefaultConversionService());
+		List<Object> events = new ArrayList<>();
+		routeDefinitionRouteLocator.setApplicationEventPublisher(events::add);
+
+		List<Route> routes = routeDefinitionRouteLocator.getRoutes().collectList()
+				.block();
+		assertThat(events).hasSize(2);
+
+		bar.setFilters(Arrays
+				.asList(new FilterDefinition("AddResponseHeader=X-Response-Foo, Bar")));
+		definitions.add(
+				new RouteDefinition("baz=http://baz.example.com,Host=baz"));
+		List<Route> refreshed = routeDefinitionRouteLocator.getRoutes().collectList()
+				.block();
+
+		assertThat(refreshed).hasSize(3);
+		assertThat(refreshed.get(0)).isSameAs(routes.get(0));
+		assertThat(refreshed.get(1)).isNotSameAs(routes.get(1));
+		assertThat(refreshed.get(1).getFilters()).hasSize(1);
+		assertThat(events).hasSize(5);
+
+		gatewayProperties.setDefaultFilters(Arrays
+				.asList(new FilterDefinition("AddResponseHeader=X-Default, Bar")));
+		List<Route> withDefaults = routeDefinitionRouteLocator.getRoutes()
+				.collectList().block();
+
+		assertThat(withDefaults.get(0)).isNotSameAs(refreshed.get(0));
+		assertThat(withDefaults.get(0).getFilters()).hasSize(1);
+	}
+
+	@Test
+	public void manyRoutesKeepTheirOrder() {
+		List<RouteDefinition> definitions = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			definitions.add(new RouteDefinition(
+					"route" + i + "=http://example.com,Host=host" + i));
+		}
+		GatewayProperties properties = new GatewayProperties();
+		properties.setRouteConversionConcurrency(4);
+		RouteDefinitionRouteLocator routeDefinitionRouteLocator = new RouteDefinitionRouteLocator(
+				() -> Flux.fromIterable(definitions),
+				Arrays.asList(new HostRoutePredicateFactory()),
+				Arrays.asList(new AddResponseHeaderGatewayFilterFactory()), properties,
+				new DefaultConversionService());
+		List<PredicateArgsEvent> events = new ArrayList<>();
+		routeDefinitionRouteLocator.setApplicationEventPublisher(
+				event -> events.add((PredicateArgsEvent) event));
+
+		List<Route> routes = routeDefinitionRouteLocator.getRoutes().collectList()
+				.block();
+
+		assertThat(routes).hasSize(100);
+		assertThat(events).hasSize(100);
+		for (int i = 0; i < 100; i++) {
+			assertThat(routes.get(i).getId()).isEqualTo("route" + i);
+			assertThat(events.get(i).getRouteId()).isEqualTo("route" + i);
+		}
+		routeDefinitionRouteLocator.destroy();
+	}
+
+	@Test
+	public void expressionsWithCompilerEnabled() {
+		RouteDefinition foo = new RouteDefinition(
+				"foo=http://foo.example.com,Host=#{'foo'}");
+		RouteDefinition bar = new RouteDefinition(
+				"bar=http://bar.example.com,Host=#{'foo'}");
+		GatewayProperties gatewayProperties = new GatewayProperties();
+		gatewayProperties.setExpressionCompilerMode(SpelCompilerMode.IMMEDIATE);
+		RouteDefinitionRouteLocator routeDefinitionRouteLocator = new RouteDefinitionRouteLocator(
+				() -> Flux.just(foo, bar), Arrays.asList(new HostRoutePredicateFactory()),
+				Arrays.asList(new AddResponseHeaderGatewayFilterFactory()),
+				gatewayProperties, new DefaultConversionService());
+		routeDefinitionRouteLocator.setBeanFactory(new DefaultListableBeanFactory());
+		List<PredicateArgsEvent> events = new ArrayList<>();
+		routeDefinitionRouteLocator.setApplicationEventPublisher(
+				event -> events.add((PredicateArgsEvent) event));
+
+		routeDefinitionRouteLocator.getRoutes().collectList().block();
+
+		assertThat(events).extracting(event -> event.getArgs().get("patterns"))
+				.containsExactly(Arrays.asList("foo"), Arrays.asList("foo"));
+	}
+
 	private String getFilterClassName(GatewayFilter target) {
 		if (target instanceof OrderedGatewayFilter) {
 			return getFilterClassName(((OrderedGatewayFilter) target).getDelegate());
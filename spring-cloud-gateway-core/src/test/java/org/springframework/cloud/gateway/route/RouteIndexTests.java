@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.route;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteIndexTests {
+
+	@Test
+	public void candidatesKeepRouteOrder() {
+		RouteIndex index = new RouteIndex(Arrays.asList(unindexed("unindexed1"),
+				route("foo", path("/foo/**")), route("host", host("www.example.org")),
+				route("bar", path("/bar/{segment}")),
+				route("post", method(HttpMethod.POST)), unindexed("unindexed2")));
+
+		assertThat(candidates(index, get("/foo/1", "www.example.org")))
+				.containsExactly("unindexed1", "foo", "host", "unindexed2");
+		assertThat(candidates(index, post("/bar/1", "other.example.org")))
+				.containsExactly("unindexed1", "bar", "post", "unindexed2");
+	}
+
+	@Test
+	public void pathPrefixesAreMatchedBySegment() {
+		RouteIndex index = new RouteIndex(Arrays.asList(route("foo", path("/foo/**")),
+				route("foobar", path("/foo/bar")), route("multi", path("/a/**", "/b/**")),
+				route("wildcard", path("/*/baz"))));
+
+		assertThat(candidates(index, get("/foo/bar", null))).containsExactly("foo",
+				"foobar", "wildcard");
+		assertThat(candidates(index, get("/FOO", null))).containsExactly("foo",
+				"wildcard");
+		assertThat(candidates(index, get("/foobar", null))).containsExactly("wildcard");
+		assertThat(candidates(index, get("/b/c", null))).containsExactly("multi",
+				"wildcard");
+	}
+
+	@Test
+	public void hostsAreNormalized() {
+		RouteIndex index = new RouteIndex(
+				Arrays.asList(route("literal", host("www.example.org")),
+						route("pattern", host("**.example.org"))));
+
+		assertThat(candidates(index, get("/", "WWW.Example.org")))
+				.containsExactly("literal", "pattern");
+		assertThat(candidates(index, get("/", "api.example.org")))
+				.containsExactly("pattern");
+		assertThat(candidates(index, get("/", null))).isEmpty();
+	}
+
+	@Test
+	public void hostPatternsAreMatchedByTrailingLabels() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("any", host("**.example.org")),
+				route("tenant", host("{tenant}.tenants.example.org")),
+				route("other", host("*.example.com")),
+				route("prefix", host("www.*")),
+				route("hostAndPath", host("**.example.org").and(path("/foo")))));
+
+		assertThat(candidates(index, get("/foo", "a.tenants.example.org")))
+				.containsExactly("any", "tenant", "prefix", "hostAndPath");
+		assertThat(candidates(index, get("/", "example.org")))
+				.containsExactly("any", "prefix");
+		assertThat(candidates(index, get("/", "www.example.com")))
+				.containsExactly("other", "prefix");
+		assertThat(candidates(index, get("/", "example.net")))
+				.containsExactly("prefix");
+	}
+
+	@Test
+	public void literalHostsArePreferredOverPaths() {
+		RouteIndex index = new RouteIndex(Arrays.asList(
+				route("a", host("a.example.org").and(path("/api/**"))),
+				route("b", host("b.example.org").and(path("/api/**")))));
+
+		assertThat(candidates(index, get("/api/foo", "b.example.org")))
+				.containsExactly("b");
+	}
+
+	@Test
+	public void conjunctionsAreIndexed() {
+		AsyncPredicate<ServerWebExchange> predicate = method(HttpMethod.GET)
+				.and(path("/foo"));
+		AsyncPredicate<ServerWebExchange> negated = path("/bar").negate();
+		RouteIndex index = new RouteIndex(
+				Arrays.asList(route("and", predicate), route("negated", negated)));
+
+		assertThat(candidates(index, get("/foo", null))).containsExactly("and",
+				"negated");
+		assertThat(candidates(index, get("/bar", null))).containsExactly("negated");
+	}
+
+	private List<String> candidates(RouteIndex index, ServerWebExchange exchange) {
+		return index.getCandidates(exchange).stream().map(Route::getId)
+				.collect(Collectors.toList());
+	}
+
+	private ServerWebExchange get(String path, String host) {
+		return exchange(MockServerHttpRequest.get("http://localhost" + path), host);
+	}
+
+	private ServerWebExchange post(String path, String host) {
+		return exchange(MockServerHttpRequest.post("http://localhost" + path), host);
+	}
+
+	private ServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> builder,
+			String host) {
+		if (host != null) {
+			builder.header("Host", host);
+		}
+		return MockServerWebExchange.from(builder.build());
+	}
+
+	private Route unindexed(String id) {
+		return Route.async().id(id).uri("http://localhost").predicate(exchange -> true)
+				.build();
+	}
+
+	private Route route(String id, AsyncPredicate<ServerWebExchange> predicate) {
+		return Route.async().id(id).uri("http://localhost").asyncPredicate(predicate)
+				.build();
+	}
+
+	private AsyncPredicate<ServerWebExchange> path(String... patterns) {
+		PathRoutePredicateFactory.Config config = new PathRoutePredicateFactory.Config();
+		config.setPatterns(Arrays.asList(patterns));
+		return new PathRoutePredicateFactory().applyAsync(config);
+	}
+
+	private AsyncPredicate<ServerWebExchange> host(String... patterns) {
+		HostRoutePredicateFactory.Config config = new HostRoutePredicateFactory.Config();
+		config.setPatterns(Arrays.asList(patterns));
+		return new HostRoutePredicateFactory().applyAsync(config);
+	}
+
+	private AsyncPredicate<ServerWebExchange> method(HttpMethod method) {
+		MethodRoutePredicateFactory.Config config = new MethodRoutePredicateFactory.Config();
+		config.setMethod(method);
+		return new MethodRoutePredicateFactory().applyAsync(config);
+	}
+
+}
@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.gateway.route;
 
+import java.time.Duration;
+
 import org.junit.Test;
 
 import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
@@ -24,8 +26,12 @@ import org.springframework.cloud.client.discovery.event.ParentHeartbeatEvent;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.context.ApplicationEventPublisher;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -65,4 +71,53 @@ public class RouteRefreshListenerTests {
 		verify(publisher, times(2)).publishEvent(any(RefreshRoutesEvent.class));
 	}
 
+	@Test
+	public void burstOfEventsIsCoalesced() {
+		ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+		RouteRefreshListener listener = new RouteRefreshListener(publisher,
+				Duration.ofMillis(200), Duration.ofSeconds(10));
+
+		try {
+			listener.onApplicationEvent(new HeartbeatEvent(this, 1L));
+			listener.onApplicationEvent(new HeartbeatEvent(this, 2L));
+			listener.onApplicationEvent(new InstanceRegisteredEvent<>(this, 3L));
+
+			verify(publisher, never()).publishEvent(any(RefreshRoutesEvent.class));
+			verify(publisher, timeout(2000)).publishEvent(any(RefreshRoutesEvent.class));
+			verify(publisher, after(400)).publishEvent(any(RefreshRoutesEvent.class));
+			assertThat(listener.getExecutedCount()).isEqualTo(1);
+			assertThat(listener.getSuppressedCount()).isEqualTo(2);
+		}
+		finally {
+			listener.destroy();
+		}
+	}
+
+	@Test
+	public void continuousEventsRefreshAfterMaxDelay() throws InterruptedException {
+		ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+		RouteRefreshListener listener = new RouteRefreshListener(publisher,
+				Duration.ofMillis(500), Duration.ofMillis(700));
+
+		try {
+			long start = System.nanoTime();
+			long value = 0;
+			// an event every 50ms for 1.5s never leaves the debounce window quiet
+			while (System.nanoTime() - start < Duration.ofMillis(1500).toNanos()) {
+				listener.onApplicationEvent(new HeartbeatEvent(this, value++));
+				Thread.sleep(50);
+			}
+			long executedDuringBurst = listener.getExecutedCount();
+			// the last refresh follows the debounce window
+			Thread.sleep(1000);
+
+			assertThat(executedDuringBurst).isBetween(1L, 2L);
+			assertThat(listener.getExecutedCount() + listener.getSuppressedCount())
+					.isEqualTo(value);
+		}
+		finally {
+			listener.destroy();
+		}
+	}
+
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.gateway.support;
+
+import org.junit.Test;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingSpelExpressionParserTests {
+
+	@Test
+	public void parsesExpressionOnce() {
+		CachingSpelExpressionParser parser = new CachingSpelExpressionParser();
+
+		Expression expression = parser.parseExpression("#{1 + 1}",
+				new TemplateParserContext());
+
+		assertThat(parser.parseExpression("#{1 + 1}", new TemplateParserContext()))
+				.isSameAs(expression);
+		assertThat(expression.getValue()).isEqualTo(2);
+	}
+
+	@Test
+	public void distinguishesParserContexts() {
+		CachingSpelExpressionParser parser = new CachingSpelExpressionParser();
+
+		Expression template = parser.parseExpression("#{'a'}",
+				new TemplateParserContext());
+		Expression custom = parser.parseExpression("#{'a'}",
+				new TemplateParserContext("${", "}"));
+		Expression plain = parser.parseExpression("'a'");
+
+		assertThat(template.getValue()).isEqualTo("a");
+		assertThat(custom.getValue()).isEqualTo("#{'a'}");
+		assertThat(plain.getValue()).isEqualTo("a");
+	}
+
+	@Test
+	public void compilesExpressions() {
+		CachingSpelExpressionParser parser = new CachingSpelExpressionParser(
+				SpelCompilerMode.IMMEDIATE);
+
+		Expression expression = parser.parseExpression("'a'.length() + 1");
+
+		assertThat(expression.getValue()).isEqualTo(2);
+		assertThat(expression.getValue()).isEqualTo(2);
+		assertThat(parser.parseExpression("'a'.length() + 1")).isSameAs(expression);
+	}
+
+}